@@ -15,6 +15,9 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // The microbenchmarks in androidTest run against the debug build; their numbers are for
+        // comparing two commits on the same device, not for absolute timings
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "DEBUGGABLE"
     }
 
     buildTypes {
@@ -39,6 +42,28 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+
+    testOptions {
+        unitTests {
+            isIncludeAndroidResources = true
+            all {
+                // Scale and budgets of the load, exactness and upgrade tests, e.g. -Pload.expenses=3000000
+                project.properties
+                    .filterKeys { key -> key.startsWith("load.") || key == "migration.rows" || key == "exactness.rows" }
+                    .forEach { (key, value) -> it.systemProperty(key, value.toString()) }
+                it.systemProperty("load.reportDir", layout.buildDirectory.dir("reports/load").get().asFile.path)
+                // The latency budgets depend on the machine, so the default run leaves them out;
+                // -Pload.run, or any -Pload.<setting>, runs them
+                if (project.properties.keys.none { key -> key.startsWith("load.") }) {
+                    it.exclude("**/DatabaseLoadTest.class")
+                }
+                // getAllExpenses holds every row in memory; only the full-scale run needs the room
+                if (project.hasProperty("load.expenses")) {
+                    it.maxHeapSize = "3g"
+                }
+            }
+        }
+    }
 }
 
 dependencies {
@@ -50,8 +75,11 @@ dependencies {
     
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.androidx.test.core)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
+    androidTestImplementation(libs.androidx.benchmark.junit4)
     
 
     
@@ -69,5 +97,5 @@ dependencies {
     implementation("com.wdullaer:materialdatetimepicker:4.2.3")
     
     // BCrypt for password hashing
-    implementation("at.favre.lib:bcrypt:0.9.0")
+    implementation(libs.bcrypt)
 }
@@ -0,0 +1,70 @@
+package com.example.giaodien;
+
+import android.content.Intent;
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.core.content.IntentCompat;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Passing an expense from AddExpenseActivity back to MainActivity: the expense alone through a
+ * Parcel, and the whole result Intent as the system carries it between activities. Runs on a
+ * device because Parcel is native code that a plain JVM, and so the JMH module, cannot load:
+ *   ./gradlew :app:connectedDebugAndroidTest
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.example.giaodien.ExpenseParcelBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExpenseParcelBenchmark {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Expense expense = newExpense();
+
+    @Test
+    public void parcelRoundTrip() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                expense.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                Expense.CREATOR.createFromParcel(parcel);
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void resultIntentRoundTrip() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Intent intent = new Intent().putExtra(AddExpenseActivity.KEY_NEW_EXPENSE, expense);
+            Parcel parcel = Parcel.obtain();
+            try {
+                intent.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                Intent received = Intent.CREATOR.createFromParcel(parcel);
+                received.setExtrasClassLoader(Expense.class.getClassLoader());
+                IntentCompat.getParcelableExtra(received, AddExpenseActivity.KEY_NEW_EXPENSE, Expense.class);
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    private static Expense newExpense() {
+        Expense expense = new Expense(1_250_000, "Thức ăn", "Tiền mặt", "Phở bò", NOW);
+        expense.setExpenseId(42);
+        expense.setUserId(1);
+        return expense;
+    }
+}
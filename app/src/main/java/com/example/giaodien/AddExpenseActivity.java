@@ -9,26 +9,33 @@ import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
-import com.example.giaodien.database.DatabaseHelper;
+import androidx.lifecycle.ViewModelProvider;
 import com.example.giaodien.Expense;
-
-import java.text.NumberFormat;
-import java.util.Locale;
+import com.example.giaodien.model.Money;
+import com.example.giaodien.viewmodel.AddExpenseViewModel;
 
 public class AddExpenseActivity extends AppCompatActivity {
+    public static final String KEY_NEW_EXPENSE = "new_expense";
 
     private EditText etAmount, etDescription;
     private Spinner spCategory, spPaymentMethod;
     private Button btnSave;
+    private long userId;
+    private AddExpenseViewModel viewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_add_expense);
 
+        userId = getIntent().getLongExtra(LoginActivity.KEY_USER_ID, 0);
+
         initializeViews();
         setupSpinners();
         setupSaveButton();
+
+        viewModel = new ViewModelProvider(this).get(AddExpenseViewModel.class);
+        viewModel.getSavedId().observe(this, this::onExpenseSaved);
     }
 
     private void initializeViews() {
@@ -64,7 +71,7 @@ public class AddExpenseActivity extends AppCompatActivity {
 
     private void setupSaveButton() {
         btnSave.setOnClickListener(v -> {
-            if (validateInput()) {
+            if (!viewModel.isSaving() && validateInput()) {
                 saveExpense();
             }
         });
@@ -80,7 +87,7 @@ public class AddExpenseActivity extends AppCompatActivity {
         }
 
         try {
-            double amount = parseAmount(amountStr);
+            long amount = parseAmount(amountStr);
             if (amount <= 0) {
                 showError(etAmount, "Số tiền phải lớn hơn 0");
                 return false;
@@ -104,15 +111,14 @@ public class AddExpenseActivity extends AppCompatActivity {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
-    private double parseAmount(String amountStr) throws NumberFormatException {
-        // Xử lý chuỗi số có chứa dấu phân cách
-        String cleanString = amountStr.replaceAll("[.,\\s]", "");
-        return Double.parseDouble(cleanString);
+    private long parseAmount(String amountStr) throws NumberFormatException {
+        // Bỏ qua dấu phân cách, chỉ nhận số nguyên đồng
+        return Money.parse(amountStr);
     }
 
     private void saveExpense() {
         try {
-            double amount = parseAmount(etAmount.getText().toString().trim());
+            long amount = parseAmount(etAmount.getText().toString().trim());
             String category = spCategory.getSelectedItem().toString();
             String paymentMethod = spPaymentMethod.getSelectedItem().toString();
             String description = etDescription.getText().toString().trim();
@@ -124,32 +130,35 @@ public class AddExpenseActivity extends AppCompatActivity {
                     description,
                     System.currentTimeMillis()
             );
+            expense.setUserId(userId);
 
-            DatabaseHelper dbHelper = new DatabaseHelper(this);
-            long result = dbHelper.addExpense(expense);
-
-            if (result != -1) {
-                showSuccessMessage(amount);
-
-                // Trả về kết quả thành công và dữ liệu expense
-                Intent resultIntent = new Intent();
-                resultIntent.putExtra("new_expense", expense);
-                setResult(RESULT_OK, resultIntent);
-                finish();
-            } else {
-                Toast.makeText(this, "Lỗi khi lưu chi tiêu", Toast.LENGTH_SHORT).show();
-            }
+            // Ghi vào database trên luồng nền, kết quả trả về qua onExpenseSaved
+            btnSave.setEnabled(false);
+            viewModel.save(expense);
         } catch (NumberFormatException e) {
             showError(etAmount, "Số tiền không hợp lệ");
         }
     }
 
-    private void showSuccessMessage(double amount) {
-        NumberFormat formatter = NumberFormat.getNumberInstance(Locale.getDefault());
-        String formattedAmount = formatter.format(amount);
+    private void onExpenseSaved(long result) {
+        Expense expense = viewModel.getSavedExpense();
+        if (result != -1 && expense != null) {
+            showSuccessMessage(expense.getAmount());
+
+            // Trả về kết quả thành công và dữ liệu expense
+            Intent resultIntent = new Intent();
+            resultIntent.putExtra(KEY_NEW_EXPENSE, expense);
+            setResult(RESULT_OK, resultIntent);
+            finish();
+        } else {
+            btnSave.setEnabled(true);
+            Toast.makeText(this, "Lỗi khi lưu chi tiêu", Toast.LENGTH_SHORT).show();
+        }
+    }
 
+    private void showSuccessMessage(long amount) {
         Toast.makeText(this,
-                "Đã lưu chi tiêu: " + formattedAmount + "đ",
+                "Đã lưu chi tiêu: " + Money.format(amount),
                 Toast.LENGTH_LONG).show();
     }
 }
\ No newline at end of file
@@ -8,6 +8,10 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+import com.example.giaodien.adapter.ExpenseAdapter;
+import com.example.giaodien.viewmodel.MainViewModel;
 
 public class ChiTieuFragment extends Fragment {
 
@@ -18,4 +22,19 @@ public class ChiTieuFragment extends Fragment {
                              @Nullable Bundle savedInstanceState) {
         return inflater.inflate(R.layout.fragment_chi_tieu, container, false);
     }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // Dùng chung ViewModel với MainActivity để nhận chi tiêu vừa thêm
+        MainViewModel viewModel = new ViewModelProvider(requireActivity()).get(MainViewModel.class);
+
+        ExpenseAdapter adapter = new ExpenseAdapter();
+        RecyclerView rvRecentExpenses = view.findViewById(R.id.rvRecentExpenses);
+        rvRecentExpenses.setAdapter(adapter);
+
+        viewModel.getRecentExpenses().observe(getViewLifecycleOwner(), adapter::submitList);
+        viewModel.loadRecentExpenses();
+    }
 }
@@ -1,24 +1,24 @@
 package com.example.giaodien;
 
-import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.UUID;
-
-public class Expense implements Serializable {
-    private String id;
-    private double amount;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import com.example.giaodien.util.ExpenseFormatter;
+
+public class Expense implements Parcelable {
+    private long expenseId;  // expense_id trong database, 0 khi chưa được lưu; là định danh duy nhất
+    private long amount;  // số tiền tính bằng đồng
     private String category;
     private String paymentMethod;
     private String description;
     private long timestamp;
-    private String userId;  // Thêm trường userId để liên kết với người dùng
+    private long userId;  // user_id của người dùng sở hữu, 0 khi chưa gắn
 
     // Constructor đầy đủ (5 tham số)
-    public Expense(double amount, String category, String paymentMethod,
+    public Expense(long amount, String category, String paymentMethod,
                    String description, long timestamp) {
-        this.id = generateId();
         this.amount = amount;
         this.category = category;
         this.paymentMethod = paymentMethod;
@@ -27,62 +27,95 @@ public class Expense implements Serializable {
     }
 
     // Constructor 4 tham số (tự động thêm timestamp hiện tại)
-    public Expense(double amount, String category,
+    public Expense(long amount, String category,
                    String paymentMethod, String description) {
         this(amount, category, paymentMethod, description, System.currentTimeMillis());
     }
 
     // Constructor 3 tham số (không có description)
-    public Expense(double amount, String category, String paymentMethod) {
+    public Expense(long amount, String category, String paymentMethod) {
         this(amount, category, paymentMethod, "", System.currentTimeMillis());
     }
 
-    // Phương thức generate ID sử dụng UUID
-    private String generateId() {
-        return "EXP-" + UUID.randomUUID().toString();
-    }
-
     // Getter methods
-    public String getId() { return id; }
-    public double getAmount() { return amount; }
+    public long getExpenseId() { return expenseId; }
+    public long getAmount() { return amount; }
     public String getCategory() { return category; }
     public String getPaymentMethod() { return paymentMethod; }
     public String getDescription() { return description; }
     public long getTimestamp() { return timestamp; }
-    public String getUserId() { return userId; }
+    public long getUserId() { return userId; }
 
     // Setter methods
-    public void setAmount(double amount) { this.amount = amount; }
+    public void setExpenseId(long expenseId) { this.expenseId = expenseId; }
+    public void setAmount(long amount) { this.amount = amount; }
     public void setCategory(String category) { this.category = category; }
     public void setPaymentMethod(String paymentMethod) { this.paymentMethod = paymentMethod; }
     public void setDescription(String description) { this.description = description; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
-    public void setUserId(String userId) { this.userId = userId; }
+    public void setUserId(long userId) { this.userId = userId; }
 
     // Phương thức tiện ích
     public String getFormattedDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return ExpenseFormatter.getInstance().dateTimeString(timestamp);
     }
 
     public String getFormattedAmount() {
-        return String.format(Locale.getDefault(), "%,.0fđ", amount);
+        return ExpenseFormatter.getInstance().amountString(amount);
     }
 
     public String getShortDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return ExpenseFormatter.getInstance().shortDateString(timestamp);
+    }
+
+    // Parcelable: truyền qua Intent không cần reflection như Serializable
+    protected Expense(Parcel in) {
+        expenseId = in.readLong();
+        amount = in.readLong();
+        category = in.readString();
+        paymentMethod = in.readString();
+        description = in.readString();
+        timestamp = in.readLong();
+        userId = in.readLong();
     }
 
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLong(expenseId);
+        dest.writeLong(amount);
+        dest.writeString(category);
+        dest.writeString(paymentMethod);
+        dest.writeString(description);
+        dest.writeLong(timestamp);
+        dest.writeLong(userId);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<Expense> CREATOR = new Creator<Expense>() {
+        @Override
+        public Expense createFromParcel(Parcel in) {
+            return new Expense(in);
+        }
+
+        @Override
+        public Expense[] newArray(int size) {
+            return new Expense[size];
+        }
+    };
+
     @Override
     public String toString() {
         return "Expense{" +
-                "id='" + id + '\'' +
+                "expenseId=" + expenseId +
                 ", amount=" + amount +
                 ", category='" + category + '\'' +
                 ", paymentMethod='" + paymentMethod + '\'' +
                 ", timestamp=" + getFormattedDate() +
-                ", userId='" + userId + '\'' +
+                ", userId=" + userId +
                 '}';
     }
 }
\ No newline at end of file
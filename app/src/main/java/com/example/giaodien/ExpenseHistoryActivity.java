@@ -1,24 +1,38 @@
 package com.example.giaodien;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.Toast;
+import android.widget.EditText;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.giaodien.adapter.ExpenseHistoryAdapter;
-import com.example.giaodien.database.DatabaseHelper;
-import com.example.giaodien.Expense;
+import com.example.giaodien.database.ExpenseFilter;
+import com.example.giaodien.util.ExpenseFormatter;
+import com.example.giaodien.viewmodel.ExpenseHistoryViewModel;
 import com.google.android.material.button.MaterialButton;
+import com.wdullaer.materialdatetimepicker.date.DatePickerDialog;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 public class ExpenseHistoryActivity extends AppCompatActivity {
+    private static final String TAG_RANGE_START = "filter_range_start";
+    private static final String TAG_RANGE_END = "filter_range_end";
 
     private RecyclerView rvExpenseHistory;
-    private MaterialButton btnFilterDate, btnFilterCategory;
-    private DatabaseHelper dbHelper;
+    private EditText etSearch;
+    private MaterialButton btnFilterDate, btnFilterCategory, btnFilterPayment;
+    private ExpenseHistoryViewModel viewModel;
     private ExpenseHistoryAdapter adapter;
 
     @Override
@@ -28,8 +42,10 @@ public class ExpenseHistoryActivity extends AppCompatActivity {
 
         // Initialize views
         rvExpenseHistory = findViewById(R.id.rvExpenseHistory);
+        etSearch = findViewById(R.id.etSearch);
         btnFilterDate = findViewById(R.id.btnFilterDate);
         btnFilterCategory = findViewById(R.id.btnFilterCategory);
+        btnFilterPayment = findViewById(R.id.btnFilterPayment);
 
         // Setup toolbar
         setSupportActionBar(findViewById(R.id.toolbar));
@@ -37,8 +53,8 @@ public class ExpenseHistoryActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        // Initialize database helper
-        dbHelper = new DatabaseHelper(this);
+        // Loaded pages live in the ViewModel and survive rotation
+        viewModel = new ViewModelProvider(this).get(ExpenseHistoryViewModel.class);
 
         // Setup RecyclerView
         setupRecyclerView();
@@ -46,14 +62,41 @@ public class ExpenseHistoryActivity extends AppCompatActivity {
         // Set click listeners
         btnFilterDate.setOnClickListener(v -> filterExpensesByDate());
         btnFilterCategory.setOnClickListener(v -> filterExpensesByCategory());
+        btnFilterPayment.setOnClickListener(v -> filterExpensesByPaymentMethod());
+        viewModel.getFilter().observe(this, this::showFilter);
+
+        // Date pickers restored after a rotation lose their listeners
+        DatePickerDialog startPicker =
+                (DatePickerDialog) getSupportFragmentManager().findFragmentByTag(TAG_RANGE_START);
+        if (startPicker != null) {
+            startPicker.setOnDateSetListener(this::onRangeStartSet);
+        }
+        DatePickerDialog endPicker =
+                (DatePickerDialog) getSupportFragmentManager().findFragmentByTag(TAG_RANGE_END);
+        if (endPicker != null) {
+            endPicker.setOnDateSetListener(this::onRangeEndSet);
+        }
+
+        // Search as the user types; the ViewModel waits for a pause and drops stale queries
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                viewModel.setSearchQuery(s.toString());
+            }
+        });
     }
 
     private void setupRecyclerView() {
-        // Get all expenses from database
-        List<Expense> expenses = dbHelper.getAllExpenses();
-
-        // Create and set adapter
-        adapter = new ExpenseHistoryAdapter(expenses);
+        // Load the history page by page instead of reading the whole table up front
+        adapter = new ExpenseHistoryAdapter(viewModel.getPager());
         rvExpenseHistory.setLayoutManager(new LinearLayoutManager(this));
         rvExpenseHistory.addItemDecoration(
                 new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
@@ -61,13 +104,132 @@ public class ExpenseHistoryActivity extends AppCompatActivity {
     }
 
     private void filterExpensesByDate() {
-        // Implement your date filtering logic here
-        Toast.makeText(this, "Lọc theo ngày", Toast.LENGTH_SHORT).show();
+        if (!currentFilter().hasDateRange()) {
+            showRangeStartPicker();
+            return;
+        }
+        CharSequence[] choices = {getString(R.string.filter_pick_range), getString(R.string.filter_clear)};
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter_by_date)
+                .setItems(choices, (dialog, which) -> {
+                    if (which == 0) {
+                        showRangeStartPicker();
+                    } else {
+                        viewModel.clearDateRange();
+                    }
+                })
+                .show();
+    }
+
+    private void showRangeStartPicker() {
+        DatePickerDialog picker = DatePickerDialog.newInstance(this::onRangeStartSet, Calendar.getInstance());
+        picker.setTitle(getString(R.string.filter_range_start));
+        picker.show(getSupportFragmentManager(), TAG_RANGE_START);
+    }
+
+    private void onRangeStartSet(DatePickerDialog view, int year, int monthOfYear, int dayOfMonth) {
+        Calendar start = startOfDay(year, monthOfYear, dayOfMonth);
+        viewModel.setRangeStart(start.getTimeInMillis());
+
+        DatePickerDialog picker = DatePickerDialog.newInstance(this::onRangeEndSet, start);
+        picker.setMinDate(start);
+        picker.setTitle(getString(R.string.filter_range_end));
+        picker.show(getSupportFragmentManager(), TAG_RANGE_END);
+    }
+
+    private void onRangeEndSet(DatePickerDialog view, int year, int monthOfYear, int dayOfMonth) {
+        // The range includes the whole last day
+        Calendar end = startOfDay(year, monthOfYear, dayOfMonth);
+        end.add(Calendar.DAY_OF_MONTH, 1);
+        viewModel.setDateRange(viewModel.getRangeStart(), end.getTimeInMillis());
+    }
+
+    private static Calendar startOfDay(int year, int monthOfYear, int dayOfMonth) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, monthOfYear, dayOfMonth);
+        return calendar;
     }
 
     private void filterExpensesByCategory() {
-        // Implement your category filtering logic here
-        Toast.makeText(this, "Lọc theo danh mục", Toast.LENGTH_SHORT).show();
+        String[] labels = viewModel.getCategoryLabels().getValue();
+        if (labels == null) {
+            // Still loading
+            return;
+        }
+        Set<String> selected = currentFilter().getCategories();
+        boolean[] checked = new boolean[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            checked[i] = selected.contains(labels[i]);
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter_by_category)
+                .setMultiChoiceItems(labels, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(R.string.filter_apply, (dialog, which) -> {
+                    List<String> categories = new ArrayList<>();
+                    for (int i = 0; i < labels.length; i++) {
+                        if (checked[i]) {
+                            categories.add(labels[i]);
+                        }
+                    }
+                    viewModel.setCategories(categories);
+                })
+                .setNeutralButton(R.string.filter_clear,
+                        (dialog, which) -> viewModel.setCategories(Collections.emptyList()))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void filterExpensesByPaymentMethod() {
+        String[] labels = viewModel.getPaymentMethodLabels().getValue();
+        if (labels == null) {
+            return;
+        }
+        int checked = Arrays.asList(labels).indexOf(currentFilter().getPaymentMethod());
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter_by_payment)
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    viewModel.setPaymentMethod(labels[which]);
+                    dialog.dismiss();
+                })
+                .setNeutralButton(R.string.filter_clear, (dialog, which) -> viewModel.setPaymentMethod(null))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private ExpenseFilter currentFilter() {
+        ExpenseFilter filter = viewModel.getFilter().getValue();
+        return filter != null ? filter : ExpenseFilter.ALL;
+    }
+
+    // Button labels show what each active filter is set to
+    private void showFilter(ExpenseFilter filter) {
+        if (filter.hasDateRange()) {
+            ExpenseFormatter formatter = ExpenseFormatter.getInstance();
+            btnFilterDate.setText(formatter.shortDateString(filter.getFromMillis()) + " – " +
+                    formatter.shortDateString(filter.getToMillis() - 1));
+        } else {
+            btnFilterDate.setText(R.string.filter_by_date);
+        }
+        if (filter.getCategories().isEmpty()) {
+            btnFilterCategory.setText(R.string.filter_by_category);
+        } else if (filter.getCategories().size() == 1) {
+            btnFilterCategory.setText(filter.getCategories().iterator().next());
+        } else {
+            btnFilterCategory.setText(getString(R.string.filter_category_count, filter.getCategories().size()));
+        }
+        if (filter.getPaymentMethod() == null) {
+            btnFilterPayment.setText(R.string.filter_by_payment);
+        } else {
+            btnFilterPayment.setText(filter.getPaymentMethod());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Detach the adapter so the pager stops notifying views of the destroyed activity
+        rvExpenseHistory.setAdapter(null);
+        super.onDestroy();
     }
 
     @Override
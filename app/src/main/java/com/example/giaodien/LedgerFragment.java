@@ -0,0 +1,123 @@
+package com.example.giaodien;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.RadioButton;
+import android.widget.RadioGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.StringRes;
+import androidx.appcompat.app.AlertDialog;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.giaodien.adapter.LedgerEntryAdapter;
+import com.example.giaodien.model.LedgerAccount;
+import com.example.giaodien.model.Money;
+import com.example.giaodien.util.ExpenseFormatter;
+import com.example.giaodien.viewmodel.LedgerViewModel;
+
+/**
+ * Tab của một tài khoản sổ cái: số dư hiện tại, các giao dịch gần đây và nút thêm giao dịch.
+ * Mỗi tab con chỉ khai báo tài khoản và các nhãn của nó.
+ */
+public abstract class LedgerFragment extends Fragment {
+    private final LedgerAccount account;
+    @StringRes private final int balanceLabel;
+    @StringRes private final int addTitle;
+    // Nhãn hai chiều tăng/giảm, 0 khi tài khoản chỉ có chiều tăng (thu nhập)
+    @StringRes private final int increaseLabel;
+    @StringRes private final int decreaseLabel;
+
+    private LedgerViewModel viewModel;
+
+    protected LedgerFragment(LedgerAccount account, @StringRes int balanceLabel, @StringRes int addTitle,
+                             @StringRes int increaseLabel, @StringRes int decreaseLabel) {
+        this.account = account;
+        this.balanceLabel = balanceLabel;
+        this.addTitle = addTitle;
+        this.increaseLabel = increaseLabel;
+        this.decreaseLabel = decreaseLabel;
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater,
+                             @Nullable ViewGroup container,
+                             @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_ledger, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        TextView tvBalanceLabel = view.findViewById(R.id.tvBalanceLabel);
+        TextView tvBalance = view.findViewById(R.id.tvBalance);
+        RecyclerView rvEntries = view.findViewById(R.id.rvEntries);
+        tvBalanceLabel.setText(balanceLabel);
+
+        LedgerEntryAdapter adapter = new LedgerEntryAdapter();
+        rvEntries.setAdapter(adapter);
+
+        long userId = requireActivity().getIntent().getLongExtra(LoginActivity.KEY_USER_ID, 0);
+        viewModel = new ViewModelProvider(this).get(LedgerViewModel.class);
+        viewModel.getBalance().observe(getViewLifecycleOwner(), balance ->
+                tvBalance.setText(ExpenseFormatter.getInstance().amountString(balance)));
+        viewModel.getEntries().observe(getViewLifecycleOwner(), adapter::submitList);
+        viewModel.getSaveFailed().observe(getViewLifecycleOwner(), failed -> {
+            if (Boolean.TRUE.equals(failed)) {
+                Toast.makeText(requireContext(), R.string.ledger_save_failed, Toast.LENGTH_SHORT).show();
+            }
+        });
+        viewModel.start(userId, account);
+
+        view.findViewById(R.id.btnAddEntry).setOnClickListener(v -> showAddDialog());
+    }
+
+    private void showAddDialog() {
+        View form = LayoutInflater.from(requireContext()).inflate(R.layout.dialog_ledger_entry, null);
+        RadioGroup rgDirection = form.findViewById(R.id.rgDirection);
+        EditText etAmount = form.findViewById(R.id.etAmount);
+        EditText etDescription = form.findViewById(R.id.etDescription);
+        if (increaseLabel == 0) {
+            rgDirection.setVisibility(View.GONE);
+        } else {
+            ((RadioButton) form.findViewById(R.id.rbIncrease)).setText(increaseLabel);
+            ((RadioButton) form.findViewById(R.id.rbDecrease)).setText(decreaseLabel);
+        }
+
+        AlertDialog dialog = new AlertDialog.Builder(requireContext())
+                .setTitle(addTitle)
+                .setView(form)
+                .setPositiveButton(R.string.save, null)
+                .setNegativeButton(android.R.string.cancel, null)
+                .create();
+        dialog.setOnShowListener(d -> dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            long amount;
+            try {
+                amount = Money.parse(etAmount.getText().toString().trim());
+            } catch (NumberFormatException e) {
+                amount = 0;
+            }
+            if (amount <= 0) {
+                etAmount.setError(getString(R.string.ledger_invalid_amount));
+                return;
+            }
+            if (rgDirection.getCheckedRadioButtonId() == R.id.rbDecrease) {
+                amount = -amount;
+            }
+            String description = etDescription.getText().toString().trim();
+            viewModel.addEntry(amount, description.isEmpty() ? null : description);
+            dialog.dismiss();
+        }));
+        dialog.show();
+    }
+}
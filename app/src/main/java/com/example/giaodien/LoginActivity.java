@@ -7,25 +7,28 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
-import com.example.giaodien.database.UserDAO;
+import androidx.lifecycle.ViewModelProvider;
 import com.example.giaodien.model.User;
+import com.example.giaodien.viewmodel.LoginViewModel;
 
 public class LoginActivity extends AppCompatActivity {
     private EditText emailEditText, passwordEditText;
-    private UserDAO userDAO;
+    private Button loginButton;
+    private LoginViewModel viewModel;
 
     public static final String KEY_EMAIL = "email";
+    public static final String KEY_USER_ID = "user_id";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
-        userDAO = new UserDAO(this);
+        viewModel = new ViewModelProvider(this).get(LoginViewModel.class);
 
         emailEditText = findViewById(R.id.emailEditText);
         passwordEditText = findViewById(R.id.passwordEditText);
-        Button loginButton = findViewById(R.id.loginButton);
+        loginButton = findViewById(R.id.loginButton);
         TextView registerTextView = findViewById(R.id.signUpText);
 
         loginButton.setOnClickListener(v -> attemptLogin());
@@ -33,6 +36,8 @@ public class LoginActivity extends AppCompatActivity {
         registerTextView.setOnClickListener(v ->
                 startActivity(new Intent(this, RegisterActivity.class))
         );
+
+        viewModel.getState().observe(this, this::onLoginStateChanged);
     }
 
     private void attemptLogin() {
@@ -40,12 +45,18 @@ public class LoginActivity extends AppCompatActivity {
         String password = passwordEditText.getText().toString().trim();
 
         if (validateInput(email, password)) {
-            User user = userDAO.loginUser(email, password);
-            if (user != null) {
-                navigateToMainActivity(email);
-            } else {
-                Toast.makeText(this, "Invalid email or password", Toast.LENGTH_SHORT).show();
-            }
+            // Truy vấn và kiểm tra bcrypt chạy trên luồng nền
+            viewModel.login(email, password);
+        }
+    }
+
+    private void onLoginStateChanged(int state) {
+        loginButton.setEnabled(state != LoginViewModel.STATE_LOADING);
+        if (state == LoginViewModel.STATE_SUCCESS) {
+            navigateToMainActivity(viewModel.getUser());
+        } else if (state == LoginViewModel.STATE_FAILED) {
+            Toast.makeText(this, "Invalid email or password", Toast.LENGTH_SHORT).show();
+            viewModel.onFailureShown();
         }
     }
 
@@ -65,9 +76,10 @@ public class LoginActivity extends AppCompatActivity {
         return isValid;
     }
 
-    private void navigateToMainActivity(String email) {
+    private void navigateToMainActivity(User user) {
         Intent intent = new Intent(this, MainActivity.class);
-        intent.putExtra(KEY_EMAIL, email);
+        intent.putExtra(KEY_EMAIL, user.getEmail());
+        intent.putExtra(KEY_USER_ID, user.getId());
         startActivity(intent);
         finish();
     }
@@ -2,17 +2,26 @@ package com.example.giaodien;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.view.View;
 import android.widget.Button;
+import android.widget.PopupMenu;
+import android.widget.TextView;
 import androidx.activity.EdgeToEdge;
 import androidx.activity.result.ActivityResult;
 import androidx.activity.result.ActivityResultCallback;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.IntentCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.viewpager2.widget.ViewPager2;
+import com.example.giaodien.database.CategoryTotals;
+import com.example.giaodien.util.StartupMetrics;
+import com.example.giaodien.viewmodel.MainViewModel;
 import com.github.mikephil.charting.charts.PieChart;
 import com.github.mikephil.charting.data.PieData;
 import com.github.mikephil.charting.data.PieDataSet;
@@ -25,16 +34,37 @@ import java.util.ArrayList;
 public class MainActivity extends AppCompatActivity {
     private Button btnAddTransaction;
     private Button btnHistory;
+    private TextView tvUserAvatar;
     private ViewPager2 viewPager;
     private PieChart pieChart;
+    // Dữ liệu đang vẽ, giữ lại để chỉ cập nhật những lát thay đổi
+    private PieDataSet pieDataSet;
+    private long userId;
+    private MainViewModel viewModel;
+
+    private static final String[] TAB_TITLES = {"Chi tiêu", "Thu nhập", "Mượn nợ", "Tài sản"};
+
+    // Đo thời gian khởi động; mỗi giai đoạn cũng là một trace section
+    private StartupMetrics startupMetrics;
+    private boolean chartPopulated;
+
+    private static final int[] CATEGORY_COLORS = {
+            0xFF00B89C, 0xFFFFC107, 0xFF666666, 0xFF2196F3, 0xFFE91E63, 0xFF9C27B0, 0xFFFF5722
+    };
 
     // ActivityResultLauncher để xử lý kết quả trả về từ AddExpenseActivity
     private final ActivityResultLauncher<Intent> expenseLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK) {
-                    // Cập nhật biểu đồ khi có chi tiêu mới được thêm
-                    updatePieChart();
+                    // Cộng chi tiêu mới vào lát tương ứng của biểu đồ; chỉ đọc lại database khi thiếu dữ liệu
+                    Expense expense = result.getData() == null ? null : IntentCompat.getParcelableExtra(
+                            result.getData(), AddExpenseActivity.KEY_NEW_EXPENSE, Expense.class);
+                    if (expense != null) {
+                        viewModel.onExpenseAdded(expense);
+                    } else {
+                        viewModel.reloadMonthTotals(userId);
+                    }
                     Snackbar.make(findViewById(android.R.id.content),
                             "Đã thêm chi tiêu mới", Snackbar.LENGTH_SHORT).show();
                 }
@@ -42,15 +72,43 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        startupMetrics = new StartupMetrics("MainActivity");
         super.onCreate(savedInstanceState);
-        EdgeToEdge.enable(this);
-        setContentView(R.layout.activity_main);
-
-        setupWindowInsets();
-        initializeViews();
-        setupViewPager();
-        setupPieChart();
-        setupButtonListeners();
+        startupMetrics.phase("setContentView", () -> {
+            EdgeToEdge.enable(this);
+            setContentView(R.layout.activity_main);
+        });
+
+        userId = getIntent().getLongExtra(LoginActivity.KEY_USER_ID, 0);
+        viewModel = new ViewModelProvider(this).get(MainViewModel.class);
+        // Mở database và đọc tổng tháng trên luồng nền, song song với khung hình đầu tiên
+        viewModel.loadMonthTotals(userId);
+        viewModel.loadRecentExpenses();
+
+        startupMetrics.phase("initViews", () -> {
+            setupWindowInsets();
+            initializeViews();
+        });
+        startupMetrics.phase("viewPager", this::setupViewPager);
+        startupMetrics.phase("buttons", this::setupButtonListeners);
+
+        // Biểu đồ được dựng sau khung hình đầu tiên; dữ liệu của nó đã được tải từ trước
+        startupMetrics.awaitFirstDraw(getWindow().getDecorView(),
+                () -> startupMetrics.phase("pieChart", this::setupPieChart));
+        viewModel.getRecentExpenses().observe(this, expenses -> reportFullyDrawnWhenPopulated());
+    }
+
+    @VisibleForTesting
+    StartupMetrics getStartupMetrics() {
+        return startupMetrics;
+    }
+
+    // Dashboard đầy đủ khi biểu đồ đã có dữ liệu và danh sách chi tiêu đã tải xong
+    private void reportFullyDrawnWhenPopulated() {
+        if (chartPopulated && viewModel.getRecentExpenses().getValue() != null
+                && startupMetrics.markFullyDrawn()) {
+            reportFullyDrawn();
+        }
     }
 
     private void setupWindowInsets() {
@@ -66,12 +124,14 @@ public class MainActivity extends AppCompatActivity {
         btnHistory = findViewById(R.id.btnHistory);
         viewPager = findViewById(R.id.viewPager);
         pieChart = findViewById(R.id.pieChart);
+        tvUserAvatar = findViewById(R.id.tvUserAvatar);
     }
 
     private void setupButtonListeners() {
         // Xử lý sự kiện thêm giao dịch
         btnAddTransaction.setOnClickListener(v -> {
             Intent intent = new Intent(MainActivity.this, AddExpenseActivity.class);
+            intent.putExtra(LoginActivity.KEY_USER_ID, userId);
             expenseLauncher.launch(intent);
         });
 
@@ -80,6 +140,36 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent(MainActivity.this, ExpenseHistoryActivity.class);
             startActivity(intent);
         });
+
+        // Chạm vào avatar để đăng xuất
+        tvUserAvatar.setOnClickListener(this::showAccountMenu);
+        viewModel.getLoggedOut().observe(this, loggedOut -> {
+            if (Boolean.TRUE.equals(loggedOut)) {
+                showLogin();
+            }
+        });
+    }
+
+    private void showAccountMenu(View anchor) {
+        PopupMenu menu = new PopupMenu(this, anchor);
+        menu.inflate(R.menu.menu_account);
+        menu.setOnMenuItemClickListener(item -> {
+            int id = item.getItemId();
+            if (id == R.id.action_logout || id == R.id.action_logout_everywhere) {
+                viewModel.logout(userId, id == R.id.action_logout_everywhere);
+                return true;
+            }
+            return false;
+        });
+        menu.show();
+    }
+
+    // Về màn hình đăng nhập và bỏ mọi màn hình của phiên cũ khỏi back stack
+    private void showLogin() {
+        Intent intent = new Intent(this, LoginActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
     }
 
     private void setupViewPager() {
@@ -89,38 +179,88 @@ public class MainActivity extends AppCompatActivity {
         viewPager.setAdapter(adapter);
 
         new TabLayoutMediator(tabLayout, viewPager,
-                (tab, position) -> {
-                    String[] tabTitles = {"Chi tiêu", "Thu nhập", "Mượn nợ", "Tài sản"};
-                    tab.setText(tabTitles[position]);
-                }).attach();
+                (tab, position) -> tab.setText(TAB_TITLES[position])).attach();
     }
 
     private void setupPieChart() {
         if (pieChart != null) {
-            updatePieChart();
+            // Cấu hình cố định của biểu đồ, chỉ đặt một lần
+            pieChart.getDescription().setEnabled(false);
+            pieChart.setCenterText("Tổng quan");
+            pieChart.setCenterTextSize(16f);
+            pieChart.setHoleRadius(40f);
+            pieChart.setEntryLabelColor(0xFF333333);
+            // Chi tiêu tháng này theo danh mục, đọc từ bảng rollup trên luồng nền
+            viewModel.getMonthTotals().observe(this, this::updatePieChart);
+        } else {
+            onChartPopulated();
         }
     }
 
-    private void updatePieChart() {
-        // TODO: Thay thế bằng dữ liệu thực từ database
-        ArrayList<PieEntry> entries = new ArrayList<>();
-        entries.add(new PieEntry(30f, "Chi tiêu"));
-        entries.add(new PieEntry(40f, "Thu nhập"));
-        entries.add(new PieEntry(30f, "Mượn nợ"));
+    private void updatePieChart(CategoryTotals totals) {
+        if (totals.size() == 0) {
+            pieDataSet = null;
+            pieChart.clear();
+            pieChart.setNoDataText("Chưa có chi tiêu trong tháng");
+            onChartPopulated();
+            return;
+        }
 
-        PieDataSet dataSet = new PieDataSet(entries, "Phân bổ tài chính");
-        dataSet.setColors(new int[]{0xFF00B89C, 0xFFFFC107, 0xFF666666});
+        if (pieDataSet != null && updateSlices(totals)) {
+            pieDataSet.notifyDataSetChanged();
+            pieChart.getData().notifyDataChanged();
+            pieChart.notifyDataSetChanged();
+            pieChart.invalidate();
+            onChartPopulated();
+            return;
+        }
+
+        ArrayList<PieEntry> entries = new ArrayList<>(totals.size());
+        for (int i = 0; i < totals.size(); i++) {
+            entries.add(new PieEntry(totals.getTotal(i), totals.getCategory(i)));
+        }
+
+        PieDataSet dataSet = new PieDataSet(entries, "Chi tiêu theo danh mục");
+        pieDataSet = dataSet;
+        dataSet.setColors(CATEGORY_COLORS);
         dataSet.setValueTextColor(0xFF333333);
         dataSet.setValueTextSize(12f);
 
         PieData pieData = new PieData(dataSet);
         pieChart.setData(pieData);
-        pieChart.getDescription().setEnabled(false);
-        pieChart.setCenterText("Tổng quan");
-        pieChart.setCenterTextSize(16f);
-        pieChart.setHoleRadius(40f);
-        pieChart.setEntryLabelColor(0xFF333333);
         pieChart.invalidate();
+        onChartPopulated();
+    }
+
+    private void onChartPopulated() {
+        if (!chartPopulated) {
+            chartPopulated = true;
+            reportFullyDrawnWhenPopulated();
+        }
+    }
+
+    /**
+     * Sửa tại chỗ các lát đã vẽ và thêm lát cho danh mục mới ở cuối. Trả về false khi danh mục
+     * bị bỏ hoặc đổi thứ tự, lúc đó cần dựng lại biểu đồ.
+     */
+    private boolean updateSlices(CategoryTotals totals) {
+        int shown = pieDataSet.getEntryCount();
+        if (totals.size() < shown) {
+            return false;
+        }
+        for (int i = 0; i < shown; i++) {
+            if (!totals.getCategory(i).equals(pieDataSet.getEntryForIndex(i).getLabel())) {
+                return false;
+            }
+        }
+        for (int i = 0; i < shown; i++) {
+            PieEntry entry = pieDataSet.getEntryForIndex(i);
+            entry.setY(totals.getTotal(i));
+        }
+        for (int i = shown; i < totals.size(); i++) {
+            pieDataSet.addEntry(new PieEntry(totals.getTotal(i), totals.getCategory(i)));
+        }
+        return true;
     }
 
     // ViewPager Adapter
@@ -1,15 +1,12 @@
 package com.example.giaodien;
 
-import android.os.Bundle;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import androidx.fragment.app.Fragment;
+import com.example.giaodien.model.LedgerAccount;
 
-public class MuonNoFragment extends Fragment {
+/** Tab "Mượn nợ". */
+public class MuonNoFragment extends LedgerFragment {
 
-    @Override
-    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.fragment_muon_no, container, false);
+    public MuonNoFragment() {
+        super(LedgerAccount.DEBT, R.string.debt_balance, R.string.debt_add,
+                R.string.debt_increase, R.string.debt_decrease);
     }
 }
@@ -9,25 +9,27 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
-import com.example.giaodien.database.UserDAO;
+import com.example.giaodien.viewmodel.RegisterViewModel;
 
 public class RegisterActivity extends AppCompatActivity {
     private EditText nameEditText, emailEditText, passwordEditText, confirmPasswordEditText;
-    private UserDAO userDAO;
+    private Button registerButton;
+    private RegisterViewModel viewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_register);
 
-        userDAO = new UserDAO(this);
+        viewModel = new ViewModelProvider(this).get(RegisterViewModel.class);
 
         nameEditText = findViewById(R.id.nameEditText);
         emailEditText = findViewById(R.id.emailEditText);
         passwordEditText = findViewById(R.id.passwordEditText);
         confirmPasswordEditText = findViewById(R.id.confirmPasswordEditText);
-        Button registerButton = findViewById(R.id.registerButton);
+        registerButton = findViewById(R.id.registerButton);
         TextView loginTextView = findViewById(R.id.loginText);
 
         registerButton.setOnClickListener(v -> {
@@ -37,25 +39,37 @@ public class RegisterActivity extends AppCompatActivity {
             String confirmPassword = confirmPasswordEditText.getText().toString().trim();
 
             if (validateInput(name, email, password, confirmPassword)) {
-                if (userDAO.isEmailExists(email)) {
-                    emailEditText.setError("Email already exists");
-                    return;
-                }
-
-                long userId = userDAO.registerUser(email, password, name);
-                if (userId != -1) {
-                    Toast.makeText(this, "Registration successful", Toast.LENGTH_SHORT).show();
-                    startActivity(new Intent(this, LoginActivity.class));
-                    finish();
-                } else {
-                    Toast.makeText(this, "Registration failed", Toast.LENGTH_SHORT).show();
-                }
+                // Kiểm tra email, băm mật khẩu và ghi database trên luồng nền
+                viewModel.register(email, password, name);
             }
         });
 
         loginTextView.setOnClickListener(v -> {
             startActivity(new Intent(this, LoginActivity.class));
         });
+
+        viewModel.getState().observe(this, this::onRegisterStateChanged);
+    }
+
+    private void onRegisterStateChanged(int state) {
+        registerButton.setEnabled(state != RegisterViewModel.STATE_LOADING);
+        switch (state) {
+            case RegisterViewModel.STATE_SUCCESS:
+                Toast.makeText(this, "Registration successful", Toast.LENGTH_SHORT).show();
+                startActivity(new Intent(this, LoginActivity.class));
+                finish();
+                break;
+            case RegisterViewModel.STATE_EMAIL_EXISTS:
+                emailEditText.setError("Email already exists");
+                viewModel.onErrorShown();
+                break;
+            case RegisterViewModel.STATE_FAILED:
+                Toast.makeText(this, "Registration failed", Toast.LENGTH_SHORT).show();
+                viewModel.onErrorShown();
+                break;
+            default:
+                break;
+        }
     }
 
     private boolean validateInput(String name, String email, String password, String confirmPassword) {
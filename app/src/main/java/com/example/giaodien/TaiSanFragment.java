@@ -1,23 +1,12 @@
 package com.example.giaodien;
 
+import com.example.giaodien.model.LedgerAccount;
 
+/** Tab "Tài sản". */
+public class TaiSanFragment extends LedgerFragment {
 
-import android.os.Bundle;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import androidx.fragment.app.Fragment;
-
-public class TaiSanFragment extends Fragment {
-
-    @Nullable
-    @Override
-    public View onCreateView(@NonNull LayoutInflater inflater,
-                             @Nullable ViewGroup container,
-                             @Nullable Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.fragment_tai_san, container, false);
+    public TaiSanFragment() {
+        super(LedgerAccount.ASSET, R.string.asset_balance, R.string.asset_add,
+                R.string.asset_increase, R.string.asset_decrease);
     }
 }
-
@@ -1,15 +1,12 @@
 package com.example.giaodien;
 
-import android.os.Bundle;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import androidx.fragment.app.Fragment;
+import com.example.giaodien.model.LedgerAccount;
 
-public class ThuNhapFragment extends Fragment {
+/** Tab "Thu nhập". */
+public class ThuNhapFragment extends LedgerFragment {
 
-    @Override
-    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.fragment_thu_nhap, container, false);
+    public ThuNhapFragment() {
+        super(LedgerAccount.INCOME, R.string.income_balance, R.string.income_add,
+                0, 0);
     }
 }
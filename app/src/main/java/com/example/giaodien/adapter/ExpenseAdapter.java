@@ -5,19 +5,17 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.giaodien.Expense;  // Import model Expense
 import com.example.giaodien.R;
+import com.example.giaodien.util.ExpenseFormatter;
 
-import java.text.SimpleDateFormat;
-import java.util.List;
-import java.util.Locale;
+/** Danh sách chi tiêu gần đây; mỗi lần submitList chỉ cập nhật các dòng thay đổi. */
+public class ExpenseAdapter extends ListAdapter<Expense, ExpenseAdapter.ExpenseViewHolder> {
 
-public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseViewHolder> {
-    private List<Expense> expenseList;
-
-    public ExpenseAdapter(List<Expense> expenseList) {
-        this.expenseList = expenseList;
+    public ExpenseAdapter() {
+        super(new ExpenseDiffCallback());
     }
 
     @NonNull
@@ -30,17 +28,15 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
 
     @Override
     public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
-        Expense expense = expenseList.get(position);
-        holder.bind(expense);
-    }
-
-    @Override
-    public int getItemCount() {
-        return expenseList.size();
+        holder.bind(getItem(position));
     }
 
     public static class ExpenseViewHolder extends RecyclerView.ViewHolder {
         private TextView tvAmount, tvCategory, tvDate;
+        // TextView giữ tham chiếu tới mảng, nên mỗi ViewHolder có bộ đệm riêng
+        private final char[] amountChars = new char[ExpenseFormatter.MAX_AMOUNT_CHARS];
+        private final char[] dateChars = new char[ExpenseFormatter.MAX_DATE_CHARS];
+        private final ExpenseFormatter formatter = ExpenseFormatter.getInstance();
 
         public ExpenseViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -50,12 +46,11 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
         }
 
         public void bind(Expense expense) {
-            tvAmount.setText(String.format("%,.0f đ", expense.getAmount()));
+            tvAmount.setText(amountChars, 0, formatter.formatAmount(expense.getAmount(), amountChars));
             tvCategory.setText(expense.getCategory());
 
             // Định dạng ngày tháng
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-            tvDate.setText(sdf.format(expense.getTimestamp()));
+            tvDate.setText(dateChars, 0, formatter.formatDate(expense.getTimestamp(), dateChars));
         }
     }
 }
\ No newline at end of file
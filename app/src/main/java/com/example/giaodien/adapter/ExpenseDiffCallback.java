@@ -0,0 +1,26 @@
+package com.example.giaodien.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.giaodien.Expense;
+
+import java.util.Objects;
+
+/** Matches expenses by database id; rows are rebound only when a shown field changed. */
+final class ExpenseDiffCallback extends DiffUtil.ItemCallback<Expense> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Expense oldItem, @NonNull Expense newItem) {
+        return oldItem.getExpenseId() == newItem.getExpenseId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Expense oldItem, @NonNull Expense newItem) {
+        return oldItem.getAmount() == newItem.getAmount()
+                && oldItem.getTimestamp() == newItem.getTimestamp()
+                && Objects.equals(oldItem.getCategory(), newItem.getCategory())
+                && Objects.equals(oldItem.getPaymentMethod(), newItem.getPaymentMethod())
+                && Objects.equals(oldItem.getDescription(), newItem.getDescription());
+    }
+}
@@ -1,30 +1,44 @@
 package com.example.giaodien.adapter;
 
-
-
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.giaodien.R;
 import com.example.giaodien.Expense;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import com.example.giaodien.repository.ExpensePager;
+import com.example.giaodien.util.ExpenseFormatter;
 import java.util.List;
-import java.util.Locale;
 
-public class ExpenseHistoryAdapter extends RecyclerView.Adapter<ExpenseHistoryAdapter.ExpenseViewHolder> {
-    private final List<Expense> expenses;
-    private final SimpleDateFormat dateFormat;
-    private final NumberFormat currencyFormat;
+/**
+ * Shows the expense history held by an {@link ExpensePager}. The pager owns the loaded pages,
+ * so a new adapter can be attached to it after a configuration change without re-querying.
+ * Each snapshot the pager publishes is diffed off the main thread.
+ */
+public class ExpenseHistoryAdapter extends ListAdapter<Expense, ExpenseHistoryAdapter.ExpenseViewHolder>
+        implements ExpensePager.Listener {
+
+    private final ExpensePager pager;
+
+    public ExpenseHistoryAdapter(ExpensePager pager) {
+        super(new ExpenseDiffCallback());
+        this.pager = pager;
+    }
 
-    public ExpenseHistoryAdapter(List<Expense> expenses) {
-        this.expenses = expenses;
-        this.dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-        this.currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        pager.setListener(this);
+        submitList(pager.snapshot());
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        pager.setListener(null);
     }
 
     @NonNull
@@ -32,28 +46,30 @@ public class ExpenseHistoryAdapter extends RecyclerView.Adapter<ExpenseHistoryAd
     public ExpenseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_expense_history, parent, false);
-        return new ExpenseViewHolder(view, dateFormat, currencyFormat);
+        return new ExpenseViewHolder(view);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
-        holder.bind(expenses.get(position));
+        Expense expense = getItem(position);
+        holder.bind(expense);
+        pager.onItemAccessed(expense);
     }
 
     @Override
-    public int getItemCount() {
-        return expenses.size();
+    public void onSnapshot(List<Expense> expenses) {
+        submitList(expenses);
     }
 
     static class ExpenseViewHolder extends RecyclerView.ViewHolder {
         private final TextView tvAmount, tvCategory, tvDate, tvPaymentMethod, tvDescription;
-        private final SimpleDateFormat dateFormat;
-        private final NumberFormat currencyFormat;
+        // TextView keeps a reference to the array it was given, so buffers are per holder
+        private final char[] amountChars = new char[ExpenseFormatter.MAX_AMOUNT_CHARS];
+        private final char[] dateChars = new char[ExpenseFormatter.MAX_DATE_CHARS];
+        private final ExpenseFormatter formatter = ExpenseFormatter.getInstance();
 
-        public ExpenseViewHolder(@NonNull View itemView, SimpleDateFormat dateFormat, NumberFormat currencyFormat) {
+        public ExpenseViewHolder(@NonNull View itemView) {
             super(itemView);
-            this.dateFormat = dateFormat;
-            this.currencyFormat = currencyFormat;
 
             tvAmount = itemView.findViewById(R.id.tvAmount);
             tvCategory = itemView.findViewById(R.id.tvCategory);
@@ -63,11 +79,11 @@ public class ExpenseHistoryAdapter extends RecyclerView.Adapter<ExpenseHistoryAd
         }
 
         public void bind(Expense expense) {
-            tvAmount.setText(currencyFormat.format(expense.getAmount()));
+            tvAmount.setText(amountChars, 0, formatter.formatAmount(expense.getAmount(), amountChars));
             tvCategory.setText(expense.getCategory());
-            tvDate.setText(dateFormat.format(new Date(expense.getTimestamp())));
+            tvDate.setText(dateChars, 0, formatter.formatDateTime(expense.getTimestamp(), dateChars));
             tvPaymentMethod.setText(expense.getPaymentMethod());
             tvDescription.setText(expense.getDescription());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.example.giaodien.adapter;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.giaodien.R;
+import com.example.giaodien.model.LedgerEntry;
+import com.example.giaodien.util.ExpenseFormatter;
+
+import java.util.Objects;
+
+/** Các giao dịch gần đây của một tài khoản sổ cái; số dương màu xanh, số âm màu đỏ. */
+public class LedgerEntryAdapter extends ListAdapter<LedgerEntry, LedgerEntryAdapter.EntryViewHolder> {
+    private static final int COLOR_INCREASE = 0xFF388E3C;
+    private static final int COLOR_DECREASE = 0xFFD32F2F;
+
+    private static final DiffUtil.ItemCallback<LedgerEntry> DIFF = new DiffUtil.ItemCallback<LedgerEntry>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull LedgerEntry oldItem, @NonNull LedgerEntry newItem) {
+            return oldItem.getEntryId() == newItem.getEntryId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull LedgerEntry oldItem, @NonNull LedgerEntry newItem) {
+            return oldItem.getAmount() == newItem.getAmount()
+                    && oldItem.getTimestamp() == newItem.getTimestamp()
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription());
+        }
+    };
+
+    public LedgerEntryAdapter() {
+        super(DIFF);
+    }
+
+    @NonNull
+    @Override
+    public EntryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_ledger_entry, parent, false);
+        return new EntryViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EntryViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    public static class EntryViewHolder extends RecyclerView.ViewHolder {
+        private final TextView tvAmount, tvDate, tvDescription;
+        private final char[] amountChars = new char[ExpenseFormatter.MAX_AMOUNT_CHARS];
+        private final char[] dateChars = new char[ExpenseFormatter.MAX_DATE_CHARS];
+        private final ExpenseFormatter formatter = ExpenseFormatter.getInstance();
+
+        public EntryViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvAmount = itemView.findViewById(R.id.tvAmount);
+            tvDate = itemView.findViewById(R.id.tvDate);
+            tvDescription = itemView.findViewById(R.id.tvDescription);
+        }
+
+        public void bind(LedgerEntry entry) {
+            tvAmount.setText(amountChars, 0, formatter.formatAmount(entry.getAmount(), amountChars));
+            tvAmount.setTextColor(entry.getAmount() < 0 ? COLOR_DECREASE : COLOR_INCREASE);
+            tvDate.setText(dateChars, 0, formatter.formatDate(entry.getTimestamp(), dateChars));
+            tvDescription.setText(entry.getDescription());
+            tvDescription.setVisibility(entry.getDescription() == null ? View.GONE : View.VISIBLE);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.giaodien.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregations over an {@link ExpenseSnapshot}, split across a fork/join pool. Ranges are
+ * half-open, {@code fromMillis <= date < toMillis}. Slices below {@link #SEQUENTIAL_THRESHOLD}
+ * rows are summed on the calling thread, where forking would cost more than it saves.
+ */
+public final class ExpenseAnalytics {
+    static final int SEQUENTIAL_THRESHOLD = 8 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public ExpenseAnalytics() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ExpenseAnalytics(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Total per category id, indexed like {@link ExpenseSnapshot#getCategory(int)}. */
+    public long[] totalsByCategory(ExpenseSnapshot snapshot, long fromMillis, long toMillis) {
+        int from = snapshot.lowerBound(fromMillis);
+        int to = snapshot.lowerBound(toMillis);
+        return pool.invoke(new CategoryTotalsTask(snapshot, from, to));
+    }
+
+    /**
+     * Total per period, where period {@code i} is {@code boundaries[i] <= date < boundaries[i + 1]}.
+     * Boundaries must be ascending, e.g. the first millisecond of each month.
+     */
+    public long[] totalsByPeriod(ExpenseSnapshot snapshot, long[] boundaries) {
+        if (boundaries.length < 2) {
+            return new long[0];
+        }
+        int from = snapshot.lowerBound(boundaries[0]);
+        int to = snapshot.lowerBound(boundaries[boundaries.length - 1]);
+        return pool.invoke(new PeriodTotalsTask(snapshot, boundaries, from, to));
+    }
+
+    /**
+     * Amounts at the given percentiles (0..100, nearest rank) of the expenses in the range, or an
+     * array of zeros when the range is empty.
+     */
+    public long[] percentiles(ExpenseSnapshot snapshot, long fromMillis, long toMillis, double... percents) {
+        int from = snapshot.lowerBound(fromMillis);
+        int to = snapshot.lowerBound(toMillis);
+        long[] result = new long[percents.length];
+        if (from >= to) {
+            return result;
+        }
+        long[] sorted = new long[to - from];
+        for (int i = from; i < to; i++) {
+            sorted[i - from] = snapshot.getAmount(i);
+        }
+        // Sorts in parallel on the common fork/join pool for large slices
+        Arrays.parallelSort(sorted);
+        for (int i = 0; i < percents.length; i++) {
+            double p = Math.min(Math.max(percents[i], 0), 100);
+            int rank = (int) Math.ceil(p / 100 * sorted.length);
+            result[i] = sorted[Math.max(rank, 1) - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Trailing moving average of {@code series}, e.g. the output of {@link #totalsByPeriod}.
+     * The first {@code window - 1} entries average over the values available so far.
+     */
+    public static double[] movingAverage(long[] series, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        double[] averages = new double[series.length];
+        long sum = 0;
+        for (int i = 0; i < series.length; i++) {
+            sum = Math.addExact(sum, series[i]);
+            if (i >= window) {
+                sum -= series[i - window];
+            }
+            averages[i] = (double) sum / Math.min(i + 1, window);
+        }
+        return averages;
+    }
+
+    private static final class CategoryTotalsTask extends RecursiveTask<long[]> {
+        private final ExpenseSnapshot snapshot;
+        private final int from;
+        private final int to;
+
+        CategoryTotalsTask(ExpenseSnapshot snapshot, int from, int to) {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                long[] totals = new long[snapshot.getCategoryCount()];
+                for (int i = from; i < to; i++) {
+                    int category = snapshot.getCategoryId(i);
+                    totals[category] = Math.addExact(totals[category], snapshot.getAmount(i));
+                }
+                return totals;
+            }
+            int mid = (from + to) >>> 1;
+            CategoryTotalsTask left = new CategoryTotalsTask(snapshot, from, mid);
+            left.fork();
+            long[] totals = new CategoryTotalsTask(snapshot, mid, to).compute();
+            return addInto(totals, left.join());
+        }
+    }
+
+    private static final class PeriodTotalsTask extends RecursiveTask<long[]> {
+        private final ExpenseSnapshot snapshot;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+
+        PeriodTotalsTask(ExpenseSnapshot snapshot, long[] boundaries, int from, int to) {
+            this.snapshot = snapshot;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                long[] totals = new long[boundaries.length - 1];
+                if (from >= to) {
+                    return totals;
+                }
+                // Rows are in date order: find the first period once, then walk forward
+                int period = Arrays.binarySearch(boundaries, snapshot.getDate(from));
+                period = period >= 0 ? period : -period - 2;
+                for (int i = from; i < to; i++) {
+                    long date = snapshot.getDate(i);
+                    while (date >= boundaries[period + 1]) {
+                        period++;
+                    }
+                    totals[period] = Math.addExact(totals[period], snapshot.getAmount(i));
+                }
+                return totals;
+            }
+            int mid = (from + to) >>> 1;
+            PeriodTotalsTask left = new PeriodTotalsTask(snapshot, boundaries, from, mid);
+            left.fork();
+            long[] totals = new PeriodTotalsTask(snapshot, boundaries, mid, to).compute();
+            return addInto(totals, left.join());
+        }
+    }
+
+    private static long[] addInto(long[] target, long[] other) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = Math.addExact(target[i], other[i]);
+        }
+        return target;
+    }
+}
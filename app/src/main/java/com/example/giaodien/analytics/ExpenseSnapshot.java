@@ -0,0 +1,291 @@
+package com.example.giaodien.analytics;
+
+import com.example.giaodien.database.DatabaseHelper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only, column-oriented copy of one user's expenses for analysis. Amounts, dates, ids and
+ * dictionary-encoded categories and payment methods sit in primitive arrays sorted by
+ * (date, expense_id), so a date range is a contiguous slice found by binary search.
+ *
+ * <p>Instances never change; {@link #refresh(DatabaseHelper)} returns a new snapshot that shares
+ * nothing with this one, so readers on other threads are never disturbed.</p>
+ *
+ * <p>No screen uses it yet: the dashboard chart reads the per-month rollup table. It is measured
+ * in the benchmark module against aggregating in SQL.</p>
+ */
+public final class ExpenseSnapshot {
+    private final long userId;
+    private final int size;
+    private final long[] expenseIds;
+    private final long[] amounts;
+    private final long[] dates;
+    private final int[] categoryIds;
+    private final int[] paymentIds;
+    private final String[] categories;
+    private final String[] paymentMethods;
+    private final long maxExpenseId;
+    private final long total;
+    // DatabaseHelper versions read before the rows were, see refresh
+    private final long writeVersion;
+    private final long removeVersion;
+
+    private ExpenseSnapshot(Builder builder) {
+        userId = builder.userId;
+        size = builder.size;
+        expenseIds = builder.expenseIds;
+        amounts = builder.amounts;
+        dates = builder.dates;
+        categoryIds = builder.categoryIds;
+        paymentIds = builder.paymentIds;
+        categories = builder.categories.toArray();
+        paymentMethods = builder.paymentMethods.toArray();
+        maxExpenseId = builder.maxExpenseId;
+        total = builder.total;
+        writeVersion = builder.writeVersion;
+        removeVersion = builder.removeVersion;
+    }
+
+    /** Reads every expense of {@code userId}. Must run off the main thread. */
+    public static ExpenseSnapshot load(DatabaseHelper dbHelper, long userId) {
+        Builder builder = new Builder(userId, null)
+                .atVersions(dbHelper.getWriteVersion(), dbHelper.getRemoveVersion());
+        dbHelper.readExpenseRows(userId, 0, builder);
+        return builder.build();
+    }
+
+    /**
+     * Returns a snapshot including every write since this one was taken. When expenses were only
+     * added, just the rows past {@code maxExpenseId} are read; after any delete or restore, which
+     * {@link DatabaseHelper#getRemoveVersion()} reveals, the snapshot is loaded again from
+     * scratch. Must run off the main thread.
+     */
+    public ExpenseSnapshot refresh(DatabaseHelper dbHelper) {
+        long currentWrite = dbHelper.getWriteVersion();
+        long currentRemove = dbHelper.getRemoveVersion();
+        if (currentWrite == writeVersion) {
+            return this;
+        }
+        if (currentRemove != removeVersion) {
+            return load(dbHelper, userId);
+        }
+        Builder builder = new Builder(userId, this).atVersions(currentWrite, currentRemove);
+        dbHelper.readExpenseRows(userId, maxExpenseId, builder);
+        return builder.build();
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getExpenseId(int row) {
+        return expenseIds[row];
+    }
+
+    public long getAmount(int row) {
+        return amounts[row];
+    }
+
+    public long getDate(int row) {
+        return dates[row];
+    }
+
+    public int getCategoryId(int row) {
+        return categoryIds[row];
+    }
+
+    public int getPaymentMethodId(int row) {
+        return paymentIds[row];
+    }
+
+    /** Number of distinct categories; category ids run from 0 to this minus one. */
+    public int getCategoryCount() {
+        return categories.length;
+    }
+
+    public String getCategory(int categoryId) {
+        return categories[categoryId];
+    }
+
+    public int getPaymentMethodCount() {
+        return paymentMethods.length;
+    }
+
+    public String getPaymentMethod(int paymentId) {
+        return paymentMethods[paymentId];
+    }
+
+    /** Sum of every amount in the snapshot. */
+    public long getTotal() {
+        return total;
+    }
+
+    /** First row with {@code date >= fromMillis}. */
+    public int lowerBound(long fromMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dates[mid] < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Package-private so the benchmarks can fill a snapshot without a database
+    static final class Builder implements DatabaseHelper.ExpenseRowSink {
+        private final long userId;
+        private int size;
+        private long[] expenseIds;
+        private long[] amounts;
+        private long[] dates;
+        private int[] categoryIds;
+        private int[] paymentIds;
+        private final Dictionary categories;
+        private final Dictionary paymentMethods;
+        private long maxExpenseId;
+        private long total;
+        private long writeVersion;
+        private long removeVersion;
+        // Rows [0, sortedPrefix) come from the base snapshot and are already in order
+        private final int sortedPrefix;
+        private boolean inOrder = true;
+
+        Builder(long userId, ExpenseSnapshot base) {
+            this.userId = userId;
+            if (base == null) {
+                expenseIds = new long[256];
+                amounts = new long[256];
+                dates = new long[256];
+                categoryIds = new int[256];
+                paymentIds = new int[256];
+                categories = new Dictionary(null);
+                paymentMethods = new Dictionary(null);
+                sortedPrefix = 0;
+            } else {
+                int capacity = base.size + 64;
+                size = base.size;
+                expenseIds = Arrays.copyOf(base.expenseIds, capacity);
+                amounts = Arrays.copyOf(base.amounts, capacity);
+                dates = Arrays.copyOf(base.dates, capacity);
+                categoryIds = Arrays.copyOf(base.categoryIds, capacity);
+                paymentIds = Arrays.copyOf(base.paymentIds, capacity);
+                categories = new Dictionary(base.categories);
+                paymentMethods = new Dictionary(base.paymentMethods);
+                maxExpenseId = base.maxExpenseId;
+                total = base.total;
+                sortedPrefix = base.size;
+            }
+        }
+
+        Builder atVersions(long writeVersion, long removeVersion) {
+            this.writeVersion = writeVersion;
+            this.removeVersion = removeVersion;
+            return this;
+        }
+
+        @Override
+        public void accept(long expenseId, long amount, String category, String paymentMethod, long date) {
+            if (size == dates.length) {
+                int capacity = size * 2;
+                expenseIds = Arrays.copyOf(expenseIds, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                paymentIds = Arrays.copyOf(paymentIds, capacity);
+            }
+            // New rows arrive in order among themselves, but may be dated before older rows
+            if (size > 0 && size == sortedPrefix && date < dates[size - 1]) {
+                inOrder = false;
+            }
+            expenseIds[size] = expenseId;
+            amounts[size] = amount;
+            dates[size] = date;
+            categoryIds[size] = categories.encode(category);
+            paymentIds[size] = paymentMethods.encode(paymentMethod);
+            size++;
+            maxExpenseId = Math.max(maxExpenseId, expenseId);
+            total = Math.addExact(total, amount);
+        }
+
+        ExpenseSnapshot build() {
+            if (!inOrder) {
+                mergeRuns();
+            }
+            return new ExpenseSnapshot(this);
+        }
+
+        // Merges the sorted base rows with the sorted new rows in one linear pass
+        private void mergeRuns() {
+            long[] ids = new long[size];
+            long[] amt = new long[size];
+            long[] dt = new long[size];
+            int[] cat = new int[size];
+            int[] pay = new int[size];
+            int a = 0;
+            int b = sortedPrefix;
+            for (int out = 0; out < size; out++) {
+                int from;
+                if (b >= size || (a < sortedPrefix && (dates[a] < dates[b]
+                        || (dates[a] == dates[b] && expenseIds[a] < expenseIds[b])))) {
+                    from = a++;
+                } else {
+                    from = b++;
+                }
+                ids[out] = expenseIds[from];
+                amt[out] = amounts[from];
+                dt[out] = dates[from];
+                cat[out] = categoryIds[from];
+                pay[out] = paymentIds[from];
+            }
+            expenseIds = ids;
+            amounts = amt;
+            dates = dt;
+            categoryIds = cat;
+            paymentIds = pay;
+        }
+    }
+
+    /** Assigns ids to strings in order of first appearance. */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] values;
+        private int count;
+
+        Dictionary(String[] base) {
+            values = base == null ? new String[16] : Arrays.copyOf(base, base.length + 16);
+            if (base != null) {
+                for (String value : base) {
+                    ids.put(value, count++);
+                }
+            }
+        }
+
+        int encode(String value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count] = value;
+            ids.put(value, count);
+            return count++;
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.giaodien.database;
+
+import java.util.Arrays;
+
+/**
+ * Parallel arrays of category names and their totals in đồng, kept as primitives so that
+ * aggregating a long history never boxes or goes through floating point.
+ */
+public final class CategoryTotals {
+    private final String[] categories;
+    private final long[] totals;
+
+    public CategoryTotals(String[] categories, long[] totals) {
+        if (categories.length != totals.length) {
+            throw new IllegalArgumentException("categories and totals differ in length");
+        }
+        this.categories = categories;
+        this.totals = totals;
+    }
+
+    public int size() {
+        return categories.length;
+    }
+
+    public String getCategory(int index) {
+        return categories[index];
+    }
+
+    public long getTotal(int index) {
+        return totals[index];
+    }
+
+    /** Index of {@code category}, or -1 when it has no total. */
+    public int indexOf(String category) {
+        for (int i = 0; i < categories.length; i++) {
+            if (categories[i].equals(category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A copy with {@code amount} added to the total of {@code category}. A category without a
+     * total yet is appended, so existing categories keep their indexes.
+     */
+    public CategoryTotals plus(String category, long amount) {
+        int index = indexOf(category);
+        if (index < 0) {
+            String[] newCategories = Arrays.copyOf(categories, categories.length + 1);
+            long[] newTotals = Arrays.copyOf(totals, totals.length + 1);
+            newCategories[categories.length] = category;
+            newTotals[totals.length] = amount;
+            return new CategoryTotals(newCategories, newTotals);
+        }
+        long[] newTotals = totals.clone();
+        newTotals[index] = Math.addExact(newTotals[index], amount);
+        return new CategoryTotals(categories, newTotals);
+    }
+
+    public long getGrandTotal() {
+        long sum = 0;
+        for (long total : totals) {
+            sum = Math.addExact(sum, total);
+        }
+        return sum;
+    }
+}
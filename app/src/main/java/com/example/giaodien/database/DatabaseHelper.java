@@ -6,17 +6,40 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.example.giaodien.Expense;
+import com.example.giaodien.R;
+import com.example.giaodien.model.LedgerAccount;
+import com.example.giaodien.util.SearchText;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "FinanceManager.db";
-    private static final int DATABASE_VERSION = 4;
+    static final int DATABASE_VERSION = 12;
+
+    // Connection tuning, applied once per connection in onConfigure
+    private static final int CACHE_SIZE_KIB = 8 * 1024;
+    // Rows an upgrade copies per transaction; also bounds the work lost to a crash mid-upgrade
+    private static final int MIGRATION_CHUNK_ROWS = 10_000;
+
+    private static volatile DatabaseHelper instance;
 
     // Table Users
     public static final String TABLE_USERS = "users";
@@ -31,11 +54,47 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String TABLE_EXPENSES = "expenses";
     public static final String COLUMN_EXPENSE_ID = "expense_id";
     public static final String COLUMN_AMOUNT = "amount";
-    public static final String COLUMN_CATEGORY = "category";
-    public static final String COLUMN_PAYMENT_METHOD = "payment_method";
+    public static final String COLUMN_CATEGORY_ID = "category_id";
+    public static final String COLUMN_PAYMENT_METHOD_ID = "payment_method_id";
     public static final String COLUMN_DESCRIPTION = "description";
     public static final String COLUMN_DATE = "date";
     public static final String COLUMN_USER_FK = "user_id";
+    // Folded copy of description for search, see SearchText.fold
+    public static final String COLUMN_DESCRIPTION_KEY = "description_key";
+
+    // Text columns of expenses up to version 8; now decoded through the lookup tables below
+    public static final String COLUMN_CATEGORY = "category";
+    public static final String COLUMN_PAYMENT_METHOD = "payment_method";
+
+    // Lookup tables: category and payment method labels, stored once and referenced by id
+    public static final String TABLE_CATEGORIES = "categories";
+    public static final String TABLE_PAYMENT_METHODS = "payment_methods";
+    public static final String COLUMN_NAME = "name";
+    public static final String COLUMN_NAME_KEY = "name_key";
+
+    // Full-text index over the folded description and category name, docid = expense_id
+    public static final String TABLE_EXPENSES_FTS = "expenses_fts";
+
+    // Table Expense rollups: totals per user, month (yyyyMM, local time) and category
+    public static final String TABLE_EXPENSE_ROLLUPS = "expense_rollups";
+    public static final String COLUMN_MONTH = "month";
+    public static final String COLUMN_TOTAL = "total";
+    public static final String COLUMN_EXPENSE_COUNT = "expense_count";
+
+    // Table Ledger entries: income, debts and assets of a user, in signed đồng
+    public static final String TABLE_LEDGER_ENTRIES = "ledger_entries";
+    public static final String COLUMN_ENTRY_ID = "entry_id";
+    public static final String COLUMN_ACCOUNT = "account";
+
+    // Table Account balances: running balance per user and LedgerAccount, kept by triggers
+    public static final String TABLE_ACCOUNT_BALANCES = "account_balances";
+    public static final String COLUMN_BALANCE = "balance";
+    public static final String COLUMN_ENTRY_COUNT = "entry_count";
+
+    // Table Sessions: only the SHA-256 of each token is stored; times are epoch millis
+    public static final String TABLE_SESSIONS = "sessions";
+    public static final String COLUMN_TOKEN_HASH = "token_hash";
+    public static final String COLUMN_EXPIRES_AT = "expires_at";
 
     // SQL statements
     private static final String CREATE_TABLE_USERS =
@@ -48,7 +107,67 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_LAST_LOGIN + " INTEGER" +
                     ")";
 
+    private static final String CREATE_TABLE_CATEGORIES =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_CATEGORIES + "(" +
+                    COLUMN_CATEGORY_ID + " INTEGER PRIMARY KEY," +
+                    COLUMN_NAME + " TEXT UNIQUE NOT NULL," +
+                    COLUMN_NAME_KEY + " TEXT" +
+                    ")";
+
+    private static final String CREATE_TABLE_PAYMENT_METHODS =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_PAYMENT_METHODS + "(" +
+                    COLUMN_PAYMENT_METHOD_ID + " INTEGER PRIMARY KEY," +
+                    COLUMN_NAME + " TEXT UNIQUE NOT NULL," +
+                    COLUMN_NAME_KEY + " TEXT" +
+                    ")";
+
+    // Lookup tables as version 9 created them, before the search keys
+    private static final String CREATE_TABLE_CATEGORIES_V9 =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_CATEGORIES + "(" +
+                    COLUMN_CATEGORY_ID + " INTEGER PRIMARY KEY," +
+                    COLUMN_NAME + " TEXT UNIQUE NOT NULL" +
+                    ")";
+
+    private static final String CREATE_TABLE_PAYMENT_METHODS_V9 =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_PAYMENT_METHODS + "(" +
+                    COLUMN_PAYMENT_METHOD_ID + " INTEGER PRIMARY KEY," +
+                    COLUMN_NAME + " TEXT UNIQUE NOT NULL" +
+                    ")";
+
     private static final String CREATE_TABLE_EXPENSES =
+            "CREATE TABLE " + TABLE_EXPENSES + "(" +
+                    COLUMN_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    COLUMN_AMOUNT + " INTEGER NOT NULL," +
+                    COLUMN_CATEGORY_ID + " INTEGER NOT NULL REFERENCES " +
+                    TABLE_CATEGORIES + "(" + COLUMN_CATEGORY_ID + ")," +
+                    COLUMN_PAYMENT_METHOD_ID + " INTEGER NOT NULL REFERENCES " +
+                    TABLE_PAYMENT_METHODS + "(" + COLUMN_PAYMENT_METHOD_ID + ")," +
+                    COLUMN_DESCRIPTION + " TEXT," +
+                    COLUMN_DATE + " INTEGER DEFAULT (strftime('%s','now'))," +
+                    COLUMN_USER_FK + " INTEGER," +
+                    COLUMN_DESCRIPTION_KEY + " TEXT," +
+                    "FOREIGN KEY(" + COLUMN_USER_FK + ") REFERENCES " +
+                    TABLE_USERS + "(" + COLUMN_USER_ID + ") ON DELETE CASCADE" +
+                    ")";
+
+    // The expenses table as version 9 created it, before description_key
+    private static final String CREATE_TABLE_EXPENSES_V9 =
+            "CREATE TABLE " + TABLE_EXPENSES + "(" +
+                    COLUMN_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    COLUMN_AMOUNT + " INTEGER NOT NULL," +
+                    COLUMN_CATEGORY_ID + " INTEGER NOT NULL REFERENCES " +
+                    TABLE_CATEGORIES + "(" + COLUMN_CATEGORY_ID + ")," +
+                    COLUMN_PAYMENT_METHOD_ID + " INTEGER NOT NULL REFERENCES " +
+                    TABLE_PAYMENT_METHODS + "(" + COLUMN_PAYMENT_METHOD_ID + ")," +
+                    COLUMN_DESCRIPTION + " TEXT," +
+                    COLUMN_DATE + " INTEGER DEFAULT (strftime('%s','now'))," +
+                    COLUMN_USER_FK + " INTEGER," +
+                    "FOREIGN KEY(" + COLUMN_USER_FK + ") REFERENCES " +
+                    TABLE_USERS + "(" + COLUMN_USER_ID + ") ON DELETE CASCADE" +
+                    ")";
+
+    // The expenses table as versions 3 to 5 knew it, with amounts in REAL
+    private static final String CREATE_TABLE_EXPENSES_V5 =
             "CREATE TABLE " + TABLE_EXPENSES + "(" +
                     COLUMN_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
                     COLUMN_AMOUNT + " REAL NOT NULL," +
@@ -61,49 +180,514 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     TABLE_USERS + "(" + COLUMN_USER_ID + ") ON DELETE CASCADE" +
                     ")";
 
+    // The expenses table as versions 6 to 8 knew it, with amounts in whole đồng
+    private static final String CREATE_TABLE_EXPENSES_V8 =
+            "CREATE TABLE " + TABLE_EXPENSES + "(" +
+                    COLUMN_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    COLUMN_AMOUNT + " INTEGER NOT NULL," +
+                    COLUMN_CATEGORY + " TEXT NOT NULL," +
+                    COLUMN_PAYMENT_METHOD + " TEXT NOT NULL," +
+                    COLUMN_DESCRIPTION + " TEXT," +
+                    COLUMN_DATE + " INTEGER DEFAULT (strftime('%s','now'))," +
+                    COLUMN_USER_FK + " INTEGER," +
+                    "FOREIGN KEY(" + COLUMN_USER_FK + ") REFERENCES " +
+                    TABLE_USERS + "(" + COLUMN_USER_ID + ") ON DELETE CASCADE" +
+                    ")";
+
+    private static final String V8_COLUMNS =
+            COLUMN_EXPENSE_ID + "," + COLUMN_AMOUNT + "," + COLUMN_CATEGORY + "," +
+                    COLUMN_PAYMENT_METHOD + "," + COLUMN_DESCRIPTION + "," + COLUMN_DATE + "," + COLUMN_USER_FK;
+
+    // Rows of one upgrade chunk, see SchemaMigrator.Job
+    private static final String EXPENSE_ID_RANGE =
+            " WHERE " + COLUMN_EXPENSE_ID + " > ? AND " + COLUMN_EXPENSE_ID + " <= ?";
+
+    private static final String CREATE_TABLE_EXPENSE_ROLLUPS =
+            "CREATE TABLE " + TABLE_EXPENSE_ROLLUPS + "(" +
+                    COLUMN_USER_FK + " INTEGER NOT NULL," +
+                    COLUMN_MONTH + " INTEGER NOT NULL," +
+                    COLUMN_CATEGORY_ID + " INTEGER NOT NULL," +
+                    COLUMN_TOTAL + " INTEGER NOT NULL DEFAULT 0," +
+                    COLUMN_EXPENSE_COUNT + " INTEGER NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY(" + COLUMN_USER_FK + "," + COLUMN_MONTH + "," + COLUMN_CATEGORY_ID + ")" +
+                    ") WITHOUT ROWID";
+
+    private static final String CREATE_TABLE_LEDGER_ENTRIES =
+            "CREATE TABLE " + TABLE_LEDGER_ENTRIES + "(" +
+                    COLUMN_ENTRY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    COLUMN_ACCOUNT + " INTEGER NOT NULL," +
+                    COLUMN_AMOUNT + " INTEGER NOT NULL," +
+                    COLUMN_DESCRIPTION + " TEXT," +
+                    COLUMN_DATE + " INTEGER NOT NULL," +
+                    COLUMN_USER_FK + " INTEGER NOT NULL," +
+                    "FOREIGN KEY(" + COLUMN_USER_FK + ") REFERENCES " +
+                    TABLE_USERS + "(" + COLUMN_USER_ID + ") ON DELETE CASCADE" +
+                    ")";
+
+    private static final String CREATE_TABLE_ACCOUNT_BALANCES =
+            "CREATE TABLE " + TABLE_ACCOUNT_BALANCES + "(" +
+                    COLUMN_USER_FK + " INTEGER NOT NULL," +
+                    COLUMN_ACCOUNT + " INTEGER NOT NULL," +
+                    COLUMN_BALANCE + " INTEGER NOT NULL DEFAULT 0," +
+                    COLUMN_ENTRY_COUNT + " INTEGER NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY(" + COLUMN_USER_FK + "," + COLUMN_ACCOUNT + ")" +
+                    ") WITHOUT ROWID";
+
+    private static final String CREATE_TABLE_SESSIONS =
+            "CREATE TABLE " + TABLE_SESSIONS + "(" +
+                    COLUMN_TOKEN_HASH + " TEXT PRIMARY KEY," +
+                    COLUMN_USER_FK + " INTEGER NOT NULL," +
+                    COLUMN_CREATED_AT + " INTEGER NOT NULL," +
+                    COLUMN_EXPIRES_AT + " INTEGER NOT NULL," +
+                    "FOREIGN KEY(" + COLUMN_USER_FK + ") REFERENCES " +
+                    TABLE_USERS + "(" + COLUMN_USER_ID + ") ON DELETE CASCADE" +
+                    ") WITHOUT ROWID";
+
+    // Text is folded in Java before it is stored (SQLite's remove_diacritics=1 misses letters with
+    // two marks, such as "ứ"); unicode61 still splits words and folds case for anything else
+    private static final String CREATE_TABLE_EXPENSES_FTS =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_EXPENSES_FTS + " USING fts4(" +
+                    COLUMN_DESCRIPTION + "," + COLUMN_CATEGORY + "," +
+                    "tokenize=unicode61 \"remove_diacritics=1\")";
+
+    private static String ftsAdd(String row) {
+        return "INSERT INTO " + TABLE_EXPENSES_FTS + "(docid," + COLUMN_DESCRIPTION + "," + COLUMN_CATEGORY + ")" +
+                " SELECT " + row + "." + COLUMN_EXPENSE_ID + "," + row + "." + COLUMN_DESCRIPTION_KEY + "," +
+                COLUMN_NAME_KEY + " FROM " + TABLE_CATEGORIES +
+                " WHERE " + COLUMN_CATEGORY_ID + " = " + row + "." + COLUMN_CATEGORY_ID + ";";
+    }
+
+    private static String ftsRemove(String row) {
+        return "DELETE FROM " + TABLE_EXPENSES_FTS + " WHERE docid = " + row + "." + COLUMN_EXPENSE_ID + ";";
+    }
+
+    private static final String[] CREATE_FTS_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_fts_insert AFTER INSERT ON " + TABLE_EXPENSES +
+                    " BEGIN " + ftsAdd("NEW") + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_fts_delete AFTER DELETE ON " + TABLE_EXPENSES +
+                    " BEGIN " + ftsRemove("OLD") + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_fts_update AFTER UPDATE OF " +
+                    COLUMN_DESCRIPTION_KEY + "," + COLUMN_CATEGORY_ID + " ON " + TABLE_EXPENSES +
+                    " BEGIN " + ftsRemove("OLD") + ftsAdd("NEW") + " END"
+    };
+
+    // Rollup keys for a row of expenses; rows without a user are grouped under user 0
+    private static String rollupUser(String row) {
+        return "IFNULL(" + row + "." + COLUMN_USER_FK + ",0)";
+    }
+
+    private static String rollupMonth(String row) {
+        return "CAST(strftime('%Y%m', " + row + "." + COLUMN_DATE + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+    }
+
+    private static String rollupKey(String row) {
+        return COLUMN_USER_FK + " = " + rollupUser(row) +
+                " AND " + COLUMN_MONTH + " = " + rollupMonth(row) +
+                " AND " + COLUMN_CATEGORY_ID + " = " + row + "." + COLUMN_CATEGORY_ID;
+    }
+
+    // UPSERT needs SQLite 3.24 (API 30), so add a zero row first and then update it
+    private static String rollupAdd(String row) {
+        return "INSERT OR IGNORE INTO " + TABLE_EXPENSE_ROLLUPS +
+                "(" + COLUMN_USER_FK + "," + COLUMN_MONTH + "," + COLUMN_CATEGORY_ID + ") VALUES (" +
+                rollupUser(row) + "," + rollupMonth(row) + "," + row + "." + COLUMN_CATEGORY_ID + ");" +
+                "UPDATE " + TABLE_EXPENSE_ROLLUPS + " SET " +
+                COLUMN_TOTAL + " = " + COLUMN_TOTAL + " + " + row + "." + COLUMN_AMOUNT + "," +
+                COLUMN_EXPENSE_COUNT + " = " + COLUMN_EXPENSE_COUNT + " + 1" +
+                " WHERE " + rollupKey(row) + ";";
+    }
+
+    private static String rollupSubtract(String row) {
+        return "UPDATE " + TABLE_EXPENSE_ROLLUPS + " SET " +
+                COLUMN_TOTAL + " = " + COLUMN_TOTAL + " - " + row + "." + COLUMN_AMOUNT + "," +
+                COLUMN_EXPENSE_COUNT + " = " + COLUMN_EXPENSE_COUNT + " - 1" +
+                " WHERE " + rollupKey(row) + ";" +
+                "DELETE FROM " + TABLE_EXPENSE_ROLLUPS +
+                " WHERE " + rollupKey(row) + " AND " + COLUMN_EXPENSE_COUNT + " <= 0;";
+    }
+
+    private static final String[] CREATE_ROLLUP_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_rollup_insert AFTER INSERT ON " + TABLE_EXPENSES +
+                    " BEGIN " + rollupAdd("NEW") + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_rollup_delete AFTER DELETE ON " + TABLE_EXPENSES +
+                    " BEGIN " + rollupSubtract("OLD") + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_rollup_update AFTER UPDATE OF " +
+                    COLUMN_AMOUNT + "," + COLUMN_CATEGORY_ID + "," + COLUMN_DATE + "," + COLUMN_USER_FK +
+                    " ON " + TABLE_EXPENSES +
+                    " BEGIN " + rollupSubtract("OLD") + rollupAdd("NEW") + " END"
+    };
+
+    // Balance keys: ledger rows carry their account, expense rows all go to LedgerAccount.EXPENSE
+    private static final String EXPENSE_ACCOUNT = String.valueOf(LedgerAccount.EXPENSE.id);
+
+    private static String balanceKey(String row, String account) {
+        return COLUMN_USER_FK + " = " + rollupUser(row) + " AND " + COLUMN_ACCOUNT + " = " + account;
+    }
+
+    private static String balanceAdd(String row, String account) {
+        return "INSERT OR IGNORE INTO " + TABLE_ACCOUNT_BALANCES +
+                "(" + COLUMN_USER_FK + "," + COLUMN_ACCOUNT + ") VALUES (" + rollupUser(row) + "," + account + ");" +
+                "UPDATE " + TABLE_ACCOUNT_BALANCES + " SET " +
+                COLUMN_BALANCE + " = " + COLUMN_BALANCE + " + " + row + "." + COLUMN_AMOUNT + "," +
+                COLUMN_ENTRY_COUNT + " = " + COLUMN_ENTRY_COUNT + " + 1" +
+                " WHERE " + balanceKey(row, account) + ";";
+    }
+
+    private static String balanceSubtract(String row, String account) {
+        return "UPDATE " + TABLE_ACCOUNT_BALANCES + " SET " +
+                COLUMN_BALANCE + " = " + COLUMN_BALANCE + " - " + row + "." + COLUMN_AMOUNT + "," +
+                COLUMN_ENTRY_COUNT + " = " + COLUMN_ENTRY_COUNT + " - 1" +
+                " WHERE " + balanceKey(row, account) + ";" +
+                "DELETE FROM " + TABLE_ACCOUNT_BALANCES +
+                " WHERE " + balanceKey(row, account) + " AND " + COLUMN_ENTRY_COUNT + " <= 0;";
+    }
+
+    private static final String[] CREATE_BALANCE_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS trg_ledger_balance_insert AFTER INSERT ON " + TABLE_LEDGER_ENTRIES +
+                    " BEGIN " + balanceAdd("NEW", "NEW." + COLUMN_ACCOUNT) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_ledger_balance_delete AFTER DELETE ON " + TABLE_LEDGER_ENTRIES +
+                    " BEGIN " + balanceSubtract("OLD", "OLD." + COLUMN_ACCOUNT) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_ledger_balance_update AFTER UPDATE OF " +
+                    COLUMN_AMOUNT + "," + COLUMN_ACCOUNT + "," + COLUMN_USER_FK + " ON " + TABLE_LEDGER_ENTRIES +
+                    " BEGIN " + balanceSubtract("OLD", "OLD." + COLUMN_ACCOUNT) +
+                    balanceAdd("NEW", "NEW." + COLUMN_ACCOUNT) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_balance_insert AFTER INSERT ON " + TABLE_EXPENSES +
+                    " BEGIN " + balanceAdd("NEW", EXPENSE_ACCOUNT) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_balance_delete AFTER DELETE ON " + TABLE_EXPENSES +
+                    " BEGIN " + balanceSubtract("OLD", EXPENSE_ACCOUNT) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trg_expenses_balance_update AFTER UPDATE OF " +
+                    COLUMN_AMOUNT + "," + COLUMN_USER_FK + " ON " + TABLE_EXPENSES +
+                    " BEGIN " + balanceSubtract("OLD", EXPENSE_ACCOUNT) + balanceAdd("NEW", EXPENSE_ACCOUNT) + " END"
+    };
+
+    // Balance rows recomputed from the ledger and the expenses, same column order as account_balances
+    static final String SQL_BALANCES_FROM_ENTRIES =
+            "SELECT " + rollupUser(TABLE_LEDGER_ENTRIES) + "," + COLUMN_ACCOUNT + "," +
+                    "SUM(" + COLUMN_AMOUNT + "), COUNT(*) FROM " + TABLE_LEDGER_ENTRIES + " GROUP BY 1, 2" +
+                    " UNION ALL " +
+                    "SELECT " + rollupUser(TABLE_EXPENSES) + "," + EXPENSE_ACCOUNT + "," +
+                    "SUM(" + COLUMN_AMOUNT + "), COUNT(*) FROM " + TABLE_EXPENSES + " GROUP BY 1";
+
+    // Rollup rows recomputed from the raw table, same column order as expense_rollups
+    private static final String SQL_ROLLUPS_FROM_EXPENSES =
+            "SELECT " + rollupUser(TABLE_EXPENSES) + "," + rollupMonth(TABLE_EXPENSES) + "," +
+                    COLUMN_CATEGORY_ID + ", SUM(" + COLUMN_AMOUNT + "), COUNT(*)" +
+                    " FROM " + TABLE_EXPENSES +
+                    " GROUP BY 1, 2, 3";
+
     // Indexes
+    // Only created by the version 2 upgrade; the UNIQUE constraint already indexes email
     private static final String CREATE_EMAIL_INDEX =
             "CREATE INDEX idx_users_email ON " + TABLE_USERS + "(" + COLUMN_EMAIL + ")";
 
     private static final String CREATE_EXPENSE_DATE_INDEX =
-            "CREATE INDEX idx_expenses_date ON " + TABLE_EXPENSES + "(" + COLUMN_DATE + ")";
+            "CREATE INDEX IF NOT EXISTS idx_expenses_date ON " + TABLE_EXPENSES + "(" + COLUMN_DATE + ")";
+
+    // Per-user history: equality on user_id, then rows already in date order (rowid breaks ties)
+    private static final String CREATE_EXPENSE_USER_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_expenses_user_date ON " + TABLE_EXPENSES + "(" +
+                    COLUMN_USER_FK + "," + COLUMN_DATE + ")";
+
+    // Revoking or pruning a user's sessions, and the ON DELETE CASCADE from users
+    private static final String CREATE_SESSION_USER_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_sessions_user ON " + TABLE_SESSIONS + "(" +
+                    COLUMN_USER_FK + "," + COLUMN_EXPIRES_AT + ")";
+
+    // One account of one user, newest first: equality on both, then rows already in date order
+    private static final String CREATE_LEDGER_USER_ACCOUNT_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_ledger_user_account_date ON " + TABLE_LEDGER_ENTRIES + "(" +
+                    COLUMN_USER_FK + "," + COLUMN_ACCOUNT + "," + COLUMN_DATE + ")";
+
+    // History filtered by category: equality on category_id, then rows already in date order
+    private static final String CREATE_EXPENSE_CATEGORY_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_expenses_category_date ON " + TABLE_EXPENSES + "(" +
+                    COLUMN_CATEGORY_ID + "," + COLUMN_DATE + ")";
+
+    // Category totals for a user and date range, answered from the index alone
+    private static final String CREATE_EXPENSE_USER_CATEGORY_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_expenses_user_category ON " + TABLE_EXPENSES + "(" +
+                    COLUMN_USER_FK + "," + COLUMN_CATEGORY_ID + "," + COLUMN_DATE + "," + COLUMN_AMOUNT + ")";
+
+    // Queries, package-private so the query-plan tests check exactly what runs here
+    static final String SQL_ALL_EXPENSES =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.LIST_COLUMNS) +
+                    " ORDER BY " + COLUMN_DATE + " DESC";
+
+    static final String SQL_RECENT_EXPENSES = SQL_ALL_EXPENSES + " LIMIT ?";
+
+    static final String SQL_EXPENSE_BY_ID =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.DETAIL_COLUMNS) +
+                    " WHERE " + COLUMN_EXPENSE_ID + " = ?";
+
+    // Oldest first, walked straight off idx_expenses_date
+    static final String SQL_EXPORT_EXPENSES =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.DETAIL_COLUMNS) +
+                    " ORDER BY " + COLUMN_DATE + "," + COLUMN_EXPENSE_ID;
+
+    static final String SQL_EXPENSES_BY_USER =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.LIST_COLUMNS) +
+                    " WHERE " + COLUMN_USER_FK + " = ?" +
+                    " ORDER BY " + COLUMN_DATE + " DESC";
+
+    // Without INDEXED BY the planner may prefer the date range on idx_expenses_user_date and then
+    // sort for the GROUP BY; the category index already yields groups in order
+    static final String SQL_CATEGORY_TOTALS =
+            "SELECT " + COLUMN_CATEGORY_ID + ", SUM(" + COLUMN_AMOUNT + ")" +
+                    " FROM " + TABLE_EXPENSES + " INDEXED BY idx_expenses_user_category" +
+                    " WHERE " + COLUMN_USER_FK + " = ? AND " + COLUMN_DATE + " >= ? AND " + COLUMN_DATE + " < ?" +
+                    " GROUP BY " + COLUMN_CATEGORY_ID;
+
+    // Rows come back in date order, so month buckets are filled with a single forward pass
+    static final String SQL_AMOUNTS_BY_DATE =
+            "SELECT " + COLUMN_DATE + "," + COLUMN_AMOUNT +
+                    " FROM " + TABLE_EXPENSES +
+                    " WHERE " + COLUMN_USER_FK + " = ? AND " + COLUMN_DATE + " >= ? AND " + COLUMN_DATE + " < ?" +
+                    " ORDER BY " + COLUMN_DATE;
+
+    static final String SQL_MONTH_ROLLUP =
+            "SELECT " + COLUMN_CATEGORY_ID + "," + COLUMN_TOTAL +
+                    " FROM " + TABLE_EXPENSE_ROLLUPS +
+                    " WHERE " + COLUMN_USER_FK + " = ? AND " + COLUMN_MONTH + " = ?" +
+                    " ORDER BY " + COLUMN_CATEGORY_ID;
+
+    // Rows in (date, expense_id) order straight from idx_expenses_user_date, which ends in the
+    // rowid; pinned so the planner does not pick a rowid range and then sort
+    static final String SQL_USER_ROWS_AFTER_ID =
+            "SELECT " + COLUMN_EXPENSE_ID + "," + COLUMN_AMOUNT + "," + COLUMN_CATEGORY_ID + "," +
+                    COLUMN_PAYMENT_METHOD_ID + "," + COLUMN_DATE +
+                    " FROM " + TABLE_EXPENSES + " INDEXED BY idx_expenses_user_date" +
+                    " WHERE " + COLUMN_USER_FK + " = ? AND " + COLUMN_EXPENSE_ID + " > ?" +
+                    " ORDER BY " + COLUMN_DATE + "," + COLUMN_EXPENSE_ID;
+
+    static final String SQL_USER_COUNT_AND_TOTAL =
+            "SELECT IFNULL(SUM(" + COLUMN_EXPENSE_COUNT + "),0), IFNULL(SUM(" + COLUMN_TOTAL + "),0)" +
+                    " FROM " + TABLE_EXPENSE_ROLLUPS +
+                    " WHERE " + COLUMN_USER_FK + " = ?";
+
+    // Keyset pages. The leading "date <= ?" gives SQLite a range on idx_expenses_date and the
+    // rowid breaks ties; row-value comparisons are not available on the SQLite of API 24.
+    static final String SQL_FIRST_PAGE =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.LIST_COLUMNS) +
+                    " ORDER BY " + COLUMN_DATE + " DESC, " + COLUMN_EXPENSE_ID + " DESC" +
+                    " LIMIT ?";
+
+    static final String SQL_PAGE_OLDER_THAN =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.LIST_COLUMNS) +
+                    " WHERE " + COLUMN_DATE + " <= ? AND (" + COLUMN_DATE + " < ? OR " + COLUMN_EXPENSE_ID + " < ?)" +
+                    " ORDER BY " + COLUMN_DATE + " DESC, " + COLUMN_EXPENSE_ID + " DESC" +
+                    " LIMIT ?";
+
+    static final String SQL_PAGE_NEWER_THAN =
+            ExpenseCursorMapper.select(ExpenseCursorMapper.LIST_COLUMNS) +
+                    " WHERE " + COLUMN_DATE + " >= ? AND (" + COLUMN_DATE + " > ? OR " + COLUMN_EXPENSE_ID + " > ?)" +
+                    " ORDER BY " + COLUMN_DATE + " ASC, " + COLUMN_EXPENSE_ID + " ASC" +
+                    " LIMIT ?";
 
-    public DatabaseHelper(Context context) {
+    /**
+     * Returns the process-wide helper. The underlying connection is opened lazily and kept
+     * for the lifetime of the process, so callers must not close the database themselves.
+     */
+    public static DatabaseHelper getInstance(Context context) {
+        DatabaseHelper result = instance;
+        if (result == null) {
+            synchronized (DatabaseHelper.class) {
+                result = instance;
+                if (result == null) {
+                    result = new DatabaseHelper(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    public static void resetInstance() {
+        synchronized (DatabaseHelper.class) {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+            }
+        }
+    }
+
+    private final Context context;
+    private volatile MigrationListener migrationListener;
+    private volatile boolean upgradeChecked;
+    // Bumped after every committed write to expenses, so cached query results can be checked
+    private final AtomicLong writeVersion = new AtomicLong();
+    // Bumped only by writes that remove expenses, which a reader cannot catch up on by id
+    private final AtomicLong removeVersion = new AtomicLong();
+    private final LabelDictionary categories =
+            new LabelDictionary(this, TABLE_CATEGORIES, COLUMN_CATEGORY_ID);
+    private final LabelDictionary paymentMethods =
+            new LabelDictionary(this, TABLE_PAYMENT_METHODS, COLUMN_PAYMENT_METHOD_ID);
+
+    private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /** Category labels by id; the decoded strings are shared by every expense. */
+    public LabelDictionary getCategories() {
+        return categories;
+    }
+
+    public LabelDictionary getPaymentMethods() {
+        return paymentMethods;
+    }
+
+    /** Changes whenever expenses are written; equal values mean no expense changed in between. */
+    public long getWriteVersion() {
+        return writeVersion.get();
+    }
+
+    /**
+     * Changes whenever expenses are deleted or replaced. Equal values mean every write in between
+     * only added rows, each with a higher id than any row before it.
+     */
+    public long getRemoveVersion() {
+        return removeVersion.get();
+    }
+
+    /** Receives the progress of a schema upgrade, see {@link SchemaMigrator}. */
+    public interface MigrationListener {
+        /**
+         * Called on the thread opening the database after every committed chunk.
+         *
+         * @param version   version the running step upgrades to
+         * @param rowsDone  rows of the step's current copy done so far, counting earlier attempts
+         * @param rowsTotal rows that copy reads in all
+         */
+        void onProgress(int version, long rowsDone, long rowsTotal);
+    }
+
+    /**
+     * Sets who hears about upgrade progress. Upgrades run when the database is first opened, so
+     * this has to be set before that; null stops the reports.
+     */
+    public void setMigrationListener(MigrationListener listener) {
+        migrationListener = listener;
     }
 
     @Override
     public void onConfigure(SQLiteDatabase db) {
         super.onConfigure(db);
+        // WAL only needs a full fsync at checkpoints; NORMAL keeps commits durable across app crashes
+        db.execSQL("PRAGMA synchronous=NORMAL;");
+        db.execSQL("PRAGMA cache_size=-" + CACHE_SIZE_KIB + ";");
+        db.execSQL("PRAGMA temp_store=MEMORY;");
         db.setForeignKeyConstraintsEnabled(true);
-        db.execSQL("PRAGMA foreign_keys=ON;");
     }
 
+    // Every path to a connection goes through upgradeIfNeeded, so SQLiteOpenHelper only ever
+    // sees an outdated version when the chunked upgrade failed
     @Override
-    public void onCreate(SQLiteDatabase db) {
-        executeTransaction(db, () -> {
-            db.execSQL(CREATE_TABLE_USERS);
-            db.execSQL(CREATE_TABLE_EXPENSES);
-            db.execSQL(CREATE_EMAIL_INDEX);
-            db.execSQL(CREATE_EXPENSE_DATE_INDEX);
-            Log.i(TAG, "Database created successfully");
-        });
+    public SQLiteDatabase getWritableDatabase() {
+        upgradeIfNeeded();
+        return super.getWritableDatabase();
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        executeTransaction(db, () -> {
-            if (oldVersion < 2) {
-                upgradeToVersion2(db);
-            }
-            if (oldVersion < 3) {
-                upgradeToVersion3(db);
+    public SQLiteDatabase getReadableDatabase() {
+        upgradeIfNeeded();
+        return super.getReadableDatabase();
+    }
+
+    /**
+     * Upgrades an existing database file to the current version before the helper opens it, on
+     * a connection of its own: each step commits on its own instead of inside the one transaction
+     * SQLiteOpenHelper wraps around onUpgrade, and foreign keys stay off while tables are rebuilt,
+     * as SQLite's table rebuild procedure asks. Does nothing for a new or current database.
+     *
+     * <p>The first {@link #getWritableDatabase()} or {@link #getReadableDatabase()} calls this;
+     * calling it earlier off the main thread moves a long upgrade out of that call. Only the first
+     * call does any work; callers on other threads wait for it.</p>
+     */
+    public void upgradeIfNeeded() {
+        if (upgradeChecked) {
+            return;
+        }
+        // The monitor SQLiteOpenHelper opens connections under
+        synchronized (this) {
+            if (upgradeChecked) {
+                return;
             }
-            if (oldVersion < 4) {
-                upgradeToVersion4(db);
+            File file = context.getDatabasePath(DATABASE_NAME);
+            if (file.exists()) {
+                try (SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), null,
+                        SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING)) {
+                    int version = db.getVersion();
+                    if (version > 0 && version < DATABASE_VERSION) {
+                        newMigrator().migrate(db, version, DATABASE_VERSION);
+                    }
+                } catch (SQLiteException e) {
+                    // Nothing is lost; opening the database tries the remaining steps again in onUpgrade
+                    Log.e(TAG, "Error upgrading database", e);
+                }
             }
-            Log.i(TAG, "Database upgraded from version " + oldVersion + " to " + newVersion);
+            upgradeChecked = true;
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // SQLiteOpenHelper runs this in a transaction; on failure nothing is kept and the next open retries
+        db.execSQL(CREATE_TABLE_USERS);
+        createLabelTables(db);
+        db.execSQL(CREATE_TABLE_EXPENSES);
+        db.execSQL(CREATE_EXPENSE_DATE_INDEX);
+        db.execSQL(CREATE_EXPENSE_USER_DATE_INDEX);
+        db.execSQL(CREATE_EXPENSE_USER_CATEGORY_INDEX);
+        db.execSQL(CREATE_EXPENSE_CATEGORY_DATE_INDEX);
+        db.execSQL(CREATE_TABLE_EXPENSE_ROLLUPS);
+        createRollupTriggers(db);
+        db.execSQL(CREATE_TABLE_EXPENSES_FTS);
+        createTriggers(db, CREATE_FTS_TRIGGERS);
+        db.execSQL(CREATE_TABLE_SESSIONS);
+        db.execSQL(CREATE_SESSION_USER_INDEX);
+        createLedgerTables(db);
+        Log.i(TAG, "Database created successfully");
+    }
+
+    /**
+     * Only reached when {@link #upgradeIfNeeded()} failed with a SQLiteException. The same steps
+     * then run nested in SQLiteOpenHelper's transaction: still without losing data, but committed
+     * all at once.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        newMigrator().migrate(db, oldVersion, newVersion);
+        Log.i(TAG, "Database upgraded from version " + oldVersion + " to " + newVersion);
+    }
+
+    SchemaMigrator newMigrator() {
+        return new SchemaMigrator(migrationSteps(), MIGRATION_CHUNK_ROWS, migrationListener);
+    }
+
+    // Steps by the version they upgrade to. Steps that rewrite expenses copy it into a new table
+    // in chunks of expense ids and only drop the old one in their finish phase. Amounts are REAL
+    // up to version 5; the version 6 copy rounds them to whole đồng
+    private SchemaMigrator.Step[] migrationSteps() {
+        SchemaMigrator.Step[] steps = new SchemaMigrator.Step[DATABASE_VERSION + 1];
+        steps[2] = SchemaMigrator.Step.schema(this::upgradeToVersion2);
+        steps[3] = SchemaMigrator.Step.schema(this::upgradeToVersion3);
+        steps[4] = upgradeToVersion4();
+        steps[5] = SchemaMigrator.Step.schema(this::upgradeToVersion5);
+        steps[6] = upgradeToVersion6();
+        // Rollups are keyed by category id since version 9, so that upgrade creates and fills
+        // them; a database still at version 6 has nothing to do for version 7
+        steps[8] = SchemaMigrator.Step.schema(this::upgradeToVersion8);
+        steps[9] = upgradeToVersion9();
+        steps[10] = upgradeToVersion10();
+        steps[11] = SchemaMigrator.Step.schema(db -> db.execSQL(CREATE_EXPENSE_CATEGORY_DATE_INDEX));
+        steps[12] = SchemaMigrator.Step.schema(db -> {
+            createLedgerTables(db);
+            // Existing expenses open the expense account balance
+            db.execSQL("INSERT INTO " + TABLE_ACCOUNT_BALANCES + " " + SQL_BALANCES_FROM_ENTRIES);
         });
+        return steps;
     }
 
     private void upgradeToVersion2(SQLiteDatabase db) {
@@ -113,88 +697,367 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     private void upgradeToVersion3(SQLiteDatabase db) {
-        db.execSQL(CREATE_TABLE_EXPENSES);
+        db.execSQL(CREATE_TABLE_EXPENSES_V5);
         db.execSQL(CREATE_EXPENSE_DATE_INDEX);
     }
 
-    private void upgradeToVersion4(SQLiteDatabase db) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
-        db.execSQL(CREATE_TABLE_EXPENSES);
+    // Version 4 recreated expenses and used to drop the old table with every row in it; the rows
+    // are copied across now
+    private SchemaMigrator.Step upgradeToVersion4() {
+        return SchemaMigrator.Step.copy(
+                db -> db.execSQL(CREATE_TABLE_EXPENSES_V5.replaceFirst(TABLE_EXPENSES, "expenses_v4")),
+                db -> replaceExpenses(db, "expenses_v4"),
+                SchemaMigrator.Job.sql(TABLE_EXPENSES, COLUMN_EXPENSE_ID,
+                        "INSERT INTO expenses_v4 (" + V8_COLUMNS + ") SELECT " + V8_COLUMNS +
+                                " FROM " + TABLE_EXPENSES + EXPENSE_ID_RANGE));
     }
 
-    private void executeTransaction(SQLiteDatabase db, Runnable operations) {
-        db.beginTransaction();
+    private void upgradeToVersion5(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS idx_users_email");
+        // The version 4 upgrade recreated expenses without its date index
+        db.execSQL(CREATE_EXPENSE_DATE_INDEX);
+        db.execSQL(CREATE_EXPENSE_USER_DATE_INDEX);
+    }
+
+    // SQLite cannot change a column type in place: copy into a new table with integer amounts
+    private SchemaMigrator.Step upgradeToVersion6() {
+        return SchemaMigrator.Step.copy(
+                db -> db.execSQL(CREATE_TABLE_EXPENSES_V8.replaceFirst(TABLE_EXPENSES, "expenses_v6")),
+                db -> {
+                    replaceExpenses(db, "expenses_v6");
+                    db.execSQL(CREATE_EXPENSE_DATE_INDEX);
+                    db.execSQL(CREATE_EXPENSE_USER_DATE_INDEX);
+                    // idx_expenses_user_category is created by the version 9 rebuild, on category ids
+                },
+                SchemaMigrator.Job.sql(TABLE_EXPENSES, COLUMN_EXPENSE_ID,
+                        "INSERT INTO expenses_v6 (" + V8_COLUMNS + ") SELECT " +
+                                COLUMN_EXPENSE_ID + ", CAST(ROUND(" + COLUMN_AMOUNT + ") AS INTEGER)," + COLUMN_CATEGORY + "," +
+                                COLUMN_PAYMENT_METHOD + "," + COLUMN_DESCRIPTION + "," + COLUMN_DATE + "," + COLUMN_USER_FK +
+                                " FROM " + TABLE_EXPENSES + EXPENSE_ID_RANGE));
+    }
+
+    private void upgradeToVersion8(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_SESSIONS);
+        db.execSQL(CREATE_SESSION_USER_INDEX);
+    }
+
+    /**
+     * Replaces the category and payment method strings in every expense with ids into the new
+     * lookup tables. Labels from the app's arrays keep their array order; anything else found in
+     * existing rows, such as categories the user typed, is added after them.
+     */
+    private SchemaMigrator.Step upgradeToVersion9() {
+        return SchemaMigrator.Step.copy(db -> {
+            db.execSQL(CREATE_TABLE_CATEGORIES_V9);
+            db.execSQL(CREATE_TABLE_PAYMENT_METHODS_V9);
+            seedLabels(db);
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_CATEGORIES + "(" + COLUMN_NAME + ")" +
+                    " SELECT DISTINCT " + COLUMN_CATEGORY + " FROM " + TABLE_EXPENSES);
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_PAYMENT_METHODS + "(" + COLUMN_NAME + ")" +
+                    " SELECT DISTINCT " + COLUMN_PAYMENT_METHOD + " FROM " + TABLE_EXPENSES);
+
+            // Version 7 and 8 rollups are keyed by category text
+            db.execSQL("DROP TRIGGER IF EXISTS trg_expenses_rollup_insert");
+            db.execSQL("DROP TRIGGER IF EXISTS trg_expenses_rollup_delete");
+            db.execSQL("DROP TRIGGER IF EXISTS trg_expenses_rollup_update");
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSE_ROLLUPS);
+
+            db.execSQL(CREATE_TABLE_EXPENSES_V9.replaceFirst(TABLE_EXPENSES, "expenses_v9"));
+        }, db -> {
+            replaceExpenses(db, "expenses_v9");
+            db.execSQL(CREATE_EXPENSE_DATE_INDEX);
+            db.execSQL(CREATE_EXPENSE_USER_DATE_INDEX);
+            db.execSQL(CREATE_EXPENSE_USER_CATEGORY_INDEX);
+
+            db.execSQL(CREATE_TABLE_EXPENSE_ROLLUPS);
+            createRollupTriggers(db);
+            db.execSQL("INSERT INTO " + TABLE_EXPENSE_ROLLUPS + " " + SQL_ROLLUPS_FROM_EXPENSES);
+        }, SchemaMigrator.Job.sql(TABLE_EXPENSES, COLUMN_EXPENSE_ID,
+                "INSERT INTO expenses_v9 (" +
+                        COLUMN_EXPENSE_ID + "," + COLUMN_AMOUNT + "," + COLUMN_CATEGORY_ID + "," +
+                        COLUMN_PAYMENT_METHOD_ID + "," + COLUMN_DESCRIPTION + "," + COLUMN_DATE + "," + COLUMN_USER_FK +
+                        ") SELECT e." + COLUMN_EXPENSE_ID + ",e." + COLUMN_AMOUNT + ",c." + COLUMN_CATEGORY_ID +
+                        ",p." + COLUMN_PAYMENT_METHOD_ID + ",e." + COLUMN_DESCRIPTION + ",e." + COLUMN_DATE +
+                        ",e." + COLUMN_USER_FK +
+                        " FROM " + TABLE_EXPENSES + " e" +
+                        " JOIN " + TABLE_CATEGORIES + " c ON c." + COLUMN_NAME + " = e." + COLUMN_CATEGORY +
+                        " JOIN " + TABLE_PAYMENT_METHODS + " p ON p." + COLUMN_NAME + " = e." + COLUMN_PAYMENT_METHOD +
+                        " WHERE e." + COLUMN_EXPENSE_ID + " > ? AND e." + COLUMN_EXPENSE_ID + " <= ?"));
+    }
+
+    /**
+     * Adds search keys and the full-text index, filled from the existing rows. The index triggers
+     * come last, so filling the keys does not touch the index twice.
+     */
+    private SchemaMigrator.Step upgradeToVersion10() {
+        return SchemaMigrator.Step.copy(db -> {
+            db.execSQL("ALTER TABLE " + TABLE_CATEGORIES + " ADD COLUMN " + COLUMN_NAME_KEY + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_PAYMENT_METHODS + " ADD COLUMN " + COLUMN_NAME_KEY + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_EXPENSES + " ADD COLUMN " + COLUMN_DESCRIPTION_KEY + " TEXT");
+            fillLabelKeys(db);
+            db.execSQL(CREATE_TABLE_EXPENSES_FTS);
+        }, db -> createTriggers(db, CREATE_FTS_TRIGGERS),
+                new SchemaMigrator.Job(TABLE_EXPENSES, COLUMN_EXPENSE_ID, (db, afterId, lastId) ->
+                        fillKeys(db, TABLE_EXPENSES, COLUMN_EXPENSE_ID, COLUMN_DESCRIPTION, COLUMN_DESCRIPTION_KEY,
+                                afterId, lastId)),
+                SchemaMigrator.Job.sql(TABLE_EXPENSES, COLUMN_EXPENSE_ID,
+                        "INSERT INTO " + TABLE_EXPENSES_FTS + "(docid," + COLUMN_DESCRIPTION + "," + COLUMN_CATEGORY + ")" +
+                                " SELECT e." + COLUMN_EXPENSE_ID + ",e." + COLUMN_DESCRIPTION_KEY + ",c." + COLUMN_NAME_KEY +
+                                " FROM " + TABLE_EXPENSES + " e JOIN " + TABLE_CATEGORIES + " c" +
+                                " ON c." + COLUMN_CATEGORY_ID + " = e." + COLUMN_CATEGORY_ID +
+                                " WHERE e." + COLUMN_EXPENSE_ID + " > ? AND e." + COLUMN_EXPENSE_ID + " <= ?"));
+    }
+
+    // Last part of a rebuild: the copy becomes expenses
+    private static void replaceExpenses(SQLiteDatabase db, String copy) {
+        db.execSQL("DROP TABLE " + TABLE_EXPENSES);
+        db.execSQL("ALTER TABLE " + copy + " RENAME TO " + TABLE_EXPENSES);
+    }
+
+    private void createLabelTables(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_CATEGORIES);
+        db.execSQL(CREATE_TABLE_PAYMENT_METHODS);
+        seedLabels(db);
+        fillLabelKeys(db);
+    }
+
+    private void seedLabels(SQLiteDatabase db) {
+        seedLabels(db, TABLE_CATEGORIES, context.getResources().getStringArray(R.array.expense_categories));
+        seedLabels(db, TABLE_PAYMENT_METHODS, context.getResources().getStringArray(R.array.payment_methods));
+    }
+
+    private static void fillLabelKeys(SQLiteDatabase db) {
+        fillKeys(db, TABLE_CATEGORIES, COLUMN_CATEGORY_ID, COLUMN_NAME, COLUMN_NAME_KEY);
+        fillKeys(db, TABLE_PAYMENT_METHODS, COLUMN_PAYMENT_METHOD_ID, COLUMN_NAME, COLUMN_NAME_KEY);
+    }
+
+    private static void fillKeys(SQLiteDatabase db, String table, String idColumn,
+                                 String textColumn, String keyColumn) {
+        fillKeys(db, table, idColumn, textColumn, keyColumn, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // SQLite cannot fold Vietnamese text itself, so keys are computed here row by row
+    private static void fillKeys(SQLiteDatabase db, String table, String idColumn,
+                                 String textColumn, String keyColumn, long afterId, long lastId) {
+        try (Cursor cursor = db.rawQuery("SELECT " + idColumn + "," + textColumn + " FROM " + table +
+                " WHERE " + idColumn + " > ? AND " + idColumn + " <= ?" +
+                " AND " + textColumn + " IS NOT NULL AND " + keyColumn + " IS NULL",
+                new String[]{String.valueOf(afterId), String.valueOf(lastId)});
+             SQLiteStatement update = db.compileStatement(
+                     "UPDATE " + table + " SET " + keyColumn + " = ? WHERE " + idColumn + " = ?")) {
+            while (cursor.moveToNext()) {
+                update.bindString(1, SearchText.fold(cursor.getString(1)));
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        }
+    }
+
+    private static void seedLabels(SQLiteDatabase db, String table, String[] labels) {
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + table + "(" + COLUMN_NAME + ") VALUES (?)")) {
+            for (String label : labels) {
+                insert.bindString(1, label);
+                insert.executeInsert();
+            }
+        }
+    }
+
+    private static void createLedgerTables(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_LEDGER_ENTRIES);
+        db.execSQL(CREATE_LEDGER_USER_ACCOUNT_DATE_INDEX);
+        db.execSQL(CREATE_TABLE_ACCOUNT_BALANCES);
+        createTriggers(db, CREATE_BALANCE_TRIGGERS);
+    }
+
+    private static void createRollupTriggers(SQLiteDatabase db) {
+        createTriggers(db, CREATE_ROLLUP_TRIGGERS);
+    }
+
+    private static void createTriggers(SQLiteDatabase db, String[] triggers) {
+        for (String trigger : triggers) {
+            db.execSQL(trigger);
+        }
+    }
+
+    // Expense operations
+    public long addExpense(Expense expense) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        long id = -1;
+        db.beginTransactionNonExclusive();
         try {
-            operations.run();
-            db.setTransactionSuccessful();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_AMOUNT, expense.getAmount());
+            values.put(COLUMN_CATEGORY_ID, categories.getOrCreate(db, expense.getCategory()));
+            values.put(COLUMN_PAYMENT_METHOD_ID, paymentMethods.getOrCreate(db, expense.getPaymentMethod()));
+            values.put(COLUMN_DESCRIPTION, expense.getDescription());
+            values.put(COLUMN_DESCRIPTION_KEY, SearchText.fold(expense.getDescription()));
+            values.put(COLUMN_DATE, expense.getTimestamp());
+            if (expense.getUserId() > 0) {
+                values.put(COLUMN_USER_FK, expense.getUserId());
+            }
+
+            id = db.insert(TABLE_EXPENSES, null, values);
+            if (id != -1) {
+                db.setTransactionSuccessful();
+            }
         } catch (SQLiteException e) {
-            Log.e(TAG, "Database operation failed", e);
-            recreateDatabase(db);
+            Log.e(TAG, "Error adding expense", e);
         } finally {
             db.endTransaction();
         }
+        if (id != -1) {
+            writeVersion.incrementAndGet();
+        }
+        if (id == -1) {
+            // A label created in the rolled-back transaction must not stay cached
+            invalidateLabels();
+        }
+        return id;
     }
 
-    private void recreateDatabase(SQLiteDatabase db) {
-        executeTransaction(db, () -> {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPENSES);
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-            onCreate(db);
-        });
+    private void invalidateLabels() {
+        categories.invalidate();
+        paymentMethods.invalidate();
     }
 
-    // Expense operations
-    public long addExpense(Expense expense) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+    /** Notified after each chunk of a bulk insert has been committed. */
+    public interface BatchListener {
+        void onChunkCommitted(long rowsWritten);
+    }
 
-        values.put(COLUMN_AMOUNT, expense.getAmount());
-        values.put(COLUMN_CATEGORY, expense.getCategory());
-        values.put(COLUMN_PAYMENT_METHOD, expense.getPaymentMethod());
-        values.put(COLUMN_DESCRIPTION, expense.getDescription());
-        values.put(COLUMN_DATE, expense.getTimestamp());
+    private static final int BULK_INSERT_CHUNK_SIZE = 1000;
 
-        long result = db.insert(TABLE_EXPENSES, null, values);
-        db.close();
-        return result;
+    private static final String INSERT_EXPENSE_SQL =
+            "INSERT INTO " + TABLE_EXPENSES + "(" +
+                    COLUMN_AMOUNT + "," +
+                    COLUMN_CATEGORY_ID + "," +
+                    COLUMN_PAYMENT_METHOD_ID + "," +
+                    COLUMN_DESCRIPTION + "," +
+                    COLUMN_DATE + "," +
+                    COLUMN_USER_FK + "," +
+                    COLUMN_DESCRIPTION_KEY +
+                    ") VALUES (?,?,?,?,?,?,?)";
+
+    public long addExpenses(Iterable<Expense> expenses) {
+        return addExpenses(expenses.iterator(), null);
     }
 
-    public List<Expense> getAllExpenses() {
-        List<Expense> expenses = new ArrayList<>();
-        SQLiteDatabase db = getReadableDatabase();
+    /**
+     * Inserts every expense from {@code expenses} through one compiled statement, committing
+     * every {@link #BULK_INSERT_CHUNK_SIZE} rows. The iterator is consumed lazily, so callers can
+     * stream rows from a file without holding them in memory. Chunks committed before a failure
+     * stay in the database.
+     *
+     * @return number of rows inserted
+     */
+    public long addExpenses(Iterator<Expense> expenses, BatchListener listener) {
+        SQLiteDatabase db = getWritableDatabase();
+        long written = 0;
 
-        String[] columns = {
-                COLUMN_EXPENSE_ID,
-                COLUMN_AMOUNT,
-                COLUMN_CATEGORY,
-                COLUMN_PAYMENT_METHOD,
-                COLUMN_DESCRIPTION,
-                COLUMN_DATE
-        };
-
-        try (Cursor cursor = db.query(
-                TABLE_EXPENSES,
-                columns,
-                null,
-                null,
-                null,
-                null,
-                COLUMN_DATE + " DESC")) {
+        try (SQLiteStatement insert = db.compileStatement(INSERT_EXPENSE_SQL)) {
+            while (expenses.hasNext()) {
+                db.beginTransactionNonExclusive();
+                boolean committed = false;
+                try {
+                    int inChunk = 0;
+                    while (inChunk < BULK_INSERT_CHUNK_SIZE && expenses.hasNext()) {
+                        Expense expense = expenses.next();
+                        bindExpense(db, insert, expense, expense.getUserId());
+                        insert.executeInsert();
+                        inChunk++;
+                    }
+                    db.setTransactionSuccessful();
+                    committed = true;
+                    written += inChunk;
+                } finally {
+                    db.endTransaction();
+                    if (committed) {
+                        writeVersion.incrementAndGet();
+                    } else {
+                        invalidateLabels();
+                    }
+                }
+                if (listener != null) {
+                    listener.onChunkCommitted(written);
+                }
+            }
+        }
+        return written;
+    }
 
+    /**
+     * Deletes every expense and inserts {@code expenses} in their place, all in one transaction:
+     * if the iterator or an insert throws, the old expenses are left as they were. Owners without
+     * an account in this database are dropped, since user_id must reference a user.
+     *
+     * @return number of rows inserted
+     */
+    public long replaceExpenses(Iterator<Expense> expenses) {
+        SQLiteDatabase db = getWritableDatabase();
+        Set<Long> userIds = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_USER_ID + " FROM " + TABLE_USERS, null)) {
             while (cursor.moveToNext()) {
-                Expense expense = new Expense(
-                        cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_AMOUNT)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CATEGORY)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAYMENT_METHOD)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)),
-                        cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_DATE))
-                );
-                expenses.add(expense);
+                userIds.add(cursor.getLong(0));
+            }
+        }
+
+        long written = 0;
+        boolean committed = false;
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(INSERT_EXPENSE_SQL)) {
+            db.delete(TABLE_EXPENSES, null, null);
+            while (expenses.hasNext()) {
+                Expense expense = expenses.next();
+                bindExpense(db, insert, expense, userIds.contains(expense.getUserId()) ? expense.getUserId() : 0);
+                insert.executeInsert();
+                written++;
             }
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            if (committed) {
+                removeVersion.incrementAndGet();
+                writeVersion.incrementAndGet();
+            } else {
+                invalidateLabels();
+            }
+        }
+        return written;
+    }
+
+    private void bindExpense(SQLiteDatabase db, SQLiteStatement insert, Expense expense, long userId) {
+        insert.bindLong(1, expense.getAmount());
+        insert.bindLong(2, categories.getOrCreate(db, expense.getCategory()));
+        insert.bindLong(3, paymentMethods.getOrCreate(db, expense.getPaymentMethod()));
+        if (expense.getDescription() == null) {
+            insert.bindNull(4);
+            insert.bindNull(7);
+        } else {
+            insert.bindString(4, expense.getDescription());
+            insert.bindString(7, SearchText.fold(expense.getDescription()));
+        }
+        insert.bindLong(5, expense.getTimestamp());
+        if (userId > 0) {
+            insert.bindLong(6, userId);
+        } else {
+            insert.bindNull(6);
+        }
+    }
+
+    private ExpenseCursorMapper mapper(Cursor cursor) {
+        return new ExpenseCursorMapper(cursor, categories, paymentMethods);
+    }
+
+    public List<Expense> getAllExpenses() {
+        List<Expense> expenses = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+
+        try (Cursor cursor = db.rawQuery(SQL_ALL_EXPENSES, null)) {
+            mapper(cursor).mapAll(cursor, expenses);
         } catch (SQLiteException e) {
             Log.e(TAG, "Error getting all expenses", e);
-        } finally {
-            db.close();
         }
         return expenses;
     }
@@ -203,41 +1066,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         List<Expense> expenses = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        String[] columns = {
-                COLUMN_EXPENSE_ID,
-                COLUMN_AMOUNT,
-                COLUMN_CATEGORY,
-                COLUMN_PAYMENT_METHOD,
-                COLUMN_DESCRIPTION,
-                COLUMN_DATE
-        };
-
-        try (Cursor cursor = db.query(
-                TABLE_EXPENSES,
-                columns,
-                null,
-                null,
-                null,
-                null,
-                COLUMN_DATE + " DESC",
-                String.valueOf(limit)
-        )) {
-            if (cursor.moveToFirst()) {
-                do {
-                    Expense expense = new Expense(
-                            cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_AMOUNT)),
-                            cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CATEGORY)),
-                            cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAYMENT_METHOD)),
-                            cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)),
-                            cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_DATE))
-                    );
-                    expenses.add(expense);
-                } while (cursor.moveToNext());
-            }
+        try (Cursor cursor = db.rawQuery(SQL_RECENT_EXPENSES, new String[]{String.valueOf(limit)})) {
+            mapper(cursor).mapAll(cursor, expenses);
         } catch (SQLiteException e) {
             Log.e(TAG, "Error getting recent expenses", e);
-        } finally {
-            db.close();
         }
         return expenses;
     }
@@ -245,54 +1077,299 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public List<Expense> getExpensesByUser(long userId) {
         List<Expense> expenses = new ArrayList<>();
         SQLiteDatabase db = getReadableDatabase();
-        String[] columns = {
-                COLUMN_EXPENSE_ID,
-                COLUMN_AMOUNT,
-                COLUMN_CATEGORY,
-                COLUMN_PAYMENT_METHOD,
-                COLUMN_DESCRIPTION,
-                COLUMN_DATE
-        };
-
-        try (Cursor cursor = db.query(
-                TABLE_EXPENSES,
-                columns,
-                COLUMN_USER_FK + " = ?",
-                new String[]{String.valueOf(userId)},
-                null, null,
-                COLUMN_DATE + " DESC")) {
 
+        try (Cursor cursor = db.rawQuery(SQL_EXPENSES_BY_USER, new String[]{String.valueOf(userId)})) {
+            mapper(cursor).mapAll(cursor, expenses);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting expenses", e);
+        }
+        return expenses;
+    }
+
+    /**
+     * Passes every expense to {@code consumer}, oldest first, one row at a time. Rows are read
+     * through the cursor window, so memory use does not grow with the table. Unlike the list
+     * reads, failures are thrown rather than logged, so a caller never mistakes a partial walk
+     * for a complete one.
+     *
+     * @return the number of expenses passed
+     * @throws OperationCanceledException if {@code signal} is cancelled while the query runs
+     */
+    public long forEachExpense(Consumer<Expense> consumer, CancellationSignal signal) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(SQL_EXPORT_EXPENSES, null, signal)) {
+            ExpenseCursorMapper mapper = mapper(cursor);
+            long rows = 0;
             while (cursor.moveToNext()) {
-                Expense expense = new Expense(
-                        cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_AMOUNT)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CATEGORY)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAYMENT_METHOD)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)),
-                        cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_DATE))
-                );
-                expenses.add(expense);
+                consumer.accept(mapper.map(cursor));
+                rows++;
             }
+            return rows;
+        }
+    }
+
+    /** Every column of one expense, or null when there is no such expense. */
+    public Expense getExpense(long expenseId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(SQL_EXPENSE_BY_ID, new String[]{String.valueOf(expenseId)})) {
+            return cursor.moveToFirst() ? mapper(cursor).map(cursor) : null;
         } catch (SQLiteException e) {
-            Log.e(TAG, "Error getting expenses", e);
-        } finally {
-            db.close();
+            Log.e(TAG, "Error getting expense", e);
+            return null;
         }
+    }
+
+    /**
+     * Returns up to {@code limit} expenses that come after {@code key} in (date DESC, expense_id DESC)
+     * order, or the newest expenses when {@code key} is null.
+     */
+    public List<Expense> getExpensesOlderThan(ExpensePageKey key, int limit) {
+        List<Expense> expenses = new ArrayList<>(limit);
+        SQLiteDatabase db = getReadableDatabase();
+
+        String sql;
+        String[] args;
+        if (key == null) {
+            sql = SQL_FIRST_PAGE;
+            args = new String[]{String.valueOf(limit)};
+        } else {
+            String date = String.valueOf(key.getDate());
+            sql = SQL_PAGE_OLDER_THAN;
+            args = new String[]{date, date, String.valueOf(key.getExpenseId()), String.valueOf(limit)};
+        }
+
+        try (Cursor cursor = db.rawQuery(sql, args)) {
+            mapper(cursor).mapAll(cursor, expenses);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting expense page", e);
+        }
+        return expenses;
+    }
+
+    /**
+     * Returns up to {@code limit} expenses that come right before {@code key} in
+     * (date DESC, expense_id DESC) order. The result is in that same order.
+     */
+    public List<Expense> getExpensesNewerThan(ExpensePageKey key, int limit) {
+        List<Expense> expenses = new ArrayList<>(limit);
+        SQLiteDatabase db = getReadableDatabase();
+
+        String date = String.valueOf(key.getDate());
+        try (Cursor cursor = db.rawQuery(SQL_PAGE_NEWER_THAN, new String[]{
+                date, date, String.valueOf(key.getExpenseId()), String.valueOf(limit)})) {
+            mapper(cursor).mapAll(cursor, expenses);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting expense page", e);
+        }
+        Collections.reverse(expenses);
         return expenses;
     }
 
+    /**
+     * Like {@link #getExpensesOlderThan}, limited to the expenses matching {@code filter}.
+     * Search text matches every word as a prefix, ignoring case and diacritics.
+     *
+     * @throws OperationCanceledException if {@code signal} is cancelled while the query runs
+     */
+    public List<Expense> getFilteredExpensesOlderThan(ExpenseFilter filter, ExpensePageKey key, int limit,
+                                                      CancellationSignal signal) {
+        return getFilteredPage(FilteredPageQuery.build(filter, categories, paymentMethods, key, false, limit),
+                limit, signal);
+    }
+
+    /** Filtered counterpart of {@link #getExpensesNewerThan}; see {@link #getFilteredExpensesOlderThan}. */
+    public List<Expense> getFilteredExpensesNewerThan(ExpenseFilter filter, ExpensePageKey key, int limit,
+                                                      CancellationSignal signal) {
+        List<Expense> expenses = getFilteredPage(
+                FilteredPageQuery.build(filter, categories, paymentMethods, key, true, limit), limit, signal);
+        Collections.reverse(expenses);
+        return expenses;
+    }
+
+    private List<Expense> getFilteredPage(FilteredPageQuery query, int limit, CancellationSignal signal) {
+        List<Expense> expenses = new ArrayList<>(limit);
+        if (query == null) {
+            return expenses;
+        }
+        try (Cursor cursor = getReadableDatabase().rawQuery(query.sql, query.args, signal)) {
+            mapper(cursor).mapAll(cursor, expenses);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting filtered expenses", e);
+        }
+        return expenses;
+    }
+
+    // Aggregations. Amounts stay in primitive longs end to end; SUM over INTEGER is exact in SQLite.
+
+    /** Total spent per category by {@code userId} with {@code fromMillis <= date < toMillis}. */
+    public CategoryTotals getCategoryTotals(long userId, long fromMillis, long toMillis) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {String.valueOf(userId), String.valueOf(fromMillis), String.valueOf(toMillis)};
+
+        try (Cursor cursor = db.rawQuery(SQL_CATEGORY_TOTALS, args)) {
+            String[] categories = new String[cursor.getCount()];
+            long[] totals = new long[categories.length];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                categories[i] = this.categories.decode(cursor.getLong(0));
+                totals[i] = cursor.getLong(1);
+                i++;
+            }
+            return new CategoryTotals(categories, totals);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting category totals", e);
+            return new CategoryTotals(new String[0], new long[0]);
+        }
+    }
+
+    /**
+     * Total spent by {@code userId} in each month of {@code year} (local time zone).
+     * Index 0 is January.
+     */
+    public long[] getMonthlyTotals(long userId, int year) {
+        long[] monthStarts = new long[13];
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        for (int month = 0; month <= 12; month++) {
+            calendar.set(year, Calendar.JANUARY, 1, 0, 0, 0);
+            calendar.add(Calendar.MONTH, month);
+            monthStarts[month] = calendar.getTimeInMillis();
+        }
+
+        long[] totals = new long[12];
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {String.valueOf(userId), String.valueOf(monthStarts[0]), String.valueOf(monthStarts[12])};
+
+        try (Cursor cursor = db.rawQuery(SQL_AMOUNTS_BY_DATE, args)) {
+            int month = 0;
+            while (cursor.moveToNext()) {
+                long date = cursor.getLong(0);
+                while (date >= monthStarts[month + 1]) {
+                    month++;
+                }
+                totals[month] = Math.addExact(totals[month], cursor.getLong(1));
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting monthly totals", e);
+        }
+        return totals;
+    }
+
+    /**
+     * Category totals of {@code userId} for one month, read from the trigger-maintained rollup
+     * table: the cost depends on the number of categories, not on the size of the history.
+     *
+     * @param month year * 100 + month (1-12), in the local time zone
+     */
+    public CategoryTotals getMonthCategoryTotals(long userId, int month) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {String.valueOf(userId), String.valueOf(month)};
+
+        try (Cursor cursor = db.rawQuery(SQL_MONTH_ROLLUP, args)) {
+            String[] categories = new String[cursor.getCount()];
+            long[] totals = new long[categories.length];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                categories[i] = this.categories.decode(cursor.getLong(0));
+                totals[i] = cursor.getLong(1);
+                i++;
+            }
+            return new CategoryTotals(categories, totals);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting month rollup", e);
+            return new CategoryTotals(new String[0], new long[0]);
+        }
+    }
+
+    /** Receives expense rows column by column, without an {@link Expense} per row. */
+    public interface ExpenseRowSink {
+        void accept(long expenseId, long amount, String category, String paymentMethod, long date);
+    }
+
+    /**
+     * Streams {@code userId}'s expenses with an id above {@code afterExpenseId} into {@code sink},
+     * in (date, expense_id) order. Pass 0 to read them all.
+     *
+     * @return the number of rows read
+     */
+    public int readExpenseRows(long userId, long afterExpenseId, ExpenseRowSink sink) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {String.valueOf(userId), String.valueOf(afterExpenseId)};
+        int rows = 0;
+        try (Cursor cursor = db.rawQuery(SQL_USER_ROWS_AFTER_ID, args)) {
+            while (cursor.moveToNext()) {
+                sink.accept(cursor.getLong(0), cursor.getLong(1), categories.decode(cursor.getLong(2)),
+                        paymentMethods.decode(cursor.getLong(3)), cursor.getLong(4));
+                rows++;
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error reading expense rows", e);
+        }
+        return rows;
+    }
+
+    /** {count, total} of {@code userId}'s expenses, read from the rollups rather than the raw rows. */
+    public long[] getExpenseCountAndTotal(long userId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(SQL_USER_COUNT_AND_TOTAL, new String[]{String.valueOf(userId)})) {
+            cursor.moveToFirst();
+            return new long[]{cursor.getLong(0), cursor.getLong(1)};
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting expense count", e);
+            return new long[]{-1, -1};
+        }
+    }
+
+    /** Recomputes every rollup row from the expenses table. */
+    public void rebuildRollups() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_EXPENSE_ROLLUPS);
+            db.execSQL("INSERT INTO " + TABLE_EXPENSE_ROLLUPS + " " + SQL_ROLLUPS_FROM_EXPENSES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compares the rollup table with totals recomputed from the raw expenses.
+     *
+     * @return number of rollup rows that are missing, extra or hold different values; 0 when consistent
+     */
+    public long verifyRollups() {
+        String stored = "SELECT " + COLUMN_USER_FK + "," + COLUMN_MONTH + "," + COLUMN_CATEGORY_ID + "," +
+                COLUMN_TOTAL + "," + COLUMN_EXPENSE_COUNT + " FROM " + TABLE_EXPENSE_ROLLUPS;
+        String sql = "SELECT (SELECT COUNT(*) FROM (" + SQL_ROLLUPS_FROM_EXPENSES + " EXCEPT " + stored + "))" +
+                " + (SELECT COUNT(*) FROM (" + stored + " EXCEPT " + SQL_ROLLUPS_FROM_EXPENSES + "))";
+
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            long mismatches = cursor.getLong(0);
+            if (mismatches > 0) {
+                Log.w(TAG, "Expense rollups out of date: " + mismatches + " mismatched rows");
+            }
+            return mismatches;
+        }
+    }
+
     public int deleteExpense(long expenseId) {
         SQLiteDatabase db = getWritableDatabase();
         try {
-            return db.delete(
+            int deleted = db.delete(
                     TABLE_EXPENSES,
                     COLUMN_EXPENSE_ID + " = ?",
                     new String[]{String.valueOf(expenseId)}
             );
+            if (deleted > 0) {
+                removeVersion.incrementAndGet();
+                writeVersion.incrementAndGet();
+            }
+            return deleted;
         } catch (SQLiteException e) {
             Log.e(TAG, "Error deleting expense", e);
             return 0;
-        } finally {
-            db.close();
         }
     }
 
@@ -310,8 +1387,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         } catch (SQLiteException e) {
             Log.e(TAG, "Error adding user", e);
             return -1;
-        } finally {
-            db.close();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.example.giaodien.database;
+
+import android.database.Cursor;
+
+import com.example.giaodien.Expense;
+
+import java.util.List;
+
+/**
+ * Maps rows of an expense cursor to {@link Expense}. Column indices are looked up once per
+ * cursor, by name, so the mapper works for any projection: columns the query did not select
+ * are left at their defaults. Category and payment method ids are decoded through the
+ * {@link LabelDictionary lookup tables}, so rows with the same category share one String.
+ */
+public final class ExpenseCursorMapper {
+
+    /**
+     * What a history row binds in ExpenseHistoryAdapter: amount, category, payment method,
+     * description and date, plus the id that DiffUtil and the page keys use. The owner is the
+     * only column left out. The recent list on the main screen binds fewer fields, but it is
+     * the first history page loaded through the same query.
+     */
+    public static final String[] LIST_COLUMNS = {
+            DatabaseHelper.COLUMN_EXPENSE_ID,
+            DatabaseHelper.COLUMN_AMOUNT,
+            DatabaseHelper.COLUMN_CATEGORY_ID,
+            DatabaseHelper.COLUMN_PAYMENT_METHOD_ID,
+            DatabaseHelper.COLUMN_DESCRIPTION,
+            DatabaseHelper.COLUMN_DATE
+    };
+
+    /** Every column, for a single expense shown or edited on its own. */
+    public static final String[] DETAIL_COLUMNS = {
+            DatabaseHelper.COLUMN_EXPENSE_ID,
+            DatabaseHelper.COLUMN_AMOUNT,
+            DatabaseHelper.COLUMN_CATEGORY_ID,
+            DatabaseHelper.COLUMN_PAYMENT_METHOD_ID,
+            DatabaseHelper.COLUMN_DESCRIPTION,
+            DatabaseHelper.COLUMN_DATE,
+            DatabaseHelper.COLUMN_USER_FK
+    };
+
+    private final int expenseId;
+    private final int amount;
+    private final int category;
+    private final int paymentMethod;
+    private final int description;
+    private final int date;
+    private final int userId;
+    private final LabelDictionary categories;
+    private final LabelDictionary paymentMethods;
+
+    public ExpenseCursorMapper(Cursor cursor, LabelDictionary categories, LabelDictionary paymentMethods) {
+        this.categories = categories;
+        this.paymentMethods = paymentMethods;
+        expenseId = cursor.getColumnIndex(DatabaseHelper.COLUMN_EXPENSE_ID);
+        amount = cursor.getColumnIndex(DatabaseHelper.COLUMN_AMOUNT);
+        category = cursor.getColumnIndex(DatabaseHelper.COLUMN_CATEGORY_ID);
+        paymentMethod = cursor.getColumnIndex(DatabaseHelper.COLUMN_PAYMENT_METHOD_ID);
+        description = cursor.getColumnIndex(DatabaseHelper.COLUMN_DESCRIPTION);
+        date = cursor.getColumnIndex(DatabaseHelper.COLUMN_DATE);
+        userId = cursor.getColumnIndex(DatabaseHelper.COLUMN_USER_FK);
+    }
+
+    /** "SELECT a,b,c FROM expenses" for one of the column sets above. */
+    static String select(String[] columns) {
+        return "SELECT " + String.join(",", columns) + " FROM " + DatabaseHelper.TABLE_EXPENSES;
+    }
+
+    /** Maps the row the cursor is on. */
+    public Expense map(Cursor cursor) {
+        Expense expense = new Expense(
+                amount < 0 ? 0 : cursor.getLong(amount),
+                category < 0 ? null : categories.decode(cursor.getLong(category)),
+                paymentMethod < 0 ? null : paymentMethods.decode(cursor.getLong(paymentMethod)),
+                description < 0 ? null : cursor.getString(description),
+                date < 0 ? 0 : cursor.getLong(date)
+        );
+        if (expenseId >= 0) {
+            expense.setExpenseId(cursor.getLong(expenseId));
+        }
+        if (userId >= 0 && !cursor.isNull(userId)) {
+            expense.setUserId(cursor.getLong(userId));
+        }
+        return expense;
+    }
+
+    /** Maps every remaining row into {@code into} and returns it. */
+    public <T extends List<Expense>> T mapAll(Cursor cursor, T into) {
+        while (cursor.moveToNext()) {
+            into.add(map(cursor));
+        }
+        return into;
+    }
+}
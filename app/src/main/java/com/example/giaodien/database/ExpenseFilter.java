@@ -0,0 +1,96 @@
+package com.example.giaodien.database;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What the history screen shows: search text, a date range, a set of categories and a payment
+ * method, all optional and combined with AND. Immutable; the {@code with} methods return a
+ * changed copy, and equal filters can share cached results.
+ */
+public final class ExpenseFilter {
+    public static final ExpenseFilter ALL =
+            new ExpenseFilter(null, Long.MIN_VALUE, Long.MAX_VALUE, Collections.emptySet(), null);
+
+    private final String query;
+    private final long fromMillis;
+    private final long toMillis;
+    private final Set<String> categories;
+    private final String paymentMethod;
+
+    private ExpenseFilter(String query, long fromMillis, long toMillis,
+                          Set<String> categories, String paymentMethod) {
+        this.query = query;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.categories = categories;
+        this.paymentMethod = paymentMethod;
+    }
+
+    /** Search text, or null to match any description and category. */
+    public ExpenseFilter withQuery(String query) {
+        return new ExpenseFilter(query, fromMillis, toMillis, categories, paymentMethod);
+    }
+
+    /** Only {@code fromMillis <= date < toMillis}. */
+    public ExpenseFilter withDateRange(long fromMillis, long toMillis) {
+        return new ExpenseFilter(query, fromMillis, toMillis, categories, paymentMethod);
+    }
+
+    public ExpenseFilter withoutDateRange() {
+        return withDateRange(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** Only the given category labels; an empty collection matches every category. */
+    public ExpenseFilter withCategories(Collection<String> categories) {
+        // Sorted, so equal sets build the same SQL and arguments
+        Set<String> copy = Collections.unmodifiableSet(new TreeSet<>(categories));
+        return new ExpenseFilter(query, fromMillis, toMillis, copy, paymentMethod);
+    }
+
+    /** Only the given payment method label, or any when null. */
+    public ExpenseFilter withPaymentMethod(String paymentMethod) {
+        return new ExpenseFilter(query, fromMillis, toMillis, categories, paymentMethod);
+    }
+
+    public String getQuery() { return query; }
+    public long getFromMillis() { return fromMillis; }
+    public long getToMillis() { return toMillis; }
+    public Set<String> getCategories() { return categories; }
+    public String getPaymentMethod() { return paymentMethod; }
+
+    public boolean hasDateRange() {
+        return fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+    }
+
+    /** True when nothing is filtered out. */
+    public boolean isAll() {
+        return equals(ALL);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExpenseFilter)) return false;
+        ExpenseFilter other = (ExpenseFilter) o;
+        return fromMillis == other.fromMillis
+                && toMillis == other.toMillis
+                && Objects.equals(query, other.query)
+                && categories.equals(other.categories)
+                && Objects.equals(paymentMethod, other.paymentMethod);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, fromMillis, toMillis, categories, paymentMethod);
+    }
+
+    @Override
+    public String toString() {
+        return "ExpenseFilter{query=" + query + ", from=" + fromMillis + ", to=" + toMillis +
+                ", categories=" + categories + ", paymentMethod=" + paymentMethod + '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.giaodien.database;
+
+import com.example.giaodien.Expense;
+
+/**
+ * Position of a row in the (date DESC, expense_id DESC) ordering used by the history screen.
+ * Pages are fetched by seeking past a key instead of using OFFSET, so the cost of a page
+ * does not depend on how far the user has scrolled.
+ */
+public final class ExpensePageKey {
+    private final long date;
+    private final long expenseId;
+
+    public ExpensePageKey(long date, long expenseId) {
+        this.date = date;
+        this.expenseId = expenseId;
+    }
+
+    public static ExpensePageKey of(Expense expense) {
+        return new ExpensePageKey(expense.getTimestamp(), expense.getExpenseId());
+    }
+
+    public long getDate() { return date; }
+    public long getExpenseId() { return expenseId; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExpensePageKey)) return false;
+        ExpensePageKey other = (ExpensePageKey) o;
+        return date == other.date && expenseId == other.expenseId;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(date) + Long.hashCode(expenseId);
+    }
+
+    @Override
+    public String toString() {
+        return "ExpensePageKey{date=" + date + ", expenseId=" + expenseId + '}';
+    }
+}
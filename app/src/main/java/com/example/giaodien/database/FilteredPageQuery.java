@@ -0,0 +1,95 @@
+package com.example.giaodien.database;
+
+import com.example.giaodien.util.SearchText;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL and arguments for one keyset page of the expenses matching an {@link ExpenseFilter}.
+ * Only the parts of the filter that are set become conditions, and every value is a bound
+ * argument, so each combination of parts compiles to one reusable statement.
+ *
+ * <p>A date range narrows the walk over idx_expenses_date, which also yields the page order;
+ * categories can use idx_expenses_category_date instead, and search text goes through the
+ * full-text index. The payment method is checked on the rows those indexes select.</p>
+ */
+final class FilteredPageQuery {
+    final String sql;
+    final String[] args;
+
+    private FilteredPageQuery(String sql, String[] args) {
+        this.sql = sql;
+        this.args = args;
+    }
+
+    /**
+     * @param key   the page boundary, or null for the first page
+     * @param newer whether to read the page before {@code key} instead of after it
+     * @return the query, or null when the filter names a label that no expense has
+     */
+    static FilteredPageQuery build(ExpenseFilter filter, LabelDictionary categories,
+                                   LabelDictionary paymentMethods, ExpensePageKey key,
+                                   boolean newer, int limit) {
+        List<String> conditions = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+
+        String match = SearchText.matchQuery(filter.getQuery());
+        if (match != null) {
+            conditions.add(DatabaseHelper.COLUMN_EXPENSE_ID + " IN (SELECT docid FROM " +
+                    DatabaseHelper.TABLE_EXPENSES_FTS + " WHERE " + DatabaseHelper.TABLE_EXPENSES_FTS + " MATCH ?)");
+            args.add(match);
+        }
+        if (filter.getFromMillis() != Long.MIN_VALUE) {
+            conditions.add(DatabaseHelper.COLUMN_DATE + " >= ?");
+            args.add(String.valueOf(filter.getFromMillis()));
+        }
+        if (filter.getToMillis() != Long.MAX_VALUE) {
+            conditions.add(DatabaseHelper.COLUMN_DATE + " < ?");
+            args.add(String.valueOf(filter.getToMillis()));
+        }
+        if (!filter.getCategories().isEmpty()) {
+            StringBuilder in = new StringBuilder(DatabaseHelper.COLUMN_CATEGORY_ID).append(" IN (");
+            int found = 0;
+            for (String category : filter.getCategories()) {
+                long id = categories.find(category);
+                if (id >= 0) {
+                    in.append(found++ == 0 ? "?" : ",?");
+                    args.add(String.valueOf(id));
+                }
+            }
+            if (found == 0) {
+                return null;
+            }
+            conditions.add(in.append(')').toString());
+        }
+        if (filter.getPaymentMethod() != null) {
+            long id = paymentMethods.find(filter.getPaymentMethod());
+            if (id < 0) {
+                return null;
+            }
+            conditions.add(DatabaseHelper.COLUMN_PAYMENT_METHOD_ID + " = ?");
+            args.add(String.valueOf(id));
+        }
+        if (key != null) {
+            String date = String.valueOf(key.getDate());
+            conditions.add(DatabaseHelper.COLUMN_DATE + (newer ? " >= ?" : " <= ?") +
+                    " AND (" + DatabaseHelper.COLUMN_DATE + (newer ? " > ?" : " < ?") +
+                    " OR " + DatabaseHelper.COLUMN_EXPENSE_ID + (newer ? " > ?" : " < ?") + ")");
+            args.add(date);
+            args.add(date);
+            args.add(String.valueOf(key.getExpenseId()));
+        }
+
+        StringBuilder sql = new StringBuilder(ExpenseCursorMapper.select(ExpenseCursorMapper.LIST_COLUMNS));
+        for (int i = 0; i < conditions.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+        String direction = newer ? " ASC" : " DESC";
+        sql.append(" ORDER BY ").append(DatabaseHelper.COLUMN_DATE).append(direction)
+                .append(", ").append(DatabaseHelper.COLUMN_EXPENSE_ID).append(direction)
+                .append(" LIMIT ?");
+        args.add(String.valueOf(limit));
+        return new FilteredPageQuery(sql.toString(), args.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.giaodien.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.giaodien.util.SearchText;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory copy of a lookup table such as {@code categories}: small integer ids in the
+ * expense rows, labels here. Every label is held as a single String, so all expenses decoded
+ * with the same id share one instance.
+ *
+ * <p>Thread-safe. Lookups read an immutable table published through a volatile field; misses
+ * reload it from the database.</p>
+ */
+public final class LabelDictionary {
+    private final DatabaseHelper dbHelper;
+    private final String selectAll;
+    private final String insertIgnore;
+    // Package-private for the query-plan tests
+    final String selectId;
+
+    private volatile Table table;
+
+    LabelDictionary(DatabaseHelper dbHelper, String tableName, String idColumn) {
+        this.dbHelper = dbHelper;
+        selectAll = "SELECT " + idColumn + "," + DatabaseHelper.COLUMN_NAME + " FROM " + tableName;
+        insertIgnore = "INSERT OR IGNORE INTO " + tableName + "(" + DatabaseHelper.COLUMN_NAME + "," +
+                DatabaseHelper.COLUMN_NAME_KEY + ") VALUES (?,?)";
+        selectId = "SELECT " + idColumn + " FROM " + tableName + " WHERE " + DatabaseHelper.COLUMN_NAME + " = ?";
+    }
+
+    /**
+     * A dictionary over fixed labels with ids 1 to n in array order, as the seeded tables number
+     * them, for the benchmarks. It has no database behind it: unknown ids decode to null, and
+     * {@link #getOrCreate} and {@link #invalidate()} throw.
+     */
+    @VisibleForTesting
+    static LabelDictionary of(String... labels) {
+        LabelDictionary dictionary = new LabelDictionary(null, DatabaseHelper.TABLE_CATEGORIES,
+                DatabaseHelper.COLUMN_CATEGORY_ID);
+        String[] byId = new String[labels.length + 1];
+        Map<String, Long> ids = new HashMap<>();
+        for (int i = 0; i < labels.length; i++) {
+            byId[i + 1] = labels[i];
+            ids.put(labels[i], (long) i + 1);
+        }
+        dictionary.table = new Table(byId, ids);
+        return dictionary;
+    }
+
+    /** The label for {@code id}, or null when no such row exists. */
+    public String decode(long id) {
+        Table current = loaded();
+        String label = current.get(id);
+        if (label == null && dbHelper != null) {
+            // Added by another code path since the table was loaded
+            label = reload().get(id);
+        }
+        return label;
+    }
+
+    /** The id of {@code label}, or -1 when it is not in the table. */
+    public long find(String label) {
+        Long id = loaded().ids.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * The id of {@code label}, inserting it when it is new, e.g. for a category the user typed.
+     * Runs on {@code db}, so inside the caller's transaction if there is one; call
+     * {@link #invalidate()} if that transaction is rolled back.
+     */
+    long getOrCreate(SQLiteDatabase db, String label) {
+        long id = find(label);
+        if (id >= 0) {
+            return id;
+        }
+        if (dbHelper == null) {
+            throw new IllegalStateException("Not in the fixed labels: " + label);
+        }
+        try (SQLiteStatement insert = db.compileStatement(insertIgnore);
+             SQLiteStatement select = db.compileStatement(selectId)) {
+            insert.bindString(1, label);
+            insert.bindString(2, SearchText.fold(label));
+            insert.executeInsert();
+            select.bindString(1, label);
+            id = select.simpleQueryForLong();
+        }
+        synchronized (this) {
+            table = loaded().with(id, label);
+        }
+        return id;
+    }
+
+    /** Every label, ordered by id. */
+    public String[] labels() {
+        return loaded().labels();
+    }
+
+    /** Drops the cached table; the next lookup reads it again. */
+    public void invalidate() {
+        if (dbHelper == null) {
+            throw new IllegalStateException("Fixed labels cannot be reloaded");
+        }
+        table = null;
+    }
+
+    private Table loaded() {
+        Table current = table;
+        return current != null ? current : reload();
+    }
+
+    private synchronized Table reload() {
+        Map<String, Long> ids = new HashMap<>();
+        String[] byId = new String[16];
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(selectAll, null)) {
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                if (id >= byId.length) {
+                    byId = Arrays.copyOf(byId, Math.max(byId.length * 2, id + 1));
+                }
+                byId[id] = cursor.getString(1);
+                ids.put(byId[id], (long) id);
+            }
+        }
+        Table loaded = new Table(byId, ids);
+        table = loaded;
+        return loaded;
+    }
+
+    private static final class Table {
+        final String[] byId;
+        final Map<String, Long> ids;
+
+        Table(String[] byId, Map<String, Long> ids) {
+            this.byId = byId;
+            this.ids = ids;
+        }
+
+        String get(long id) {
+            return id >= 0 && id < byId.length ? byId[(int) id] : null;
+        }
+
+        Table with(long id, String label) {
+            String[] grown = id < byId.length ? byId.clone() : Arrays.copyOf(byId, (int) id * 2 + 1);
+            grown[(int) id] = label;
+            Map<String, Long> moreIds = new HashMap<>(ids);
+            moreIds.put(label, id);
+            return new Table(grown, moreIds);
+        }
+
+        String[] labels() {
+            int count = 0;
+            for (String label : byId) {
+                if (label != null) {
+                    count++;
+                }
+            }
+            String[] labels = new String[count];
+            int i = 0;
+            for (String label : byId) {
+                if (label != null) {
+                    labels[i++] = label;
+                }
+            }
+            return labels;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.giaodien.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects last-login times in memory and writes them in one transaction, so a login or session
+ * resume does not pay for its own write. Only the latest time per user is kept; a time not yet
+ * flushed when the process dies is lost, which is acceptable for this column.
+ */
+public class LastLoginBatcher {
+    private static final String TAG = "LastLoginBatcher";
+
+    static final String SQL_UPDATE_LAST_LOGIN =
+            "UPDATE " + DatabaseHelper.TABLE_USERS +
+                    " SET " + DatabaseHelper.COLUMN_LAST_LOGIN + " = ?" +
+                    " WHERE " + DatabaseHelper.COLUMN_USER_ID + " = ?";
+
+    private final DatabaseHelper dbHelper;
+    private final Object lock = new Object();
+    private Map<Long, Long> pending = new HashMap<>();
+
+    public LastLoginBatcher(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Records a login at {@code epochSeconds}. Returns true when nothing was pending before, i.e.
+     * when the caller should schedule a {@link #flush()}.
+     */
+    public boolean record(long userId, long epochSeconds) {
+        synchronized (lock) {
+            boolean first = pending.isEmpty();
+            Long previous = pending.get(userId);
+            if (previous == null || previous < epochSeconds) {
+                pending.put(userId, epochSeconds);
+            }
+            return first;
+        }
+    }
+
+    /** Writes everything recorded so far; returns the number of users updated. */
+    public int flush() {
+        Map<Long, Long> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int updated = 0;
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement update = db.compileStatement(SQL_UPDATE_LAST_LOGIN)) {
+            for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+                update.bindLong(1, entry.getValue());
+                update.bindLong(2, entry.getKey());
+                updated += update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error writing last login times", e);
+            updated = 0;
+        } finally {
+            db.endTransaction();
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.giaodien.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.example.giaodien.model.LedgerAccount;
+import com.example.giaodien.model.LedgerEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Income, debt and asset entries, and the balance of every account. Balances live in
+ * account_balances and are changed by triggers in the same statement as the entry (or expense)
+ * that moves them, so reading a balance is one primary-key lookup however long the history is.
+ */
+public class LedgerDAO {
+    private static final String TAG = "LedgerDAO";
+
+    static final String SQL_BALANCE =
+            "SELECT " + DatabaseHelper.COLUMN_BALANCE + " FROM " + DatabaseHelper.TABLE_ACCOUNT_BALANCES +
+                    " WHERE " + DatabaseHelper.COLUMN_USER_FK + " = ? AND " + DatabaseHelper.COLUMN_ACCOUNT + " = ?";
+
+    static final String SQL_RECENT_ENTRIES =
+            "SELECT " + DatabaseHelper.COLUMN_ENTRY_ID + "," + DatabaseHelper.COLUMN_AMOUNT + "," +
+                    DatabaseHelper.COLUMN_DESCRIPTION + "," + DatabaseHelper.COLUMN_DATE +
+                    " FROM " + DatabaseHelper.TABLE_LEDGER_ENTRIES +
+                    " WHERE " + DatabaseHelper.COLUMN_USER_FK + " = ? AND " + DatabaseHelper.COLUMN_ACCOUNT + " = ?" +
+                    " ORDER BY " + DatabaseHelper.COLUMN_DATE + " DESC, " + DatabaseHelper.COLUMN_ENTRY_ID + " DESC" +
+                    " LIMIT ?";
+
+    static final String SQL_INSERT_ENTRY =
+            "INSERT INTO " + DatabaseHelper.TABLE_LEDGER_ENTRIES + "(" +
+                    DatabaseHelper.COLUMN_ACCOUNT + "," + DatabaseHelper.COLUMN_AMOUNT + "," +
+                    DatabaseHelper.COLUMN_DESCRIPTION + "," + DatabaseHelper.COLUMN_DATE + "," +
+                    DatabaseHelper.COLUMN_USER_FK +
+                    ") VALUES (?,?,?,?,?)";
+
+    static final String SQL_DELETE_ENTRY =
+            "DELETE FROM " + DatabaseHelper.TABLE_LEDGER_ENTRIES +
+                    " WHERE " + DatabaseHelper.COLUMN_ENTRY_ID + " = ?";
+
+    private final DatabaseHelper dbHelper;
+
+    public LedgerDAO(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Records {@code entry}; its account balance changes in the same statement.
+     *
+     * @return the new entry id, or -1 when the insert failed
+     */
+    public long addEntry(LedgerEntry entry) {
+        if (entry.getAccount() == LedgerAccount.EXPENSE) {
+            throw new IllegalArgumentException("Expenses are added through DatabaseHelper.addExpense");
+        }
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try (SQLiteStatement insert = db.compileStatement(SQL_INSERT_ENTRY)) {
+            insert.bindLong(1, entry.getAccount().id);
+            insert.bindLong(2, entry.getAmount());
+            if (entry.getDescription() == null) {
+                insert.bindNull(3);
+            } else {
+                insert.bindString(3, entry.getDescription());
+            }
+            insert.bindLong(4, entry.getTimestamp());
+            insert.bindLong(5, entry.getUserId());
+            return insert.executeInsert();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error adding ledger entry", e);
+            return -1;
+        }
+    }
+
+    public int deleteEntry(long entryId) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try (SQLiteStatement delete = db.compileStatement(SQL_DELETE_ENTRY)) {
+            delete.bindLong(1, entryId);
+            return delete.executeUpdateDelete();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error deleting ledger entry", e);
+            return 0;
+        }
+    }
+
+    /** Current balance of one account; 0 when it has no entries. */
+    public long getBalance(long userId, LedgerAccount account) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(SQL_BALANCE,
+                new String[]{String.valueOf(userId), String.valueOf(account.id)})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting balance", e);
+            return 0;
+        }
+    }
+
+    /** The newest {@code limit} entries of one account, newest first. */
+    public List<LedgerEntry> getRecentEntries(long userId, LedgerAccount account, int limit) {
+        List<LedgerEntry> entries = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(SQL_RECENT_ENTRIES,
+                new String[]{String.valueOf(userId), String.valueOf(account.id), String.valueOf(limit)})) {
+            while (cursor.moveToNext()) {
+                LedgerEntry entry = new LedgerEntry(userId, account, cursor.getLong(1),
+                        cursor.isNull(2) ? null : cursor.getString(2), cursor.getLong(3));
+                entry.setEntryId(cursor.getLong(0));
+                entries.add(entry);
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error getting ledger entries", e);
+        }
+        return entries;
+    }
+
+    /**
+     * Compares account_balances with balances recomputed from every ledger entry and expense.
+     *
+     * @return number of balance rows that are missing, extra or hold different values; 0 when consistent
+     */
+    public long verifyBalances() {
+        String stored = "SELECT " + DatabaseHelper.COLUMN_USER_FK + "," + DatabaseHelper.COLUMN_ACCOUNT + "," +
+                DatabaseHelper.COLUMN_BALANCE + "," + DatabaseHelper.COLUMN_ENTRY_COUNT +
+                " FROM " + DatabaseHelper.TABLE_ACCOUNT_BALANCES;
+        String computed = DatabaseHelper.SQL_BALANCES_FROM_ENTRIES;
+        String sql = "SELECT (SELECT COUNT(*) FROM (" + computed + " EXCEPT " + stored + "))" +
+                " + (SELECT COUNT(*) FROM (" + stored + " EXCEPT SELECT * FROM (" + computed + ")))";
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            long mismatches = cursor.getLong(0);
+            if (mismatches > 0) {
+                Log.w(TAG, "Account balances out of date: " + mismatches + " mismatched rows");
+            }
+            return mismatches;
+        }
+    }
+
+    /** Recomputes every balance from the ledger entries and expenses. */
+    public void rebuildBalances() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + DatabaseHelper.TABLE_ACCOUNT_BALANCES);
+            db.execSQL("INSERT INTO " + DatabaseHelper.TABLE_ACCOUNT_BALANCES + " " +
+                    DatabaseHelper.SQL_BALANCES_FROM_ENTRIES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
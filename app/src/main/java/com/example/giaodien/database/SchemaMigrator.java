@@ -0,0 +1,221 @@
+package com.example.giaodien.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Upgrades the schema one version at a time, outside the single transaction SQLiteOpenHelper
+ * wraps around onUpgrade.
+ *
+ * <p>Each {@link Step} has three phases. {@code prepare} runs once, committed together with the
+ * step's row in the progress table. The copy {@link Job}s then walk their source table in key
+ * order, at most {@code chunkRows} rows per transaction, and every chunk commits with the last key
+ * it reached. {@code finish} swaps in the new schema and commits together with the new
+ * user_version. A crash therefore leaves the database at the last finished version plus the
+ * progress of one step, and the next open carries on from the recorded key. Nothing is dropped
+ * when a step fails: the exception propagates and the old tables stay as they were.</p>
+ */
+final class SchemaMigrator {
+    private static final String TAG = "SchemaMigrator";
+
+    static final String TABLE_PROGRESS = "schema_migration_progress";
+    private static final String COLUMN_VERSION = "version";
+    private static final String COLUMN_JOB = "job";
+    private static final String COLUMN_LAST_KEY = "last_key";
+    private static final String COLUMN_ROWS_DONE = "rows_done";
+
+    private static final String CREATE_TABLE_PROGRESS =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_PROGRESS + "(" +
+                    COLUMN_VERSION + " INTEGER PRIMARY KEY," +
+                    COLUMN_JOB + " INTEGER NOT NULL," +
+                    COLUMN_LAST_KEY + " INTEGER NOT NULL," +
+                    COLUMN_ROWS_DONE + " INTEGER NOT NULL" +
+                    ")";
+
+    // Keys start below every rowid, so the first chunk begins at the smallest one
+    private static final long FIRST_KEY = Long.MIN_VALUE;
+
+    /** Work done inside one transaction. */
+    interface Phase {
+        void run(SQLiteDatabase db);
+    }
+
+    /** Processes the source rows with keys in (afterKey, lastKey]. */
+    interface RangeAction {
+        void run(SQLiteDatabase db, long afterKey, long lastKey);
+    }
+
+    /** Rows of one source table, processed in key order a chunk at a time. */
+    static final class Job {
+        final String table;
+        final String keyColumn;
+        final RangeAction action;
+
+        Job(String table, String keyColumn, RangeAction action) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.action = action;
+        }
+
+        /** A job running {@code sql}, whose two parameters are afterKey and lastKey. */
+        static Job sql(String table, String keyColumn, String sql) {
+            return new Job(table, keyColumn,
+                    (db, afterKey, lastKey) -> db.execSQL(sql, new Object[]{afterKey, lastKey}));
+        }
+    }
+
+    static final class Step {
+        final Phase prepare;
+        final List<Job> jobs;
+        final Phase finish;
+
+        Step(Phase prepare, List<Job> jobs, Phase finish) {
+            this.prepare = prepare;
+            this.jobs = jobs;
+            this.finish = finish;
+        }
+
+        /** A step that only changes the schema and is done in one transaction. */
+        static Step schema(Phase finish) {
+            return new Step(db -> { }, Collections.emptyList(), finish);
+        }
+
+        static Step copy(Phase prepare, Phase finish, Job... jobs) {
+            return new Step(prepare, Arrays.asList(jobs), finish);
+        }
+    }
+
+    private final Step[] steps;
+    private final int chunkRows;
+    private final DatabaseHelper.MigrationListener listener;
+
+    /**
+     * @param steps     steps by the version they upgrade to; versions without one are skipped
+     * @param chunkRows most rows copied in one transaction
+     * @param listener  may be null
+     */
+    SchemaMigrator(Step[] steps, int chunkRows, DatabaseHelper.MigrationListener listener) {
+        this.steps = steps;
+        this.chunkRows = chunkRows;
+        this.listener = listener;
+    }
+
+    /** Runs every step after {@code fromVersion} up to {@code toVersion}, resuming one left unfinished. */
+    void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        db.execSQL(CREATE_TABLE_PROGRESS);
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            Step step = version < steps.length ? steps[version] : null;
+            long started = SystemClock.uptimeMillis();
+            run(db, version, step != null ? step : Step.schema(d -> { }));
+            Log.i(TAG, "Upgraded to version " + version + " in " + (SystemClock.uptimeMillis() - started) + " ms");
+        }
+    }
+
+    private void run(SQLiteDatabase db, int version, Step step) {
+        long[] progress = readProgress(db, version);
+        if (progress == null) {
+            inTransaction(db, () -> {
+                step.prepare.run(db);
+                writeProgress(db, version, 0, FIRST_KEY, 0);
+            });
+            progress = new long[]{0, FIRST_KEY, 0};
+        } else {
+            Log.i(TAG, "Resuming version " + version + " at job " + progress[0] + ", " + progress[2] + " rows done");
+        }
+
+        for (int job = (int) progress[0]; job < step.jobs.size(); job++) {
+            boolean resumed = job == progress[0];
+            runJob(db, version, job, step.jobs.get(job),
+                    resumed ? progress[1] : FIRST_KEY, resumed ? progress[2] : 0);
+        }
+
+        inTransaction(db, () -> {
+            step.finish.run(db);
+            db.delete(TABLE_PROGRESS, COLUMN_VERSION + " = ?", new String[]{String.valueOf(version)});
+            db.setVersion(version);
+        });
+    }
+
+    private void runJob(SQLiteDatabase db, int version, int jobIndex, Job job, long lastKey, long rowsDone) {
+        // The key of the chunkRows-th row after lastKey ends a full chunk; the largest key ends the last one
+        String chunkEndSql = "SELECT " + job.keyColumn + " FROM " + job.table +
+                " WHERE " + job.keyColumn + " > ? ORDER BY " + job.keyColumn +
+                " LIMIT 1 OFFSET " + (chunkRows - 1);
+        String lastEndSql = "SELECT MAX(" + job.keyColumn + "), COUNT(*) FROM " + job.table +
+                " WHERE " + job.keyColumn + " > ?";
+        long rowsTotal = queryLong(db, "SELECT COUNT(*) FROM " + job.table, null);
+
+        while (true) {
+            String[] after = {String.valueOf(lastKey)};
+            long chunkEnd = 0;
+            long chunkSize = 0;
+            try (Cursor cursor = db.rawQuery(chunkEndSql, after)) {
+                if (cursor.moveToFirst()) {
+                    chunkEnd = cursor.getLong(0);
+                    chunkSize = chunkRows;
+                }
+            }
+            if (chunkSize == 0) {
+                try (Cursor cursor = db.rawQuery(lastEndSql, after)) {
+                    cursor.moveToFirst();
+                    if (cursor.isNull(0)) {
+                        return;
+                    }
+                    chunkEnd = cursor.getLong(0);
+                    chunkSize = cursor.getLong(1);
+                }
+            }
+
+            long from = lastKey;
+            long to = chunkEnd;
+            long done = rowsDone + chunkSize;
+            inTransaction(db, () -> {
+                job.action.run(db, from, to);
+                writeProgress(db, version, jobIndex, to, done);
+            });
+            lastKey = to;
+            rowsDone = done;
+            if (listener != null) {
+                listener.onProgress(version, rowsDone, rowsTotal);
+            }
+        }
+    }
+
+    // {job, last_key, rows_done} of a step that was started, or null
+    private static long[] readProgress(SQLiteDatabase db, int version) {
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_JOB + "," + COLUMN_LAST_KEY + "," + COLUMN_ROWS_DONE +
+                " FROM " + TABLE_PROGRESS + " WHERE " + COLUMN_VERSION + " = ?", new String[]{String.valueOf(version)})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new long[]{cursor.getLong(0), cursor.getLong(1), cursor.getLong(2)};
+        }
+    }
+
+    private static void writeProgress(SQLiteDatabase db, int version, int job, long lastKey, long rowsDone) {
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_PROGRESS + " VALUES (?,?,?,?)",
+                new Object[]{version, job, lastKey, rowsDone});
+    }
+
+    private static long queryLong(SQLiteDatabase db, String sql, String[] args) {
+        try (Cursor cursor = db.rawQuery(sql, args)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static void inTransaction(SQLiteDatabase db, Runnable body) {
+        db.beginTransaction();
+        try {
+            body.run();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.giaodien.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.giaodien.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login sessions. The device keeps a random token; the table keeps only its SHA-256, so
+ * resuming is one primary-key lookup instead of a bcrypt verify, and a copy of the database
+ * does not reveal usable tokens.
+ */
+public class SessionDAO {
+    private static final String TAG = "SessionDAO";
+
+    static final long SESSION_LIFETIME_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final int TOKEN_BYTES = 32;
+
+    static final String SQL_SESSION_USER =
+            "SELECT u." + DatabaseHelper.COLUMN_USER_ID + ",u." + DatabaseHelper.COLUMN_EMAIL +
+                    ",u." + DatabaseHelper.COLUMN_FULL_NAME +
+                    " FROM " + DatabaseHelper.TABLE_SESSIONS + " s" +
+                    " JOIN " + DatabaseHelper.TABLE_USERS + " u" +
+                    " ON u." + DatabaseHelper.COLUMN_USER_ID + " = s." + DatabaseHelper.COLUMN_USER_FK +
+                    " WHERE s." + DatabaseHelper.COLUMN_TOKEN_HASH + " = ?" +
+                    " AND s." + DatabaseHelper.COLUMN_EXPIRES_AT + " > ?";
+
+    static final String SQL_INSERT_SESSION =
+            "INSERT INTO " + DatabaseHelper.TABLE_SESSIONS + "(" +
+                    DatabaseHelper.COLUMN_TOKEN_HASH + "," + DatabaseHelper.COLUMN_USER_FK + "," +
+                    DatabaseHelper.COLUMN_CREATED_AT + "," + DatabaseHelper.COLUMN_EXPIRES_AT +
+                    ") VALUES (?,?,?,?)";
+
+    static final String SQL_DELETE_SESSION =
+            "DELETE FROM " + DatabaseHelper.TABLE_SESSIONS +
+                    " WHERE " + DatabaseHelper.COLUMN_TOKEN_HASH + " = ?";
+
+    static final String SQL_DELETE_USER_SESSIONS =
+            "DELETE FROM " + DatabaseHelper.TABLE_SESSIONS +
+                    " WHERE " + DatabaseHelper.COLUMN_USER_FK + " = ?";
+
+    static final String SQL_DELETE_EXPIRED_USER_SESSIONS =
+            SQL_DELETE_USER_SESSIONS + " AND " + DatabaseHelper.COLUMN_EXPIRES_AT + " <= ?";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final DatabaseHelper dbHelper;
+
+    public SessionDAO(Context context) {
+        dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Starts a session for {@code userId} and returns its token, or null when the insert failed.
+     * Expired sessions of the same user are pruned in the same transaction.
+     */
+    public String createSession(long userId, long now) {
+        byte[] raw = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(raw);
+        String token = Base64.encodeToString(raw, Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING);
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement prune = db.compileStatement(SQL_DELETE_EXPIRED_USER_SESSIONS);
+             SQLiteStatement insert = db.compileStatement(SQL_INSERT_SESSION)) {
+            prune.bindLong(1, userId);
+            prune.bindLong(2, now);
+            prune.executeUpdateDelete();
+
+            insert.bindString(1, hashToken(token));
+            insert.bindLong(2, userId);
+            insert.bindLong(3, now);
+            insert.bindLong(4, now + SESSION_LIFETIME_MILLIS);
+            insert.executeInsert();
+            db.setTransactionSuccessful();
+            return token;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error creating session", e);
+            return null;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** The user owning {@code token}, or null when the token is unknown, revoked or expired. */
+    public User resumeSession(String token, long now) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery(SQL_SESSION_USER,
+                new String[]{hashToken(token), String.valueOf(now)})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            User user = new User();
+            user.setId(cursor.getLong(0));
+            user.setEmail(cursor.getString(1));
+            user.setFullName(cursor.getString(2));
+            return user;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error resuming session", e);
+            return null;
+        }
+    }
+
+    public boolean revokeSession(String token) {
+        return delete(SQL_DELETE_SESSION, hashToken(token)) > 0;
+    }
+
+    /** Signs {@code userId} out everywhere, e.g. after a password change. */
+    public int revokeAllSessions(long userId) {
+        return delete(SQL_DELETE_USER_SESSIONS, String.valueOf(userId));
+    }
+
+    private int delete(String sql, String arg) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try (SQLiteStatement statement = db.compileStatement(sql)) {
+            statement.bindString(1, arg);
+            return statement.executeUpdateDelete();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error revoking session", e);
+            return 0;
+        }
+    }
+
+    static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+                hex[i * 2 + 1] = Character.forDigit(digest[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android release ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
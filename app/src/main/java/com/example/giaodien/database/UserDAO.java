@@ -4,26 +4,51 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.example.giaodien.model.User;
+import com.example.giaodien.security.PasswordHasher;
+
+import java.util.Arrays;
 
 import at.favre.lib.crypto.bcrypt.BCrypt;
 
 public class UserDAO {
     private static final String TAG = "UserDAO";
     private final DatabaseHelper dbHelper;
-    private static final int BCRYPT_COST = 12;
+    private final PasswordHasher passwordHasher;
+
+    // Queries, package-private so the query-plan tests check exactly what runs here
+    static final String SQL_USER_BY_EMAIL =
+            "SELECT " + DatabaseHelper.COLUMN_USER_ID + "," + DatabaseHelper.COLUMN_EMAIL + "," +
+                    DatabaseHelper.COLUMN_PASSWORD_HASH + "," + DatabaseHelper.COLUMN_FULL_NAME +
+                    " FROM " + DatabaseHelper.TABLE_USERS +
+                    " WHERE " + DatabaseHelper.COLUMN_EMAIL + " = ?";
+
+    static final String SQL_EMAIL_EXISTS =
+            "SELECT 1 FROM " + DatabaseHelper.TABLE_USERS +
+                    " WHERE " + DatabaseHelper.COLUMN_EMAIL + " = ? LIMIT 1";
 
     public UserDAO(Context context) {
-        dbHelper = new DatabaseHelper(context);
+        this(context, PasswordHasher.getInstance(context));
+    }
+
+    @VisibleForTesting
+    UserDAO(Context context, PasswordHasher passwordHasher) {
+        dbHelper = DatabaseHelper.getInstance(context);
+        this.passwordHasher = passwordHasher;
     }
 
     public long registerUser(String email, String password, String fullName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues values = new ContentValues();
 
-        String hashedPassword = BCrypt.withDefaults().hashToString(BCRYPT_COST, password.toCharArray());
+        char[] passwordChars = password.toCharArray();
+        String hashedPassword = passwordHasher.hash(passwordChars);
+        Arrays.fill(passwordChars, '\0');
 
         values.put(DatabaseHelper.COLUMN_EMAIL, email);
         values.put(DatabaseHelper.COLUMN_PASSWORD_HASH, hashedPassword);
@@ -34,75 +59,62 @@ public class UserDAO {
             result = db.insertOrThrow(DatabaseHelper.TABLE_USERS, null, values);
         } catch (Exception e) {
             Log.e(TAG, "Error registering user", e);
-        } finally {
-            db.close();
         }
         return result;
     }
 
+    /** Verifies the password; the caller records last_login through {@link LastLoginBatcher}. */
     public User loginUser(String email, String password) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
         User user = null;
-
-        Cursor cursor = db.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{
-                        DatabaseHelper.COLUMN_USER_ID,
-                        DatabaseHelper.COLUMN_EMAIL,
-                        DatabaseHelper.COLUMN_PASSWORD_HASH,
-                        DatabaseHelper.COLUMN_FULL_NAME
-                },
-                DatabaseHelper.COLUMN_EMAIL + " = ?",
-                new String[]{email},
-                null, null, null
-        );
-
-        if (cursor.moveToFirst()) {
-
-            String storedHash = cursor.getString(2);
-            BCrypt.Result result = BCrypt.verifyer().verify(password.toCharArray(), storedHash);
-
-            if (result.verified) {
-                user = new User();
-                user.setId(cursor.getLong(0));
-                user.setEmail(cursor.getString(1));
-                user.setFullName(cursor.getString(3));
-
-                // Update last login time
-                updateLastLogin(db, email);
+        String storedHash = null;
+        BCrypt.Result result = null;
+        char[] passwordChars = password.toCharArray();
+
+        try (Cursor cursor = db.rawQuery(SQL_USER_BY_EMAIL, new String[]{email})) {
+            if (cursor.moveToFirst()) {
+                storedHash = cursor.getString(2);
+                result = passwordHasher.verify(passwordChars, storedHash);
+
+                if (result.verified) {
+                    user = new User();
+                    user.setId(cursor.getLong(0));
+                    user.setEmail(cursor.getString(1));
+                    user.setFullName(cursor.getString(3));
+                }
             }
         }
 
-        cursor.close();
-        db.close();
+        if (user != null) {
+            // Hashed with a cost other than the one calibrated for this device: rehash now
+            if (passwordHasher.needsRehash(result)) {
+                rehashPassword(db, user.getId(), storedHash, passwordHasher.hash(passwordChars));
+            }
+        }
+        Arrays.fill(passwordChars, '\0');
         return user;
     }
 
-    private void updateLastLogin(SQLiteDatabase db, String email) {
+    private void rehashPassword(SQLiteDatabase db, long userId, String oldHash, String newHash) {
         ContentValues values = new ContentValues();
-        values.put(DatabaseHelper.COLUMN_LAST_LOGIN, System.currentTimeMillis() / 1000);
-
-        db.update(
-                DatabaseHelper.TABLE_USERS,
-                values,
-                DatabaseHelper.COLUMN_EMAIL + " = ?",
-                new String[]{email}
-        );
+        values.put(DatabaseHelper.COLUMN_PASSWORD_HASH, newHash);
+        try {
+            // Only replace the hash we verified, in case the password changed meanwhile
+            db.update(
+                    DatabaseHelper.TABLE_USERS,
+                    values,
+                    DatabaseHelper.COLUMN_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_PASSWORD_HASH + " = ?",
+                    new String[]{String.valueOf(userId), oldHash}
+            );
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Error rehashing password", e);
+        }
     }
 
     public boolean isEmailExists(String email) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.query(
-                DatabaseHelper.TABLE_USERS,
-                new String[]{DatabaseHelper.COLUMN_USER_ID},
-                DatabaseHelper.COLUMN_EMAIL + " = ?",
-                new String[]{email},
-                null, null, null
-        );
-
-        boolean exists = cursor.getCount() > 0;
-        cursor.close();
-        db.close();
-        return exists;
+        try (Cursor cursor = db.rawQuery(SQL_EMAIL_EXISTS, new String[]{email})) {
+            return cursor.moveToFirst();
+        }
     }
 }
\ No newline at end of file
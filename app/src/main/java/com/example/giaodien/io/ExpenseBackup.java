@@ -0,0 +1,407 @@
+package com.example.giaodien.io;
+
+import android.database.sqlite.SQLiteException;
+import android.os.CancellationSignal;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary backup of every expense, written and read through memory-mapped files.
+ *
+ * <p>Layout, big-endian: the magic "GDBK" and a 2-byte format version, then blocks of about
+ * {@link #BLOCK_BYTES}, each prefixed with its payload length, row count and CRC32. A block with
+ * length 0 ends the file and is followed by the total row count. Rows are stored oldest first:</p>
+ * <ul>
+ *     <li>date as a zigzag varint delta from the previous row in the block</li>
+ *     <li>amount as a zigzag varint</li>
+ *     <li>category and payment method as varint indexes into two dictionaries; an index equal
+ *     to the dictionary size adds the UTF-8 string that follows</li>
+ *     <li>description as varint (UTF-8 length + 1), 0 for null, then the bytes</li>
+ *     <li>owner user_id as a varint, 0 for none</li>
+ * </ul>
+ *
+ * <p>Users are not included, since their rows hold password hashes. A restore replaces every
+ * expense in one transaction, so a damaged or truncated file leaves the database unchanged.</p>
+ */
+public class ExpenseBackup {
+    static final int MAGIC = 0x4744424B;
+    static final short VERSION = 1;
+    static final int BLOCK_BYTES = 64 * 1024;
+    private static final int BLOCK_HEADER_BYTES = 12;
+    private static final long MAP_WINDOW_BYTES = 1024 * 1024;
+
+    private final DatabaseHelper dbHelper;
+
+    public ExpenseBackup(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Writes every expense to {@code file}, replacing its contents. Must run off the main thread.
+     *
+     * @param signal cancels the backup, also while the query is running; may be null
+     * @return the number of rows written
+     * @throws android.os.OperationCanceledException if {@code signal} is cancelled; the file is
+     *                                               then incomplete and will not restore
+     */
+    public long writeTo(File file, CancellationSignal signal) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            MappedOutput out = new MappedOutput(channel);
+            ByteBuffer header = ByteBuffer.allocate(6);
+            header.putInt(MAGIC).putShort(VERSION).flip();
+            out.write(header);
+
+            BlockEncoder encoder = new BlockEncoder(out, signal);
+            try {
+                dbHelper.forEachExpense(encoder, signal);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (SQLiteException e) {
+                throw new IOException("Reading expenses failed", e);
+            }
+            encoder.finish();
+            out.finish();
+            return encoder.totalRows;
+        }
+    }
+
+    /**
+     * Replaces every expense with the contents of {@code file}. Every block is checked against
+     * its CRC before its rows are inserted; any damage aborts the restore and rolls it back.
+     *
+     * @return the number of rows restored
+     */
+    public long restoreFrom(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Backup is too large to map: " + size + " bytes");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (in.remaining() < 6 || in.getInt() != MAGIC) {
+                throw new IOException("Not an expense backup");
+            }
+            short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported backup version " + version);
+            }
+
+            try {
+                return dbHelper.replaceExpenses(new BlockDecoder(in));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (SQLiteException e) {
+                throw new IOException("Restoring expenses failed", e);
+            }
+        }
+    }
+
+    // Fills one block with encoded rows and writes it out once it reaches BLOCK_BYTES
+    private static final class BlockEncoder implements Consumer<Expense> {
+        private final MappedOutput out;
+        private final CancellationSignal signal;
+        private final Map<String, Integer> categories = new HashMap<>();
+        private final Map<String, Integer> paymentMethods = new HashMap<>();
+        private final CRC32 crc = new CRC32();
+        private byte[] block = new byte[BLOCK_BYTES + 1024];
+        private int length;
+        private int rows;
+        private long previousDate;
+        long totalRows;
+
+        BlockEncoder(MappedOutput out, CancellationSignal signal) {
+            this.out = out;
+            this.signal = signal;
+        }
+
+        @Override
+        public void accept(Expense expense) {
+            putVarint(zigzag(expense.getTimestamp() - previousDate));
+            previousDate = expense.getTimestamp();
+            putVarint(zigzag(expense.getAmount()));
+            putLabel(categories, expense.getCategory());
+            putLabel(paymentMethods, expense.getPaymentMethod());
+            if (expense.getDescription() == null) {
+                putVarint(0);
+            } else {
+                byte[] utf8 = expense.getDescription().getBytes(StandardCharsets.UTF_8);
+                putVarint(utf8.length + 1L);
+                putBytes(utf8);
+            }
+            putVarint(Math.max(expense.getUserId(), 0));
+            rows++;
+            totalRows++;
+
+            if (length >= BLOCK_BYTES) {
+                try {
+                    flushBlock();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (signal != null) {
+                    signal.throwIfCanceled();
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (rows > 0) {
+                flushBlock();
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(BLOCK_HEADER_BYTES + 8);
+            trailer.putInt(0).putInt(0).putInt(0).putLong(totalRows).flip();
+            out.write(trailer);
+        }
+
+        private void flushBlock() throws IOException {
+            crc.reset();
+            crc.update(block, 0, length);
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+            header.putInt(length).putInt(rows).putInt((int) crc.getValue()).flip();
+            out.write(header);
+            out.write(ByteBuffer.wrap(block, 0, length));
+            length = 0;
+            rows = 0;
+            previousDate = 0;
+        }
+
+        private void putLabel(Map<String, Integer> dictionary, String label) {
+            Integer index = dictionary.get(label);
+            if (index != null) {
+                putVarint(index);
+                return;
+            }
+            putVarint(dictionary.size());
+            dictionary.put(label, dictionary.size());
+            byte[] utf8 = label.getBytes(StandardCharsets.UTF_8);
+            putVarint(utf8.length);
+            putBytes(utf8);
+        }
+
+        private void putVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                block[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            block[length++] = (byte) value;
+        }
+
+        private void putBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, block, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > block.length) {
+                // Only a single very long description gets here
+                block = Arrays.copyOf(block, Math.max(block.length * 2, length + extra));
+            }
+        }
+    }
+
+    // Verifies and decodes one block at a time, straight from the mapped file
+    private static final class BlockDecoder implements Iterator<Expense> {
+        private final MappedByteBuffer in;
+        private final List<String> categories = new ArrayList<>();
+        private final List<String> paymentMethods = new ArrayList<>();
+        private final CRC32 crc = new CRC32();
+        private byte[] block = new byte[BLOCK_BYTES + 1024];
+        private int position;
+        private int length;
+        private int rowsLeft;
+        private int blockNumber;
+        private long previousDate;
+        private long totalRows;
+        private boolean done;
+
+        BlockDecoder(MappedByteBuffer in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (rowsLeft == 0 && !done) {
+                try {
+                    readBlock();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return rowsLeft > 0;
+        }
+
+        @Override
+        public Expense next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                long date = previousDate + unzigzag(getVarint());
+                previousDate = date;
+                long amount = unzigzag(getVarint());
+                String category = getLabel(categories);
+                String paymentMethod = getLabel(paymentMethods);
+                long descriptionLength = getVarint();
+                String description = descriptionLength == 0 ? null : getString(descriptionLength - 1);
+                long userId = getVarint();
+
+                Expense expense = new Expense(amount, category, paymentMethod, description, date);
+                expense.setUserId(userId);
+                rowsLeft--;
+                totalRows++;
+                if (rowsLeft == 0 && position != length) {
+                    throw corrupt();
+                }
+                return expense;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void readBlock() throws IOException {
+            if (in.remaining() < BLOCK_HEADER_BYTES) {
+                throw new IOException("Backup is truncated");
+            }
+            int blockLength = in.getInt();
+            int blockRows = in.getInt();
+            int checksum = in.getInt();
+            if (blockLength == 0) {
+                if (in.remaining() != 8 || in.getLong() != totalRows) {
+                    throw new IOException("Backup is truncated or has trailing data");
+                }
+                done = true;
+                return;
+            }
+            blockNumber++;
+            if (blockLength < 0 || blockRows <= 0 || blockLength > in.remaining()) {
+                throw corrupt();
+            }
+            if (blockLength > block.length) {
+                block = new byte[blockLength];
+            }
+            in.get(block, 0, blockLength);
+            crc.reset();
+            crc.update(block, 0, blockLength);
+            if ((int) crc.getValue() != checksum) {
+                throw corrupt();
+            }
+            position = 0;
+            length = blockLength;
+            rowsLeft = blockRows;
+            previousDate = 0;
+        }
+
+        private String getLabel(List<String> dictionary) throws IOException {
+            long index = getVarint();
+            if (index < dictionary.size()) {
+                return dictionary.get((int) index);
+            }
+            if (index != dictionary.size()) {
+                throw corrupt();
+            }
+            String label = getString(getVarint());
+            dictionary.add(label);
+            return label;
+        }
+
+        private String getString(long byteLength) throws IOException {
+            if (byteLength > length - position) {
+                throw corrupt();
+            }
+            String value = new String(block, position, (int) byteLength, StandardCharsets.UTF_8);
+            position += (int) byteLength;
+            return value;
+        }
+
+        private long getVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= length) {
+                    throw corrupt();
+                }
+                byte b = block[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw corrupt();
+        }
+
+        private IOException corrupt() {
+            return new IOException("Backup block " + blockNumber + " is corrupt");
+        }
+    }
+
+    // Writes through a window of the file mapped read-write, moving the window as it fills
+    private static final class MappedOutput {
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                if (window == null || !window.hasRemaining()) {
+                    if (window != null) {
+                        window.force();
+                        windowStart += window.capacity();
+                    }
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, MAP_WINDOW_BYTES);
+                }
+                int count = Math.min(source.remaining(), window.remaining());
+                ByteBuffer part = source.duplicate();
+                part.limit(part.position() + count);
+                window.put(part);
+                source.position(source.position() + count);
+            }
+        }
+
+        // Mapping extends the file a whole window at a time; cut it back to what was written
+        void finish() throws IOException {
+            long size = windowStart;
+            if (window != null) {
+                window.force();
+                size += window.position();
+                window = null;
+            }
+            channel.truncate(size);
+            channel.force(false);
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.giaodien.io;
+
+import android.util.Log;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams expenses from a CSV file into the database through
+ * {@link DatabaseHelper#addExpenses(Iterator, DatabaseHelper.BatchListener)}.
+ *
+ * <p>Expected columns, with a header row: {@code amount,category,payment_method,description,date}
+ * where {@code amount} is whole đồng and {@code date} is epoch milliseconds. Rows that cannot be parsed are skipped and counted.</p>
+ */
+public class ExpenseCsvImporter {
+    private static final String TAG = "ExpenseCsvImporter";
+
+    public static final String[] HEADER = {"amount", "category", "payment_method", "description", "date"};
+
+    public interface ProgressListener {
+        /**
+         * @param rowsImported rows committed so far
+         * @param charsRead    characters of input consumed so far
+         */
+        void onProgress(long rowsImported, long charsRead);
+    }
+
+    public static final class Result {
+        public final long imported;
+        public final long skipped;
+
+        Result(long imported, long skipped) {
+            this.imported = imported;
+            this.skipped = skipped;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+
+    public ExpenseCsvImporter(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    public Result importFrom(InputStream in, ProgressListener listener) throws IOException {
+        try (CsvReader csv = new CsvReader(new InputStreamReader(
+                new BufferedInputStream(in), StandardCharsets.UTF_8))) {
+            List<String> header = csv.readRecord();
+            if (header == null) {
+                return new Result(0, 0);
+            }
+
+            RowIterator rows = new RowIterator(csv);
+            long imported;
+            try {
+                imported = dbHelper.addExpenses(rows, rowsWritten -> {
+                    if (listener != null) {
+                        listener.onProgress(rowsWritten, csv.getCharsRead());
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return new Result(imported, rows.skipped);
+        }
+    }
+
+    static Expense parseRow(List<String> fields) {
+        if (fields.size() < HEADER.length) {
+            throw new IllegalArgumentException("Expected " + HEADER.length + " columns, got " + fields.size());
+        }
+        long amount = Long.parseLong(fields.get(0).trim());
+        String category = fields.get(1);
+        String paymentMethod = fields.get(2);
+        if (category.isEmpty() || paymentMethod.isEmpty()) {
+            throw new IllegalArgumentException("Missing category or payment method");
+        }
+        long date = Long.parseLong(fields.get(4).trim());
+        // An empty field is how the exporter writes a missing description
+        String description = fields.get(3).isEmpty() ? null : fields.get(3);
+        return new Expense(amount, category, paymentMethod, description, date);
+    }
+
+    // Parses one record ahead so hasNext() can skip rows that fail to parse
+    private static final class RowIterator implements Iterator<Expense> {
+        private final CsvReader csv;
+        private Expense next;
+        private boolean done;
+        long skipped;
+        private long record = 1;
+
+        RowIterator(CsvReader csv) {
+            this.csv = csv;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                List<String> fields;
+                try {
+                    fields = csv.readRecord();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                record++;
+                if (fields == null) {
+                    done = true;
+                } else if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    // blank line
+                } else {
+                    try {
+                        next = parseRow(fields);
+                    } catch (IllegalArgumentException e) {
+                        skipped++;
+                        Log.w(TAG, "Skipping record " + record + ": " + e.getMessage());
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Expense next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Expense result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.giaodien.io;
+
+import android.database.sqlite.SQLiteException;
+import android.os.CancellationSignal;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every expense from the database to a channel as CSV or JSON, oldest first.
+ *
+ * <p>Rows are read one at a time from the cursor, collected into a fixed-size text chunk,
+ * encoded to UTF-8 into a fixed-size byte buffer and written out, so peak memory is the same
+ * for a thousand rows or millions. CSV uses {@link ExpenseCsvImporter#HEADER} and can be
+ * imported again; JSON is an array of objects with the same keys.</p>
+ */
+public class ExpenseExporter {
+    private static final int CHUNK_CHARS = 16 * 1024;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int PROGRESS_INTERVAL_ROWS = 1000;
+
+    public enum Format { CSV, JSON }
+
+    public interface ProgressListener {
+        /**
+         * @param rowsWritten  rows written so far
+         * @param bytesWritten bytes of CSV or JSON handed to the channel so far, before any
+         *                     compression. Text is written in buffers of up to 64 KiB, so this
+         *                     trails the rows until the last call, which has the exact total
+         */
+        void onProgress(long rowsWritten, long bytesWritten);
+    }
+
+    private final DatabaseHelper dbHelper;
+
+    public ExpenseExporter(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Writes every expense to {@code channel}, which is left open. Must run off the main thread;
+     * the listener is called on the calling thread.
+     *
+     * @param gzip   compress the output with gzip
+     * @param signal cancels the export, also while the query is running; may be null
+     * @return the number of rows written
+     * @throws android.os.OperationCanceledException if {@code signal} is cancelled; what was
+     *                                               written so far is left in the channel
+     */
+    public long exportTo(WritableByteChannel channel, Format format, boolean gzip,
+                         ProgressListener listener, CancellationSignal signal) throws IOException {
+        Compressor compressor = null;
+        WritableByteChannel target = channel;
+        if (gzip) {
+            compressor = new Compressor(Channels.newOutputStream(channel));
+            target = Channels.newChannel(compressor);
+        }
+
+        ChunkWriter out = new ChunkWriter(target);
+        RowWriter rows = new RowWriter(out, format, listener, signal);
+        try {
+            rows.begin();
+            try {
+                dbHelper.forEachExpense(rows, signal);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (SQLiteException e) {
+                throw new IOException("Reading expenses failed", e);
+            }
+            rows.end();
+            out.finish();
+            if (compressor != null) {
+                // Writes the gzip trailer without closing the caller's channel
+                compressor.finish();
+                compressor.flush();
+            }
+        } finally {
+            if (compressor != null) {
+                compressor.release();
+            }
+        }
+        if (listener != null) {
+            listener.onProgress(rows.count, out.bytesWritten);
+        }
+        return rows.count;
+    }
+
+    // Closing a GZIPOutputStream would close the caller's channel too, so its native deflater
+    // is freed directly instead, also when the export is cancelled or fails
+    private static final class Compressor extends GZIPOutputStream {
+        Compressor(OutputStream out) throws IOException {
+            super(out, BUFFER_BYTES);
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+
+    private static final class RowWriter implements Consumer<Expense> {
+        private final ChunkWriter out;
+        private final Format format;
+        private final ProgressListener listener;
+        private final CancellationSignal signal;
+        long count;
+
+        RowWriter(ChunkWriter out, Format format, ProgressListener listener, CancellationSignal signal) {
+            this.out = out;
+            this.format = format;
+            this.listener = listener;
+            this.signal = signal;
+        }
+
+        void begin() {
+            if (format == Format.CSV) {
+                out.text.append(String.join(",", ExpenseCsvImporter.HEADER)).append("\r\n");
+            } else {
+                out.text.append('[');
+            }
+        }
+
+        void end() {
+            if (format == Format.JSON) {
+                out.text.append(count == 0 ? "]\n" : "\n]\n");
+            }
+        }
+
+        @Override
+        public void accept(Expense expense) {
+            if (format == Format.CSV) {
+                writeCsv(expense);
+            } else {
+                writeJson(expense);
+            }
+            count++;
+            try {
+                out.flushIfFull();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (count % PROGRESS_INTERVAL_ROWS == 0) {
+                if (signal != null) {
+                    signal.throwIfCanceled();
+                }
+                if (listener != null) {
+                    listener.onProgress(count, out.bytesWritten);
+                }
+            }
+        }
+
+        private void writeCsv(Expense expense) {
+            StringBuilder text = out.text;
+            text.append(expense.getAmount()).append(',');
+            appendCsvField(text, expense.getCategory());
+            text.append(',');
+            appendCsvField(text, expense.getPaymentMethod());
+            text.append(',');
+            appendCsvField(text, expense.getDescription());
+            text.append(',').append(expense.getTimestamp()).append("\r\n");
+        }
+
+        private void writeJson(Expense expense) {
+            StringBuilder text = out.text;
+            text.append(count == 0 ? "\n{\"" : ",\n{\"");
+            text.append(ExpenseCsvImporter.HEADER[0]).append("\":").append(expense.getAmount()).append(",\"");
+            text.append(ExpenseCsvImporter.HEADER[1]).append("\":");
+            appendJsonString(text, expense.getCategory());
+            text.append(",\"").append(ExpenseCsvImporter.HEADER[2]).append("\":");
+            appendJsonString(text, expense.getPaymentMethod());
+            text.append(",\"").append(ExpenseCsvImporter.HEADER[3]).append("\":");
+            appendJsonString(text, expense.getDescription());
+            text.append(",\"").append(ExpenseCsvImporter.HEADER[4]).append("\":").append(expense.getTimestamp());
+            text.append('}');
+        }
+    }
+
+    // RFC 4180: quote fields containing a separator, quote or line break; double inner quotes
+    static void appendCsvField(StringBuilder text, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            text.append(value);
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                text.append('"');
+            }
+            text.append(c);
+        }
+        text.append('"');
+    }
+
+    static void appendJsonString(StringBuilder text, String value) {
+        if (value == null) {
+            text.append("null");
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': text.append("\\\""); break;
+                case '\\': text.append("\\\\"); break;
+                case '\n': text.append("\\n"); break;
+                case '\r': text.append("\\r"); break;
+                case '\t': text.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        text.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        text.append(c);
+                    }
+            }
+        }
+        text.append('"');
+    }
+
+    // Text is collected per row and encoded in chunks, so the encoder and channel are called
+    // once per CHUNK_CHARS rather than once per field
+    private static final class ChunkWriter {
+        final StringBuilder text = new StringBuilder(CHUNK_CHARS + 1024);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_BYTES);
+        private final WritableByteChannel channel;
+        long bytesWritten;
+
+        ChunkWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void flushIfFull() throws IOException {
+            if (text.length() >= CHUNK_CHARS) {
+                encode(false);
+            }
+        }
+
+        void finish() throws IOException {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            // Chunks end after a whole row, so no surrogate pair is split between two calls
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    break;
+                }
+            }
+            text.setLength(0);
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            bytesWritten += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.giaodien.model;
+
+/**
+ * The accounts of the ledger, one per dashboard tab. {@link #id} is what the database stores,
+ * so existing values must never change.
+ */
+public enum LedgerAccount {
+    EXPENSE(0),
+    INCOME(1),
+    DEBT(2),
+    ASSET(3);
+
+    public final int id;
+
+    LedgerAccount(int id) {
+        this.id = id;
+    }
+
+    public static LedgerAccount fromId(int id) {
+        for (LedgerAccount account : values()) {
+            if (account.id == id) {
+                return account;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ledger account " + id);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.giaodien.model;
+
+/**
+ * One movement on a {@link LedgerAccount}, in signed đồng: income received, money borrowed
+ * (positive) or repaid (negative), an asset bought (positive) or sold (negative).
+ */
+public class LedgerEntry {
+    private long entryId;  // entry_id trong database, 0 khi chưa được lưu
+    private final long userId;
+    private final LedgerAccount account;
+    private final long amount;
+    private final String description;
+    private final long timestamp;
+
+    public LedgerEntry(long userId, LedgerAccount account, long amount, String description, long timestamp) {
+        this.userId = userId;
+        this.account = account;
+        this.amount = amount;
+        this.description = description;
+        this.timestamp = timestamp;
+    }
+
+    public long getEntryId() { return entryId; }
+    public long getUserId() { return userId; }
+    public LedgerAccount getAccount() { return account; }
+    public long getAmount() { return amount; }
+    public String getDescription() { return description; }
+    public long getTimestamp() { return timestamp; }
+
+    public void setEntryId(long entryId) { this.entryId = entryId; }
+}
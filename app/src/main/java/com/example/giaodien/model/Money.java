@@ -0,0 +1,70 @@
+package com.example.giaodien.model;
+
+/**
+ * Amounts are whole đồng held in a primitive {@code long}. VND has no minor unit in practice,
+ * so the stored integer is exact and sums never round.
+ */
+public final class Money {
+    public static final String CURRENCY_SUFFIX = "đ";
+
+    private Money() {
+    }
+
+    /**
+     * Parses user input such as "1.250.000", "1,250,000" or "1 250 000" into đồng.
+     * Grouping separators and spaces are ignored; anything else is rejected.
+     *
+     * @throws NumberFormatException if the text has no digits, other characters, or overflows
+     */
+    public static long parse(CharSequence text) throws NumberFormatException {
+        long value = 0;
+        boolean sawDigit = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10) {
+                    throw new NumberFormatException("Amount too large: " + text);
+                }
+                value = value * 10 + digit;
+                sawDigit = true;
+            } else if (c != '.' && c != ',' && !Character.isWhitespace(c)) {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+        }
+        if (!sawDigit) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        return value;
+    }
+
+    /** Adds two amounts, throwing instead of silently wrapping around. */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /** Formats with '.' grouping as used in Vietnam, e.g. 1250000 -> "1.250.000đ". */
+    public static String format(long amount) {
+        StringBuilder sb = new StringBuilder(24);
+        appendGrouped(sb, amount);
+        return sb.append(CURRENCY_SUFFIX).toString();
+    }
+
+    public static void appendGrouped(StringBuilder sb, long amount) {
+        if (amount < 0) {
+            sb.append('-');
+        }
+        // Work on the negative value so Long.MIN_VALUE does not overflow
+        long negative = amount < 0 ? amount : -amount;
+        int start = sb.length();
+        int digits = 0;
+        do {
+            if (digits > 0 && digits % 3 == 0) {
+                sb.insert(start, '.');
+            }
+            sb.insert(start, (char) ('0' - (negative % 10)));
+            negative /= 10;
+            digits++;
+        } while (negative != 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.giaodien.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide executors. All SQLite work goes through {@link #diskIO()} so that nothing
+ * touches the database from the main thread.
+ */
+public final class AppExecutors {
+    private static final String TAG = "AppExecutors";
+
+    // WAL allows one writer and concurrent readers; more threads only add contention
+    private static final int IO_THREADS = 2;
+    private static final int IO_QUEUE_CAPACITY = 128;
+
+    private static volatile AppExecutors instance;
+
+    private final ExecutorService diskIO;
+    private final ExecutorService passwordHashing;
+    private final Executor mainThread;
+
+    public static AppExecutors getInstance() {
+        AppExecutors result = instance;
+        if (result == null) {
+            synchronized (AppExecutors.class) {
+                result = instance;
+                if (result == null) {
+                    result = new AppExecutors();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private AppExecutors() {
+        ThreadPoolExecutor io = new ThreadPoolExecutor(
+                IO_THREADS, IO_THREADS,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(IO_QUEUE_CAPACITY),
+                backgroundThreads("db-io"),
+                (task, executor) -> {
+                    // Neither block nor run on the caller, which is the main thread, and do not
+                    // throw there either: drop the task. A repository call still answers its
+                    // callback, with its failure value
+                    Log.e(TAG, "Disk I/O queue full, dropping task");
+                    if (task instanceof RepositoryTask) {
+                        ((RepositoryTask<?>) task).onDropped();
+                    }
+                });
+        io.allowCoreThreadTimeOut(true);
+        diskIO = io;
+
+        // bcrypt is CPU bound and takes hundreds of milliseconds; keep it off the disk pool so
+        // it never delays queries, and run it at normal priority because the user is waiting
+        passwordHashing = Executors.newSingleThreadExecutor(
+                threads("bcrypt", Process.THREAD_PRIORITY_DEFAULT));
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        mainThread = mainHandler::post;
+    }
+
+    public ExecutorService diskIO() {
+        return diskIO;
+    }
+
+    /** Single worker for password hashing and verification. */
+    public ExecutorService passwordHashing() {
+        return passwordHashing;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    static ThreadFactory backgroundThreads(String name) {
+        return threads(name, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    private static ThreadFactory threads(String name, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(() -> {
+            Process.setThreadPriority(priority);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet());
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.giaodien.repository;
+
+import android.util.LruCache;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.ExpenseFilter;
+import com.example.giaodien.database.ExpensePageKey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Window of keyset pages over the expense history. Pages are loaded in the background as
+ * items near either end are accessed; once more than {@code maxPages} are held, pages at the
+ * far end are dropped and fetched again if the user scrolls back to them.
+ *
+ * <p>The first page of the last few {@link ExpenseFilter filters} is kept, so switching back
+ * to one of them shows it without a query, as long as no expense has been written since.</p>
+ *
+ * <p>Lives in a ViewModel so loaded pages survive configuration changes. All methods must be
+ * called on the main thread.</p>
+ */
+public class ExpensePager {
+    private static final int CACHED_FILTERS = 8;
+
+    /** Receives every loaded item after each change, on the main thread. */
+    public interface Listener {
+        void onSnapshot(List<Expense> expenses);
+    }
+
+    private final ExpenseRepository repository;
+    private final Executor mainThread;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int maxPages;
+    private final LruCache<ExpenseFilter, CachedPage> firstPages = new LruCache<>(CACHED_FILTERS);
+
+    private final ArrayDeque<List<Expense>> pages = new ArrayDeque<>();
+    private int itemCount;
+    private boolean reachedEnd;
+    private boolean droppedNewer;
+    // One load per direction, so a slow page at one end never holds up the other
+    private Future<?> olderInFlight;
+    private Future<?> newerInFlight;
+    // Bumped on refresh so results of loads started before it are ignored
+    private int generation;
+    private Listener listener;
+    private ExpenseFilter filter = ExpenseFilter.ALL;
+
+    public ExpensePager(ExpenseRepository repository, Executor mainThread,
+                        int pageSize, int prefetchDistance, int maxPages) {
+        this.repository = repository;
+        this.mainThread = mainThread;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.maxPages = Math.max(maxPages, 2);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    public Expense get(int position) {
+        for (List<Expense> page : pages) {
+            if (position < page.size()) {
+                return page.get(position);
+            }
+            position -= page.size();
+        }
+        throw new IndexOutOfBoundsException("No expense at " + position);
+    }
+
+    /** The loaded items as an immutable list, newest first. */
+    public List<Expense> snapshot() {
+        List<Expense> items = new ArrayList<>(itemCount);
+        for (List<Expense> page : pages) {
+            items.addAll(page);
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Called when {@code expense} is bound; starts a load when it is near either end. Takes the
+     * item rather than its adapter position: the adapter shows a snapshot diffed in the
+     * background, which lags behind the pages held here, most of all right after pages were
+     * dropped at one end.
+     */
+    public void onItemAccessed(Expense expense) {
+        int position = indexOf(expense);
+        if (position < 0) {
+            // Its page was dropped since the snapshot being shown was taken
+            return;
+        }
+        if (position >= itemCount - prefetchDistance) {
+            mainThread.execute(this::loadOlder);
+        }
+        if (position < prefetchDistance && droppedNewer) {
+            mainThread.execute(this::loadNewer);
+        }
+    }
+
+    private int indexOf(Expense expense) {
+        int index = 0;
+        for (List<Expense> page : pages) {
+            for (Expense loaded : page) {
+                if (loaded.getExpenseId() == expense.getExpenseId()) {
+                    return index;
+                }
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    /** Starts loading the first page unless something is already loaded. */
+    public void start() {
+        if (itemCount == 0) {
+            loadOlder();
+        }
+    }
+
+    /** Drops every loaded page and starts again from the newest expense. */
+    public void refresh() {
+        cancel();
+        generation++;
+        reachedEnd = false;
+        droppedNewer = false;
+        boolean hadItems = itemCount > 0;
+        pages.clear();
+        itemCount = 0;
+
+        CachedPage cached = firstPages.get(filter);
+        if (cached != null && cached.writeVersion == repository.getWriteVersion()) {
+            addOlderPage(cached.page);
+            publish();
+            return;
+        }
+        if (hadItems) {
+            publish();
+        }
+        loadOlder();
+    }
+
+    /**
+     * Shows only the expenses matching {@code filter}. Changing the filter cancels the load for
+     * the previous one, including a query still running in SQLite.
+     */
+    public void setFilter(ExpenseFilter filter) {
+        if (this.filter.equals(filter)) {
+            return;
+        }
+        this.filter = filter;
+        refresh();
+    }
+
+    public ExpenseFilter getFilter() {
+        return filter;
+    }
+
+    /** Cancels the loads in flight, if any. */
+    public void cancel() {
+        if (olderInFlight != null) {
+            olderInFlight.cancel(true);
+            olderInFlight = null;
+        }
+        if (newerInFlight != null) {
+            newerInFlight.cancel(true);
+            newerInFlight = null;
+        }
+    }
+
+    private void loadOlder() {
+        if (olderInFlight != null || reachedEnd) {
+            return;
+        }
+        final int requestGeneration = generation;
+        ExpensePageKey after = oldestKey();
+        // Versions compare equal only if nothing was written while the page was read
+        final long writeVersion = repository.getWriteVersion();
+        RepositoryCallback<List<Expense>> callback =
+                page -> mainThread.execute(() -> onOlderLoaded(requestGeneration, writeVersion, after, page));
+        olderInFlight = filter.isAll()
+                ? repository.loadOlder(after, pageSize, callback)
+                : repository.loadOlder(filter, after, pageSize, callback);
+    }
+
+    private void loadNewer() {
+        if (newerInFlight != null || !droppedNewer) {
+            return;
+        }
+        final int requestGeneration = generation;
+        ExpensePageKey before = newestKey();
+        RepositoryCallback<List<Expense>> callback =
+                page -> mainThread.execute(() -> onNewerLoaded(requestGeneration, before, page));
+        newerInFlight = filter.isAll()
+                ? repository.loadNewer(before, pageSize, callback)
+                : repository.loadNewer(filter, before, pageSize, callback);
+    }
+
+    private ExpensePageKey oldestKey() {
+        List<Expense> last = pages.peekLast();
+        return last == null ? null : ExpensePageKey.of(last.get(last.size() - 1));
+    }
+
+    private ExpensePageKey newestKey() {
+        List<Expense> first = pages.peekFirst();
+        return first == null ? null : ExpensePageKey.of(first.get(0));
+    }
+
+    private void onOlderLoaded(int requestGeneration, long writeVersion, ExpensePageKey after, List<Expense> page) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        olderInFlight = null;
+        if (page == null) {
+            // Failed; the next bind near the end tries again
+            return;
+        }
+        if (!Objects.equals(after, oldestKey())) {
+            // A newer page pushed the page this one follows out meanwhile; it no longer fits
+            return;
+        }
+        boolean firstPage = after == null;
+        if (firstPage && writeVersion == repository.getWriteVersion()) {
+            firstPages.put(filter, new CachedPage(writeVersion, page));
+        }
+        if (addOlderPage(page)) {
+            publish();
+        }
+    }
+
+    // Returns whether anything was added
+    private boolean addOlderPage(List<Expense> page) {
+        if (page.size() < pageSize) {
+            reachedEnd = true;
+        }
+        if (page.isEmpty()) {
+            return false;
+        }
+
+        pages.addLast(page);
+        itemCount += page.size();
+        if (pages.size() > maxPages) {
+            itemCount -= pages.removeFirst().size();
+            droppedNewer = true;
+        }
+        return true;
+    }
+
+    private void onNewerLoaded(int requestGeneration, ExpensePageKey before, List<Expense> page) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        newerInFlight = null;
+        if (page == null || !before.equals(newestKey())) {
+            // Failed, or an older page pushed the page this one precedes out meanwhile
+            return;
+        }
+        if (page.size() < pageSize) {
+            droppedNewer = false;
+        }
+        if (page.isEmpty()) {
+            return;
+        }
+
+        pages.addFirst(page);
+        itemCount += page.size();
+        if (pages.size() > maxPages) {
+            itemCount -= pages.removeLast().size();
+            reachedEnd = false;
+        }
+        publish();
+    }
+
+    private static final class CachedPage {
+        final long writeVersion;
+        final List<Expense> page;
+
+        CachedPage(long writeVersion, List<Expense> page) {
+            this.writeVersion = writeVersion;
+            this.page = page;
+        }
+    }
+
+    private void publish() {
+        if (listener != null) {
+            listener.onSnapshot(snapshot());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.giaodien.repository;
+
+import android.content.Context;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.CategoryTotals;
+import com.example.giaodien.database.DatabaseHelper;
+import com.example.giaodien.database.ExpenseFilter;
+import com.example.giaodien.database.ExpensePageKey;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous access to expenses. Every call runs on {@link AppExecutors#diskIO()} and
+ * returns a {@link Future} the caller can cancel when its screen goes away. A call that fails
+ * or cannot be queued still answers its callback, with the failure value it documents.
+ */
+public class ExpenseRepository {
+    private static volatile ExpenseRepository instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService io;
+
+    public static ExpenseRepository getInstance(Context context) {
+        ExpenseRepository result = instance;
+        if (result == null) {
+            synchronized (ExpenseRepository.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ExpenseRepository(DatabaseHelper.getInstance(context),
+                            AppExecutors.getInstance().diskIO());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    ExpenseRepository(DatabaseHelper dbHelper, ExecutorService io) {
+        this.dbHelper = dbHelper;
+        this.io = io;
+    }
+
+    /** Inserts {@code expense}; the callback receives the new row id, or -1 on failure. */
+    public Future<?> addExpense(Expense expense, RepositoryCallback<Long> callback) {
+        return RepositoryTask.submit(io, signal -> dbHelper.addExpense(expense), -1L, callback);
+    }
+
+    /** The callback receives no categories on failure. */
+    public Future<?> getMonthCategoryTotals(long userId, int month, RepositoryCallback<CategoryTotals> callback) {
+        return RepositoryTask.submit(io, signal -> dbHelper.getMonthCategoryTotals(userId, month),
+                new CategoryTotals(new String[0], new long[0]), callback);
+    }
+
+    /** The callback receives null on failure, which is not the end of the history. */
+    public Future<?> loadOlder(ExpensePageKey after, int pageSize, RepositoryCallback<List<Expense>> callback) {
+        return RepositoryTask.submit(io, signal -> dbHelper.getExpensesOlderThan(after, pageSize), null, callback);
+    }
+
+    public Future<?> loadNewer(ExpensePageKey before, int pageSize, RepositoryCallback<List<Expense>> callback) {
+        return RepositoryTask.submit(io, signal -> dbHelper.getExpensesNewerThan(before, pageSize), null, callback);
+    }
+
+    // Cancelling the returned future also aborts the running SQLite statement; the callback is
+    // skipped for a cancelled query
+    public Future<?> loadOlder(ExpenseFilter filter, ExpensePageKey after, int pageSize,
+                               RepositoryCallback<List<Expense>> callback) {
+        return RepositoryTask.submit(io,
+                signal -> dbHelper.getFilteredExpensesOlderThan(filter, after, pageSize, signal), null, callback);
+    }
+
+    public Future<?> loadNewer(ExpenseFilter filter, ExpensePageKey before, int pageSize,
+                               RepositoryCallback<List<Expense>> callback) {
+        return RepositoryTask.submit(io,
+                signal -> dbHelper.getFilteredExpensesNewerThan(filter, before, pageSize, signal), null, callback);
+    }
+
+    /** Category labels for filter choices, in the order the lookup table assigned them. */
+    public Future<?> loadCategoryLabels(RepositoryCallback<String[]> callback) {
+        return RepositoryTask.submit(io, signal -> dbHelper.getCategories().labels(), new String[0], callback);
+    }
+
+    public Future<?> loadPaymentMethodLabels(RepositoryCallback<String[]> callback) {
+        return RepositoryTask.submit(io, signal -> dbHelper.getPaymentMethods().labels(), new String[0], callback);
+    }
+
+    /** See {@link DatabaseHelper#getWriteVersion()}; cheap enough for the main thread. */
+    public long getWriteVersion() {
+        return dbHelper.getWriteVersion();
+    }
+}
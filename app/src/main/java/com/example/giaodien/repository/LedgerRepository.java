@@ -0,0 +1,68 @@
+package com.example.giaodien.repository;
+
+import android.content.Context;
+
+import com.example.giaodien.database.LedgerDAO;
+import com.example.giaodien.model.LedgerAccount;
+import com.example.giaodien.model.LedgerEntry;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/** Asynchronous wrapper around {@link LedgerDAO}; see {@link ExpenseRepository}. */
+public class LedgerRepository {
+    private static volatile LedgerRepository instance;
+
+    private final LedgerDAO ledgerDAO;
+    private final ExecutorService io;
+
+    public static LedgerRepository getInstance(Context context) {
+        LedgerRepository result = instance;
+        if (result == null) {
+            synchronized (LedgerRepository.class) {
+                result = instance;
+                if (result == null) {
+                    result = new LedgerRepository(new LedgerDAO(context), AppExecutors.getInstance().diskIO());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    LedgerRepository(LedgerDAO ledgerDAO, ExecutorService io) {
+        this.ledgerDAO = ledgerDAO;
+        this.io = io;
+    }
+
+    /** Records {@code entry}; the callback receives the new entry id, or -1 on failure. */
+    public Future<?> addEntry(LedgerEntry entry, RepositoryCallback<Long> callback) {
+        return RepositoryTask.submit(io, signal -> ledgerDAO.addEntry(entry), -1L, callback);
+    }
+
+    /** The callback receives null on failure. */
+    public Future<?> getBalance(long userId, LedgerAccount account, RepositoryCallback<Long> callback) {
+        return RepositoryTask.submit(io, signal -> ledgerDAO.getBalance(userId, account), null, callback);
+    }
+
+    /** The callback receives null on failure. */
+    public Future<?> getRecentEntries(long userId, LedgerAccount account, int limit,
+                                      RepositoryCallback<List<LedgerEntry>> callback) {
+        return RepositoryTask.submit(io, signal -> ledgerDAO.getRecentEntries(userId, account, limit), null, callback);
+    }
+
+    /**
+     * Checks every stored balance against the entries and rebuilds them when any differ.
+     * The callback receives the number of mismatched balance rows that were found, or -1 on failure.
+     */
+    public Future<?> repairBalances(RepositoryCallback<Long> callback) {
+        return RepositoryTask.submit(io, signal -> {
+            long mismatches = ledgerDAO.verifyBalances();
+            if (mismatches > 0) {
+                ledgerDAO.rebuildBalances();
+            }
+            return mismatches;
+        }, -1L, callback);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.giaodien.repository;
+
+/**
+ * Receives the result of a repository call. Invoked on the background thread that ran it, or on
+ * the calling thread when the call was dropped because the executor's queue was full.
+ */
+public interface RepositoryCallback<T> {
+    void onResult(T result);
+}
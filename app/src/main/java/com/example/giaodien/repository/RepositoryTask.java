@@ -0,0 +1,85 @@
+package com.example.giaodien.repository;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * One repository call on a background executor. Unless the caller cancels it, the callback runs
+ * exactly once: with the result, or with {@code fallback} when the work throws or the executor
+ * drops the task because its queue is full. Either way a screen waiting on the callback hears
+ * back.
+ *
+ * <p>Cancelling the future also cancels the signal handed to the work, which aborts a running
+ * SQLite statement where a thread interrupt would not.</p>
+ */
+final class RepositoryTask<T> extends FutureTask<Void> {
+    private static final String TAG = "RepositoryTask";
+
+    interface Work<T> {
+        T run(CancellationSignal signal) throws Exception;
+    }
+
+    private final CancellationSignal signal;
+    private final T fallback;
+    private final RepositoryCallback<T> callback;
+
+    static <T> Future<?> submit(Executor executor, Work<T> work, T fallback, RepositoryCallback<T> callback) {
+        RepositoryTask<T> task = new RepositoryTask<>(work, fallback, callback, new CancellationSignal());
+        executor.execute(task);
+        return task;
+    }
+
+    private RepositoryTask(Work<T> work, T fallback, RepositoryCallback<T> callback, CancellationSignal signal) {
+        super(() -> {
+            T result;
+            try {
+                result = work.run(signal);
+            } catch (OperationCanceledException e) {
+                // Cancelled while SQLite was running it; the caller no longer wants a result
+                return null;
+            } catch (Exception e) {
+                Log.e(TAG, "Repository call failed", e);
+                result = fallback;
+            }
+            callback.onResult(result);
+            return null;
+        });
+        this.signal = signal;
+        this.fallback = fallback;
+        this.callback = callback;
+    }
+
+    /** Called on the submitting thread instead of running the task when the executor is full. */
+    void onDropped() {
+        if (cancel(false)) {
+            callback.onResult(fallback);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        signal.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    // An exception thrown by the callback itself would otherwise vanish into the future
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Repository callback failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.giaodien.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.giaodien.database.DatabaseHelper;
+import com.example.giaodien.database.LastLoginBatcher;
+import com.example.giaodien.database.SessionDAO;
+import com.example.giaodien.database.UserDAO;
+import com.example.giaodien.model.User;
+import com.example.giaodien.security.PasswordHasher;
+import com.example.giaodien.security.SessionStore;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/** Asynchronous wrapper around {@link UserDAO}; see {@link ExpenseRepository}. */
+public class UserRepository {
+    /** Registration outcome when the email is already taken. */
+    public static final long EMAIL_EXISTS = -2;
+
+    // Logins within this window share one last_login write
+    private static final long LAST_LOGIN_FLUSH_DELAY_MS = 30_000;
+
+    private static volatile UserRepository instance;
+
+    private final UserDAO userDAO;
+    private final SessionDAO sessionDAO;
+    private final SessionStore sessionStore;
+    private final LastLoginBatcher lastLogins;
+    // Both login and register are dominated by bcrypt, so they run on its dedicated worker
+    private final ExecutorService hashing;
+    private final ExecutorService io;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static UserRepository getInstance(Context context) {
+        UserRepository result = instance;
+        if (result == null) {
+            synchronized (UserRepository.class) {
+                result = instance;
+                if (result == null) {
+                    AppExecutors executors = AppExecutors.getInstance();
+                    result = new UserRepository(new UserDAO(context), new SessionDAO(context),
+                            new SessionStore(context), new LastLoginBatcher(context),
+                            executors.passwordHashing(), executors.diskIO());
+                    // Calibrate while the login screen is shown, ahead of the first hash
+                    result.hashing.execute(PasswordHasher.getInstance(context)::calibrate);
+                    // Starts a pending schema upgrade while the login screen is shown; the first
+                    // database access would otherwise run it
+                    result.io.execute(DatabaseHelper.getInstance(context)::upgradeIfNeeded);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    UserRepository(UserDAO userDAO, SessionDAO sessionDAO, SessionStore sessionStore,
+                   LastLoginBatcher lastLogins, ExecutorService hashing, ExecutorService io) {
+        this.userDAO = userDAO;
+        this.sessionDAO = sessionDAO;
+        this.sessionStore = sessionStore;
+        this.lastLogins = lastLogins;
+        this.hashing = hashing;
+        this.io = io;
+    }
+
+    /**
+     * The callback receives the user, or null when the email or password is wrong. A successful
+     * login starts a session that {@link #resumeSession} picks up on the next launch.
+     */
+    public Future<?> login(String email, String password, RepositoryCallback<User> callback) {
+        return RepositoryTask.submit(hashing, signal -> {
+            User user = userDAO.loginUser(email, password);
+            if (user != null) {
+                long now = System.currentTimeMillis();
+                String token = sessionDAO.createSession(user.getId(), now);
+                if (token != null) {
+                    sessionStore.setToken(token);
+                }
+                recordLogin(user, now);
+            }
+            return user;
+        }, null, callback);
+    }
+
+    /** The callback receives the user of the stored session, or null when there is none or it expired. */
+    public Future<?> resumeSession(RepositoryCallback<User> callback) {
+        return RepositoryTask.submit(io, signal -> {
+            String token = sessionStore.getToken();
+            User user = null;
+            if (token != null) {
+                long now = System.currentTimeMillis();
+                user = sessionDAO.resumeSession(token, now);
+                if (user == null) {
+                    sessionStore.clear();
+                } else {
+                    recordLogin(user, now);
+                }
+            }
+            return user;
+        }, null, callback);
+    }
+
+    /**
+     * Ends the stored session, or every session of {@code userId} when {@code everywhere}, so the
+     * next launch asks for the password again. The token is forgotten first, so this device is
+     * signed out even if the database write fails; SessionDAO logs that failure, and the session
+     * row stays until it expires. The callback receives true once this ran, or false when the
+     * task was dropped or threw.
+     */
+    public Future<?> logout(long userId, boolean everywhere, RepositoryCallback<Boolean> callback) {
+        return RepositoryTask.submit(io, signal -> {
+            String token = sessionStore.getToken();
+            sessionStore.clear();
+            if (everywhere) {
+                sessionDAO.revokeAllSessions(userId);
+            } else if (token != null) {
+                sessionDAO.revokeSession(token);
+            }
+            return true;
+        }, false, callback);
+    }
+
+    /**
+     * The callback receives the new user id, {@link #EMAIL_EXISTS} when the email is taken,
+     * or -1 when the insert failed.
+     */
+    public Future<?> register(String email, String password, String fullName, RepositoryCallback<Long> callback) {
+        return RepositoryTask.submit(hashing,
+                signal -> userDAO.isEmailExists(email) ? EMAIL_EXISTS : userDAO.registerUser(email, password, fullName),
+                -1L, callback);
+    }
+
+    private void recordLogin(User user, long nowMillis) {
+        if (lastLogins.record(user.getId(), nowMillis / 1000)) {
+            scheduleLastLoginFlush();
+        }
+    }
+
+    // record() only asks for a flush while nothing is pending, so a flush dropped by a full I/O
+    // queue is scheduled again; otherwise pending would never drain and no later login is written
+    private void scheduleLastLoginFlush() {
+        mainHandler.postDelayed(() -> RepositoryTask.submit(io, signal -> lastLogins.flush(), -1,
+                updated -> {
+                    if (updated < 0) {
+                        mainHandler.post(this::scheduleLastLoginFlush);
+                    }
+                }), LAST_LOGIN_FLUSH_DELAY_MS);
+    }
+}
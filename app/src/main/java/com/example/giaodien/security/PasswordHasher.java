@@ -0,0 +1,139 @@
+package com.example.giaodien.security;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+
+/**
+ * bcrypt with a cost calibrated to the device. {@link #calibrate()} measures how long one hash
+ * takes here and picks the highest cost that stays within {@link #TARGET_MILLIS}; the result is
+ * kept in SharedPreferences until the OS build changes.
+ *
+ * <p>Every method does CPU-heavy work and must run on
+ * {@link com.example.giaodien.repository.AppExecutors#passwordHashing()}.</p>
+ */
+public final class PasswordHasher {
+    private static final String TAG = "PasswordHasher";
+
+    // Never go below 10 even on very slow phones, never above 14 even on fast ones
+    static final int MIN_COST = 10;
+    static final int MAX_COST = 14;
+    static final int DEFAULT_COST = 12;
+    // How long the user may wait on the login button for the hash alone
+    static final long TARGET_MILLIS = 250;
+
+    private static final String PREFS_NAME = "password_hasher";
+    private static final String KEY_COST = "cost";
+    private static final String KEY_BUILD = "build";
+
+    private static volatile PasswordHasher instance;
+
+    private final SharedPreferences prefs;
+    private volatile int cost = DEFAULT_COST;
+    private volatile boolean calibrated;
+
+    public static PasswordHasher getInstance(Context context) {
+        PasswordHasher result = instance;
+        if (result == null) {
+            synchronized (PasswordHasher.class) {
+                result = instance;
+                if (result == null) {
+                    result = new PasswordHasher(context.getApplicationContext()
+                            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A hasher that always uses {@code cost} and never calibrates, not shared with the app. Under
+     * Robolectric the clock does not move, so calibration would always pick {@link #MAX_COST}.
+     */
+    @VisibleForTesting
+    public static PasswordHasher withFixedCost(int cost) {
+        PasswordHasher hasher = new PasswordHasher(null);
+        hasher.cost = cost;
+        hasher.calibrated = true;
+        return hasher;
+    }
+
+    private PasswordHasher(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    /** Loads the stored cost, or measures a new one when this OS build has not been measured. */
+    @WorkerThread
+    public void calibrate() {
+        if (calibrated) {
+            return;
+        }
+        int stored = prefs.getInt(KEY_COST, 0);
+        if (stored >= MIN_COST && Build.FINGERPRINT.equals(prefs.getString(KEY_BUILD, null))) {
+            cost = stored;
+        } else {
+            long millis = measure(MIN_COST);
+            cost = pickCost(millis, TARGET_MILLIS);
+            prefs.edit()
+                    .putInt(KEY_COST, cost)
+                    .putString(KEY_BUILD, Build.FINGERPRINT)
+                    .apply();
+            Log.i(TAG, "Cost " + MIN_COST + " took " + millis + " ms, using cost " + cost);
+        }
+        calibrated = true;
+    }
+
+    @WorkerThread
+    public String hash(char[] password) {
+        calibrate();
+        return BCrypt.withDefaults().hashToString(cost, password);
+    }
+
+    @WorkerThread
+    public BCrypt.Result verify(char[] password, String storedHash) {
+        return BCrypt.verifyer().verify(password, storedHash);
+    }
+
+    /** True when a verified hash was made with a cost other than the calibrated one. */
+    public boolean needsRehash(BCrypt.Result result) {
+        calibrate();
+        return result.verified && result.details.cost != cost;
+    }
+
+    /** Each cost step doubles the work, so the budget allows log2(target / measured) extra steps. */
+    @VisibleForTesting
+    static int pickCost(long millisAtMinCost, long targetMillis) {
+        int picked = MIN_COST;
+        long estimate = Math.max(millisAtMinCost, 1);
+        while (picked < MAX_COST && estimate * 2 <= targetMillis) {
+            estimate *= 2;
+            picked++;
+        }
+        return picked;
+    }
+
+    private static long measure(int cost) {
+        char[] sample = "calibration".toCharArray();
+        BCrypt.Hasher hasher = BCrypt.withDefaults();
+        // The first run pays for class loading and JIT; keep the faster of two
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = SystemClock.elapsedRealtime();
+            hasher.hash(cost, sample);
+            best = Math.min(best, SystemClock.elapsedRealtime() - start);
+        }
+        return best;
+    }
+}
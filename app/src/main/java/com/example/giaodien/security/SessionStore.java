@@ -0,0 +1,34 @@
+package com.example.giaodien.security;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Keeps the current session token on the device. The first read loads the preferences file, so
+ * call it off the main thread.
+ */
+public class SessionStore {
+    private static final String PREFS_NAME = "session";
+    private static final String KEY_TOKEN = "token";
+
+    private final SharedPreferences prefs;
+
+    public SessionStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @WorkerThread
+    public String getToken() {
+        return prefs.getString(KEY_TOKEN, null);
+    }
+
+    public void setToken(String token) {
+        prefs.edit().putString(KEY_TOKEN, token).apply();
+    }
+
+    public void clear() {
+        prefs.edit().remove(KEY_TOKEN).apply();
+    }
+}
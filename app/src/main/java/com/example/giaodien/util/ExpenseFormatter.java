@@ -0,0 +1,171 @@
+package com.example.giaodien.util;
+
+import com.example.giaodien.model.Money;
+
+import java.util.TimeZone;
+
+/**
+ * Formats amounts and dates for list rows without allocating on the bind path. Callers pass a
+ * {@code char[]} they own and get back the number of chars written, ready for
+ * {@code TextView.setText(char[], int, int)}. TextView keeps a reference to that array, so each
+ * view needs its own buffer.
+ *
+ * <p>Date text is built once per local day and kept in a small cache; the time of day is
+ * written as digits. The cache holds immutable entries, so one instance can be used from the
+ * main thread and from background diff threads at the same time.</p>
+ */
+public final class ExpenseFormatter {
+    /** Enough for "-9.223.372.036.854.775.808đ". */
+    public static final int MAX_AMOUNT_CHARS = 27;
+    /** "dd/MM/yyyy HH:mm". */
+    public static final int MAX_DATE_CHARS = 16;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int DAY_CHARS = 10;
+    // Power of two; rows on screen and in the diff window span far fewer days
+    private static final int CACHE_SIZE = 64;
+    private static final char SUFFIX = Money.CURRENCY_SUFFIX.charAt(0);
+
+    private static volatile ExpenseFormatter instance;
+
+    private final TimeZone timeZone;
+    private final DayEntry[] days = new DayEntry[CACHE_SIZE];
+
+    public static ExpenseFormatter getInstance() {
+        ExpenseFormatter result = instance;
+        if (result == null) {
+            synchronized (ExpenseFormatter.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ExpenseFormatter(TimeZone.getDefault());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public ExpenseFormatter(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /** Writes e.g. "1.250.000đ"; same text as {@link Money#format(long)}. */
+    public int formatAmount(long amount, char[] dest) {
+        // Work on the negative value so Long.MIN_VALUE does not overflow
+        long negative = amount < 0 ? amount : -amount;
+        int digits = 1;
+        for (long n = negative / 10; n != 0; n /= 10) {
+            digits++;
+        }
+        int length = digits + (digits - 1) / 3 + 1 + (amount < 0 ? 1 : 0);
+
+        int pos = length - 1;
+        dest[pos--] = SUFFIX;
+        int written = 0;
+        do {
+            if (written > 0 && written % 3 == 0) {
+                dest[pos--] = '.';
+            }
+            dest[pos--] = (char) ('0' - (negative % 10));
+            negative /= 10;
+            written++;
+        } while (negative != 0);
+        if (amount < 0) {
+            dest[0] = '-';
+        }
+        return length;
+    }
+
+    /** Writes "dd/MM/yyyy". */
+    public int formatDate(long epochMillis, char[] dest) {
+        long local = epochMillis + timeZone.getOffset(epochMillis);
+        System.arraycopy(day(Math.floorDiv(local, DAY_MILLIS)), 0, dest, 0, DAY_CHARS);
+        return DAY_CHARS;
+    }
+
+    /** Writes "dd/MM". */
+    public int formatShortDate(long epochMillis, char[] dest) {
+        long local = epochMillis + timeZone.getOffset(epochMillis);
+        System.arraycopy(day(Math.floorDiv(local, DAY_MILLIS)), 0, dest, 0, 5);
+        return 5;
+    }
+
+    /** Writes "dd/MM/yyyy HH:mm". */
+    public int formatDateTime(long epochMillis, char[] dest) {
+        long local = epochMillis + timeZone.getOffset(epochMillis);
+        System.arraycopy(day(Math.floorDiv(local, DAY_MILLIS)), 0, dest, 0, DAY_CHARS);
+        int minuteOfDay = (int) (Math.floorMod(local, DAY_MILLIS) / 60_000);
+        dest[DAY_CHARS] = ' ';
+        writeTwoDigits(minuteOfDay / 60, dest, DAY_CHARS + 1);
+        dest[DAY_CHARS + 3] = ':';
+        writeTwoDigits(minuteOfDay % 60, dest, DAY_CHARS + 4);
+        return MAX_DATE_CHARS;
+    }
+
+    // String forms for code outside the bind path; these allocate the result only
+
+    public String amountString(long amount) {
+        char[] chars = new char[MAX_AMOUNT_CHARS];
+        return new String(chars, 0, formatAmount(amount, chars));
+    }
+
+    public String dateString(long epochMillis) {
+        char[] chars = new char[MAX_DATE_CHARS];
+        return new String(chars, 0, formatDate(epochMillis, chars));
+    }
+
+    public String shortDateString(long epochMillis) {
+        char[] chars = new char[MAX_DATE_CHARS];
+        return new String(chars, 0, formatShortDate(epochMillis, chars));
+    }
+
+    public String dateTimeString(long epochMillis) {
+        char[] chars = new char[MAX_DATE_CHARS];
+        return new String(chars, 0, formatDateTime(epochMillis, chars));
+    }
+
+    private char[] day(long epochDay) {
+        int slot = (int) (epochDay & (CACHE_SIZE - 1));
+        DayEntry entry = days[slot];
+        if (entry == null || entry.epochDay != epochDay) {
+            // A racing thread may build the same entry; both results are equal
+            entry = new DayEntry(epochDay);
+            days[slot] = entry;
+        }
+        return entry.text;
+    }
+
+    private static void writeTwoDigits(int value, char[] dest, int offset) {
+        dest[offset] = (char) ('0' + value / 10);
+        dest[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static final class DayEntry {
+        final long epochDay;
+        final char[] text;
+
+        DayEntry(long epochDay) {
+            this.epochDay = epochDay;
+            // Days since 1970-01-01 to a proleptic Gregorian date (H. Hinnant, "civil_from_days")
+            long z = epochDay + 719468;
+            long era = Math.floorDiv(z, 146097);
+            long doe = z - era * 146097;
+            long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            long mp = (5 * doy + 2) / 153;
+            int dayOfMonth = (int) (doy - (153 * mp + 2) / 5 + 1);
+            int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+            long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+            char[] chars = new char[DAY_CHARS];
+            writeTwoDigits(dayOfMonth, chars, 0);
+            chars[2] = '/';
+            writeTwoDigits(month, chars, 3);
+            chars[5] = '/';
+            int y = (int) Math.floorMod(year, 10000);
+            writeTwoDigits(y / 100, chars, 6);
+            writeTwoDigits(y % 100, chars, 8);
+            text = chars;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.giaodien.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folds text for the full-text index: lower case, without diacritics, so "Thức ăn" and
+ * "thuc an" are the same words. Stored text and queries must go through the same folding.
+ */
+public final class SearchText {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchText() {
+    }
+
+    /** "Đi chợ Tết" becomes "di cho tet"; null stays null. */
+    public static String fold(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        // đ has no decomposition, so it is mapped by hand
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * FTS MATCH expression requiring every word of {@code query} as a word prefix, e.g.
+     * "an tr" becomes "an* tr*". Returns null when the query has no words. Punctuation is
+     * dropped, so user input cannot form FTS operators.
+     */
+    public static String matchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : NON_WORD.split(fold(query))) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.giaodien.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Startup timeline of one screen: named phases, each also a systrace section, then the first
+ * frame and the moment the screen shows its data. Times are uptime milliseconds since the
+ * metrics were created. Main thread only.
+ */
+public final class StartupMetrics {
+    private static final String TAG = "StartupMetrics";
+
+    /** Event recorded when the first frame has been drawn. */
+    public static final String FIRST_DRAW = "firstDraw";
+    /** Event recorded when the screen is fully populated. */
+    public static final String FULLY_DRAWN = "fullyDrawn";
+
+    private final String screen;
+    private final long startMillis = SystemClock.uptimeMillis();
+    private final List<String> events = new ArrayList<>();
+    private long firstDrawMillis = -1;
+    private long fullyDrawnMillis = -1;
+
+    public StartupMetrics(String screen) {
+        this.screen = screen;
+    }
+
+    /** Runs {@code body} inside a trace section named "screen.phase" and records the phase. */
+    public void phase(String phase, Runnable body) {
+        Trace.beginSection(screen + "." + phase);
+        long begin = SystemClock.uptimeMillis();
+        try {
+            body.run();
+        } finally {
+            Trace.endSection();
+        }
+        events.add(phase);
+        Log.d(TAG, screen + "." + phase + ": " + (SystemClock.uptimeMillis() - begin) + " ms");
+    }
+
+    /**
+     * Records {@link #FIRST_DRAW} once {@code view} has drawn its first frame, then runs
+     * {@code afterFirstFrame} as a separate message, outside the frame being drawn.
+     */
+    public void awaitFirstDraw(View view, Runnable afterFirstFrame) {
+        Handler handler = new Handler(Looper.getMainLooper());
+        ViewTreeObserver.OnDrawListener listener = new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                if (firstDrawMillis >= 0) {
+                    return;
+                }
+                firstDrawMillis = SystemClock.uptimeMillis() - startMillis;
+                events.add(FIRST_DRAW);
+                // A draw listener cannot remove itself while the tree is dispatching
+                ViewTreeObserver.OnDrawListener self = this;
+                handler.post(() -> {
+                    view.getViewTreeObserver().removeOnDrawListener(self);
+                    afterFirstFrame.run();
+                });
+            }
+        };
+        view.getViewTreeObserver().addOnDrawListener(listener);
+    }
+
+    /**
+     * Records {@link #FULLY_DRAWN} and logs the timeline.
+     *
+     * @return true the first time only, so the caller can report it to the system once
+     */
+    public boolean markFullyDrawn() {
+        if (fullyDrawnMillis >= 0) {
+            return false;
+        }
+        fullyDrawnMillis = SystemClock.uptimeMillis() - startMillis;
+        events.add(FULLY_DRAWN);
+        Log.i(TAG, screen + ": first draw " + firstDrawMillis + " ms, fully drawn " + fullyDrawnMillis + " ms");
+        return true;
+    }
+
+    /** Phases and markers in the order they happened. */
+    public List<String> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    /** Milliseconds to the first frame, or -1 before it. */
+    public long getTimeToFirstDrawMillis() {
+        return firstDrawMillis;
+    }
+
+    /** Milliseconds until the screen showed its data, or -1 before that. */
+    public long getTimeToFullyDrawnMillis() {
+        return fullyDrawnMillis;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.giaodien.viewmodel;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.repository.ExpenseRepository;
+
+import java.util.concurrent.Future;
+
+public class AddExpenseViewModel extends AndroidViewModel {
+    private final ExpenseRepository repository;
+    private final MutableLiveData<Long> savedId = new MutableLiveData<>();
+    private volatile Expense savedExpense;
+    private Future<?> pendingSave;
+
+    public AddExpenseViewModel(@NonNull Application application) {
+        super(application);
+        repository = ExpenseRepository.getInstance(application);
+    }
+
+    /** Row id of the saved expense, or -1 when the insert failed. */
+    public LiveData<Long> getSavedId() {
+        return savedId;
+    }
+
+    /** The expense passed to the last successful {@link #save}, with its row id filled in. */
+    public Expense getSavedExpense() {
+        return savedExpense;
+    }
+
+    public boolean isSaving() {
+        return pendingSave != null && !pendingSave.isDone();
+    }
+
+    public void save(Expense expense) {
+        if (isSaving()) {
+            return;
+        }
+        pendingSave = repository.addExpense(expense, id -> {
+            if (id != -1) {
+                expense.setExpenseId(id);
+                savedExpense = expense;
+            }
+            savedId.postValue(id);
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        if (pendingSave != null) {
+            pendingSave.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.giaodien.viewmodel;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.giaodien.database.ExpenseFilter;
+import com.example.giaodien.repository.AppExecutors;
+import com.example.giaodien.repository.ExpensePager;
+import com.example.giaodien.repository.ExpenseRepository;
+
+import java.util.Collection;
+
+public class ExpenseHistoryViewModel extends AndroidViewModel {
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 15;
+    private static final int MAX_PAGES_IN_MEMORY = 6;
+    // Wait for a pause in typing before searching
+    private static final long SEARCH_DELAY_MS = 250;
+
+    private final ExpensePager pager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<ExpenseFilter> filter = new MutableLiveData<>(ExpenseFilter.ALL);
+    private final MutableLiveData<String[]> categoryLabels = new MutableLiveData<>();
+    private final MutableLiveData<String[]> paymentMethodLabels = new MutableLiveData<>();
+    private String pendingQuery;
+    private final Runnable applyQuery = this::applyPendingQuery;
+    // First day picked for a date range while the second picker is showing
+    private long rangeStart = Long.MIN_VALUE;
+
+    public ExpenseHistoryViewModel(@NonNull Application application) {
+        super(application);
+        ExpenseRepository repository = ExpenseRepository.getInstance(application);
+        pager = new ExpensePager(repository,
+                AppExecutors.getInstance().mainThread(),
+                PAGE_SIZE, PREFETCH_DISTANCE, MAX_PAGES_IN_MEMORY);
+        pager.start();
+        repository.loadCategoryLabels(categoryLabels::postValue);
+        repository.loadPaymentMethodLabels(paymentMethodLabels::postValue);
+    }
+
+    public ExpensePager getPager() {
+        return pager;
+    }
+
+    /** The filter the history is showing, for the filter buttons. */
+    public LiveData<ExpenseFilter> getFilter() {
+        return filter;
+    }
+
+    public LiveData<String[]> getCategoryLabels() {
+        return categoryLabels;
+    }
+
+    public LiveData<String[]> getPaymentMethodLabels() {
+        return paymentMethodLabels;
+    }
+
+    /** Searches for {@code text} once the user stops typing; blank text shows every expense. */
+    public void setSearchQuery(String text) {
+        String trimmed = text == null ? "" : text.trim();
+        pendingQuery = trimmed.isEmpty() ? null : trimmed;
+        mainHandler.removeCallbacks(applyQuery);
+        mainHandler.postDelayed(applyQuery, SEARCH_DELAY_MS);
+    }
+
+    /** Only {@code fromMillis <= date < toMillis}. */
+    public void setDateRange(long fromMillis, long toMillis) {
+        apply(pager.getFilter().withDateRange(fromMillis, toMillis));
+    }
+
+    public void clearDateRange() {
+        apply(pager.getFilter().withoutDateRange());
+    }
+
+    /** Only these categories; empty shows every category. */
+    public void setCategories(Collection<String> categories) {
+        apply(pager.getFilter().withCategories(categories));
+    }
+
+    /** Only this payment method, or every one when null. */
+    public void setPaymentMethod(String paymentMethod) {
+        apply(pager.getFilter().withPaymentMethod(paymentMethod));
+    }
+
+    public long getRangeStart() {
+        return rangeStart;
+    }
+
+    public void setRangeStart(long rangeStart) {
+        this.rangeStart = rangeStart;
+    }
+
+    private void applyPendingQuery() {
+        apply(pager.getFilter().withQuery(pendingQuery));
+    }
+
+    private void apply(ExpenseFilter newFilter) {
+        pager.setFilter(newFilter);
+        filter.setValue(newFilter);
+    }
+
+    @Override
+    protected void onCleared() {
+        mainHandler.removeCallbacks(applyQuery);
+        pager.cancel();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.giaodien.viewmodel;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.giaodien.model.LedgerAccount;
+import com.example.giaodien.model.LedgerEntry;
+import com.example.giaodien.repository.AppExecutors;
+import com.example.giaodien.repository.LedgerRepository;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/** Balance and newest entries of one ledger account, for one dashboard tab. */
+public class LedgerViewModel extends AndroidViewModel {
+    private static final int RECENT_LIMIT = 50;
+
+    private final LedgerRepository repository;
+    private final Executor mainThread = AppExecutors.getInstance().mainThread();
+    private final MutableLiveData<Long> balance = new MutableLiveData<>();
+    private final MutableLiveData<List<LedgerEntry>> entries = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> saveFailed = new MutableLiveData<>();
+    private long userId;
+    private LedgerAccount account;
+    private Future<?> pendingBalance;
+    private Future<?> pendingEntries;
+    private Future<?> pendingSave;
+
+    public LedgerViewModel(@NonNull Application application) {
+        super(application);
+        repository = LedgerRepository.getInstance(application);
+    }
+
+    /** Loads the account unless it is already loaded (e.g. after a rotation). */
+    public void start(long userId, LedgerAccount account) {
+        if (this.account != null) {
+            return;
+        }
+        this.userId = userId;
+        this.account = account;
+        reload();
+    }
+
+    public LiveData<Long> getBalance() {
+        return balance;
+    }
+
+    public LiveData<List<LedgerEntry>> getEntries() {
+        return entries;
+    }
+
+    /** Set to true when an entry could not be saved. */
+    public LiveData<Boolean> getSaveFailed() {
+        return saveFailed;
+    }
+
+    /** Records a movement of {@code amount} đồng, negative to decrease the balance. */
+    public void addEntry(long amount, String description) {
+        LedgerEntry entry = new LedgerEntry(userId, account, amount, description, System.currentTimeMillis());
+        pendingSave = repository.addEntry(entry, id -> {
+            if (id == -1) {
+                saveFailed.postValue(true);
+            } else {
+                // The balance is one row and the list one index range, so reading both again is cheap
+                mainThread.execute(this::reload);
+            }
+        });
+    }
+
+    private void reload() {
+        cancel(pendingBalance);
+        cancel(pendingEntries);
+        // On failure keep showing what was there
+        pendingBalance = repository.getBalance(userId, account, value -> {
+            if (value != null) {
+                balance.postValue(value);
+            }
+        });
+        pendingEntries = repository.getRecentEntries(userId, account, RECENT_LIMIT, list -> {
+            if (list != null) {
+                entries.postValue(list);
+            }
+        });
+    }
+
+    private static void cancel(Future<?> future) {
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        cancel(pendingBalance);
+        cancel(pendingEntries);
+        cancel(pendingSave);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.giaodien.viewmodel;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.giaodien.model.User;
+import com.example.giaodien.repository.UserRepository;
+
+import java.util.concurrent.Future;
+
+public class LoginViewModel extends AndroidViewModel {
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_LOADING = 1;
+    public static final int STATE_SUCCESS = 2;
+    public static final int STATE_FAILED = 3;
+
+    private final UserRepository repository;
+    private final MutableLiveData<Integer> state = new MutableLiveData<>(STATE_LOADING);
+    private volatile User user;
+    private Future<?> pendingLogin;
+
+    public LoginViewModel(@NonNull Application application) {
+        super(application);
+        repository = UserRepository.getInstance(application);
+        // Phiên đăng nhập còn hạn thì vào thẳng, không cần bcrypt
+        pendingLogin = repository.resumeSession(result -> {
+            user = result;
+            state.postValue(result != null ? STATE_SUCCESS : STATE_IDLE);
+        });
+    }
+
+    public LiveData<Integer> getState() {
+        return state;
+    }
+
+    /** The logged-in user once the state is {@link #STATE_SUCCESS}. */
+    public User getUser() {
+        return user;
+    }
+
+    public void login(String email, String password) {
+        if (pendingLogin != null && !pendingLogin.isDone()) {
+            return;
+        }
+        state.setValue(STATE_LOADING);
+        pendingLogin = repository.login(email, password, result -> {
+            user = result;
+            state.postValue(result != null ? STATE_SUCCESS : STATE_FAILED);
+        });
+    }
+
+    /** Called once a failure has been shown, so it is not shown again after rotation. */
+    public void onFailureShown() {
+        state.setValue(STATE_IDLE);
+    }
+
+    @Override
+    protected void onCleared() {
+        if (pendingLogin != null) {
+            pendingLogin.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.giaodien.viewmodel;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.CategoryTotals;
+import com.example.giaodien.repository.ExpenseRepository;
+import com.example.giaodien.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Future;
+
+public class MainViewModel extends AndroidViewModel {
+    private static final int RECENT_LIMIT = 20;
+
+    private final ExpenseRepository repository;
+    private final MutableLiveData<CategoryTotals> monthTotals = new MutableLiveData<>();
+    private final MutableLiveData<List<Expense>> recentExpenses = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> loggedOut = new MutableLiveData<>();
+    private final UserRepository userRepository;
+    private Future<?> pendingTotals;
+    private Future<?> pendingRecent;
+    private long totalsUserId;
+    private int totalsMonth;
+
+    public MainViewModel(@NonNull Application application) {
+        super(application);
+        repository = ExpenseRepository.getInstance(application);
+        userRepository = UserRepository.getInstance(application);
+    }
+
+    /** Becomes true once the session is ended and the login screen should be shown. */
+    public LiveData<Boolean> getLoggedOut() {
+        return loggedOut;
+    }
+
+    /** Ends this device's session, or all of {@code userId}'s sessions when {@code everywhere}. */
+    public void logout(long userId, boolean everywhere) {
+        // The token is gone even when revoking failed, so leave either way
+        userRepository.logout(userId, everywhere, revoked -> loggedOut.postValue(true));
+    }
+
+    /** Category totals of the current month, for the dashboard pie chart. */
+    public LiveData<CategoryTotals> getMonthTotals() {
+        return monthTotals;
+    }
+
+    /** Loads the totals unless they are already loaded (e.g. after a rotation). */
+    public void loadMonthTotals(long userId) {
+        if (monthTotals.getValue() == null) {
+            reloadMonthTotals(userId);
+        }
+    }
+
+    public void reloadMonthTotals(long userId) {
+        if (pendingTotals != null) {
+            pendingTotals.cancel(true);
+        }
+        totalsUserId = userId;
+        totalsMonth = monthOf(System.currentTimeMillis());
+        pendingTotals = repository.getMonthCategoryTotals(userId, totalsMonth, monthTotals::postValue);
+    }
+
+    // Same month key as the rollup table: year * 100 + month, in the local time zone
+    private static int monthOf(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        return calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+    }
+
+    /** The newest expenses, for the list on the "Chi tiêu" tab. */
+    public LiveData<List<Expense>> getRecentExpenses() {
+        return recentExpenses;
+    }
+
+    public void loadRecentExpenses() {
+        if (recentExpenses.getValue() == null && (pendingRecent == null || pendingRecent.isDone())) {
+            // A failed read leaves the list unset, so the next call tries again
+            pendingRecent = repository.loadOlder(null, RECENT_LIMIT, page -> {
+                if (page != null) {
+                    recentExpenses.postValue(page);
+                }
+            });
+        }
+    }
+
+    /**
+     * Puts an expense saved by AddExpenseActivity into the recent list and the month totals
+     * without querying again, so the list shows it as a single insert and the chart changes
+     * one slice.
+     */
+    public void onExpenseAdded(Expense expense) {
+        addToMonthTotals(expense);
+        addToRecent(expense);
+    }
+
+    private void addToMonthTotals(Expense expense) {
+        CategoryTotals totals = monthTotals.getValue();
+        if (totals == null) {
+            return;
+        }
+        if (pendingTotals != null && !pendingTotals.isDone()) {
+            // The running read may or may not have seen the new row; read again after it
+            reloadMonthTotals(totalsUserId);
+            return;
+        }
+        if (expense.getUserId() == totalsUserId && monthOf(expense.getTimestamp()) == totalsMonth) {
+            monthTotals.setValue(totals.plus(expense.getCategory(), expense.getAmount()));
+        }
+    }
+
+    private void addToRecent(Expense expense) {
+        List<Expense> current = recentExpenses.getValue();
+        if (current == null) {
+            return;
+        }
+        int position = 0;
+        while (position < current.size() && isNewer(current.get(position), expense)) {
+            position++;
+        }
+        if (position == RECENT_LIMIT) {
+            return;
+        }
+        List<Expense> updated = new ArrayList<>(current.size() + 1);
+        updated.addAll(current);
+        updated.add(position, expense);
+        if (updated.size() > RECENT_LIMIT) {
+            updated.remove(updated.size() - 1);
+        }
+        recentExpenses.setValue(updated);
+    }
+
+    // Same order as the history queries: date, then id, both descending
+    private static boolean isNewer(Expense a, Expense b) {
+        return a.getTimestamp() > b.getTimestamp()
+                || (a.getTimestamp() == b.getTimestamp() && a.getExpenseId() > b.getExpenseId());
+    }
+
+    @Override
+    protected void onCleared() {
+        if (pendingTotals != null) {
+            pendingTotals.cancel(true);
+        }
+        if (pendingRecent != null) {
+            pendingRecent.cancel(true);
+        }
+    }
+}
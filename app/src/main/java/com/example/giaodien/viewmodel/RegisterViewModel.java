@@ -0,0 +1,59 @@
+package com.example.giaodien.viewmodel;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.giaodien.repository.UserRepository;
+
+import java.util.concurrent.Future;
+
+public class RegisterViewModel extends AndroidViewModel {
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_LOADING = 1;
+    public static final int STATE_SUCCESS = 2;
+    public static final int STATE_EMAIL_EXISTS = 3;
+    public static final int STATE_FAILED = 4;
+
+    private final UserRepository repository;
+    private final MutableLiveData<Integer> state = new MutableLiveData<>(STATE_IDLE);
+    private Future<?> pendingRegister;
+
+    public RegisterViewModel(@NonNull Application application) {
+        super(application);
+        repository = UserRepository.getInstance(application);
+    }
+
+    public LiveData<Integer> getState() {
+        return state;
+    }
+
+    public void register(String email, String password, String fullName) {
+        if (pendingRegister != null && !pendingRegister.isDone()) {
+            return;
+        }
+        state.setValue(STATE_LOADING);
+        pendingRegister = repository.register(email, password, fullName, userId -> {
+            if (userId == UserRepository.EMAIL_EXISTS) {
+                state.postValue(STATE_EMAIL_EXISTS);
+            } else {
+                state.postValue(userId != -1 ? STATE_SUCCESS : STATE_FAILED);
+            }
+        });
+    }
+
+    /** Called once an error has been shown, so it is not shown again after rotation. */
+    public void onErrorShown() {
+        state.setValue(STATE_IDLE);
+    }
+
+    @Override
+    protected void onCleared() {
+        if (pendingRegister != null) {
+            pendingRegister.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.giaodien.analytics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ExpenseSnapshotTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private DatabaseHelper dbHelper;
+    private long userId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        userId = dbHelper.addUser("a@b.c", "hash", "A");
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void refresh_readsOnlyWhatChanged() {
+        addExpense("Thức ăn", 50_000, NOW);
+        ExpenseSnapshot snapshot = ExpenseSnapshot.load(dbHelper, userId);
+        assertSame(snapshot, snapshot.refresh(dbHelper));
+
+        // Dated before the row already loaded, so the new row is merged in, not appended
+        long added = addExpense("Giải trí", 70_000, NOW - 1);
+        ExpenseSnapshot refreshed = snapshot.refresh(dbHelper);
+        assertEquals(2, refreshed.size());
+        assertEquals(added, refreshed.getExpenseId(0));
+        assertEquals(120_000, refreshed.getTotal());
+    }
+
+    @Test
+    public void refresh_reloadsAfterDeleteThatKeepsCountAndTotal() {
+        long deleted = addExpense("Thức ăn", 50_000, NOW);
+        ExpenseSnapshot snapshot = ExpenseSnapshot.load(dbHelper, userId);
+
+        assertEquals(1, dbHelper.deleteExpense(deleted));
+        long added = addExpense("Mua sắm", 50_000, NOW);
+        ExpenseSnapshot refreshed = snapshot.refresh(dbHelper);
+        assertEquals(1, refreshed.size());
+        assertEquals(added, refreshed.getExpenseId(0));
+        assertEquals("Mua sắm", refreshed.getCategory(refreshed.getCategoryId(0)));
+    }
+
+    private long addExpense(String category, long amount, long date) {
+        Expense expense = new Expense(amount, category, "Tiền mặt", null, date);
+        expense.setUserId(userId);
+        return dbHelper.addExpense(expense);
+    }
+}
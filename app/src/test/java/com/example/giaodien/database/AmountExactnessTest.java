@@ -0,0 +1,155 @@
+package com.example.giaodien.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.analytics.ExpenseAnalytics;
+import com.example.giaodien.analytics.ExpenseSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Sums of amounts up to ten billion đồng each, checked against BigDecimal. At 2,000,000 rows the
+ * grand total passes 2^53, past which a double can no longer hold every whole number, so any
+ * path that went through double on the way would be off by a few đồng.
+ *
+ * <p>The default of 20,000 rows keeps a normal test run short; run the full check with
+ * {@code -Pexactness.rows=2000000}.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class AmountExactnessTest {
+    private static final int ROWS = Integer.getInteger("exactness.rows", 20_000);
+    private static final int YEAR = 2024;
+    private static final long MAX_AMOUNT = 10_000_000_000L;
+    private static final String[] CATEGORIES = {"Thức ăn", "Di chuyển", "Giải trí", "Mua sắm", "Hóa đơn"};
+
+    private DatabaseHelper dbHelper;
+    private long userId;
+    private final BigDecimal[] byCategory = new BigDecimal[CATEGORIES.length];
+    private final BigDecimal[] byMonth = new BigDecimal[12];
+    private final BigDecimal[][] byMonthAndCategory = new BigDecimal[12][CATEGORIES.length];
+    private BigDecimal total = BigDecimal.ZERO;
+    private final long[] monthStarts = new long[13];
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        userId = dbHelper.addUser("a@b.c", "hash", "A");
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        for (int month = 0; month <= 12; month++) {
+            calendar.set(YEAR, Calendar.JANUARY, 1);
+            calendar.add(Calendar.MONTH, month);
+            monthStarts[month] = calendar.getTimeInMillis();
+        }
+        Arrays.fill(byCategory, BigDecimal.ZERO);
+        Arrays.fill(byMonth, BigDecimal.ZERO);
+        for (BigDecimal[] month : byMonthAndCategory) {
+            Arrays.fill(month, BigDecimal.ZERO);
+        }
+        assertEquals(ROWS, dbHelper.addExpenses(expenses(new Random(42)), null));
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void totals_areExactOverMillionsOfRows() {
+        if (ROWS >= 2_000_000) {
+            assertTrue(total.compareTo(BigDecimal.valueOf(1L << 53)) > 0);
+        }
+
+        long[] countAndTotal = dbHelper.getExpenseCountAndTotal(userId);
+        assertEquals(ROWS, countAndTotal[0]);
+        assertEquals(total, BigDecimal.valueOf(countAndTotal[1]));
+
+        CategoryTotals categoryTotals = dbHelper.getCategoryTotals(userId, monthStarts[0], monthStarts[12]);
+        assertEquals(total, BigDecimal.valueOf(categoryTotals.getGrandTotal()));
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            int index = categoryTotals.indexOf(CATEGORIES[c]);
+            assertTrue(CATEGORIES[c] + " missing", index >= 0);
+            assertEquals(CATEGORIES[c], byCategory[c], BigDecimal.valueOf(categoryTotals.getTotal(index)));
+        }
+
+        long[] monthly = dbHelper.getMonthlyTotals(userId, YEAR);
+        for (int m = 0; m < 12; m++) {
+            assertEquals("month " + (m + 1), byMonth[m], BigDecimal.valueOf(monthly[m]));
+
+            CategoryTotals rollup = dbHelper.getMonthCategoryTotals(userId, YEAR * 100 + m + 1);
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                String where = "month " + (m + 1) + ", " + CATEGORIES[c];
+                int index = rollup.indexOf(CATEGORIES[c]);
+                if (byMonthAndCategory[m][c].signum() == 0) {
+                    // No expense, so possibly no rollup row either
+                    assertTrue(where, index < 0 || rollup.getTotal(index) == 0);
+                    continue;
+                }
+                assertTrue(where + " missing", index >= 0);
+                assertEquals(where, byMonthAndCategory[m][c], BigDecimal.valueOf(rollup.getTotal(index)));
+            }
+        }
+
+        ExpenseSnapshot snapshot = ExpenseSnapshot.load(dbHelper, userId);
+        assertEquals(total, BigDecimal.valueOf(snapshot.getTotal()));
+        long[] analyticsTotals = new ExpenseAnalytics().totalsByCategory(snapshot, monthStarts[0], monthStarts[12]);
+        BigDecimal[] expected = new BigDecimal[snapshot.getCategoryCount()];
+        BigDecimal[] actual = new BigDecimal[expected.length];
+        for (int id = 0; id < expected.length; id++) {
+            expected[id] = byCategory[Arrays.asList(CATEGORIES).indexOf(snapshot.getCategory(id))];
+            actual[id] = BigDecimal.valueOf(analyticsTotals[id]);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    // Every date falls between the 10th and the 19th, so no time zone moves it to another month
+    private Iterator<Expense> expenses(Random random) {
+        return new Iterator<Expense>() {
+            private int made;
+
+            @Override
+            public boolean hasNext() {
+                return made < ROWS;
+            }
+
+            @Override
+            public Expense next() {
+                made++;
+                long amount = 1 + (long) (random.nextDouble() * (MAX_AMOUNT - 1));
+                int category = random.nextInt(CATEGORIES.length);
+                int month = random.nextInt(12);
+                long date = monthStarts[month] + (9 + random.nextInt(10)) * 86_400_000L + random.nextInt(86_400_000);
+
+                BigDecimal exact = BigDecimal.valueOf(amount);
+                byCategory[category] = byCategory[category].add(exact);
+                byMonth[month] = byMonth[month].add(exact);
+                byMonthAndCategory[month][category] = byMonthAndCategory[month][category].add(exact);
+                total = total.add(exact);
+
+                Expense expense = new Expense(amount, CATEGORIES[category], "Chuyển khoản", null, date);
+                expense.setUserId(userId);
+                return expense;
+            }
+        };
+    }
+}
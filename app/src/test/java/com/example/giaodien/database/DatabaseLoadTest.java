@@ -0,0 +1,495 @@
+package com.example.giaodien.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.io.ExpenseBackup;
+import com.example.giaodien.io.ExpenseExporter;
+import com.example.giaodien.security.PasswordHasher;
+import com.sun.management.ThreadMXBean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestName;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Seeds FinanceManager.db through DatabaseHelper with a realistic spread of data and fails when
+ * an operation's p50 or p99 latency is over its budget in load-budgets.properties.
+ *
+ * <p>A few users own most expenses, and expense dates fall off exponentially with age, so most
+ * rows are from the last few months. Timings depend on the machine, so a plain
+ * {@code testDebugUnitTest} skips this class; run it with {@code ./gradlew testDebugUnitTest
+ * --tests '*DatabaseLoadTest' -Pload.run}, or scale up with e.g. {@code -Pload.users=20000
+ * -Pload.expenses=3000000}, which runs it too. Also reported, without budgets: full-text search
+ * against LIKE '%word%', the history reads on a connection opened per call, and the CSV, backup
+ * and database file sizes. Every number goes to build/reports/load/.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class DatabaseLoadTest {
+    private static final int USERS = Integer.getInteger("load.users", 200);
+    private static final int EXPENSES = Integer.getInteger("load.expenses", 100_000);
+    private static final int SAMPLES = Integer.getInteger("load.samples", 200);
+    // Operations over the whole table take seconds each at full scale
+    private static final int BULK_SAMPLES = Integer.getInteger("load.bulkSamples", 5);
+
+    private static final long NOW = 1_750_000_000_000L;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final double MEAN_AGE_DAYS = 90;
+    private static final long MAX_AGE_DAYS = 5 * 365;
+    private static final String PASSWORD = "mật khẩu 123";
+    private static final int PAGE_SIZE = 50;
+    private static final int INSERT_BATCH_ROWS = 10_000;
+    // 1000 rows, the smallest size, hold 20 pages
+    private static final int SCROLL_PAGES = 15;
+
+    private static final String[] CATEGORIES = {"Thức ăn", "Di chuyển", "Giải trí", "Mua sắm", "Hóa đơn", "Quà cưới"};
+    private static final int[] CATEGORY_WEIGHTS = {40, 20, 12, 15, 10, 3};
+    private static final String[] PAYMENT_METHODS = {"Tiền mặt", "Thẻ ngân hàng", "Ví điện tử", "Chuyển khoản"};
+    private static final int[] PAYMENT_WEIGHTS = {45, 25, 20, 10};
+    private static final String[] DESCRIPTIONS = {"Phở bò", "Cà phê sữa đá", "Grab đi làm", "Tiền điện tháng 5",
+            "Bún chả", "Siêu thị", "Xem phim", "Đổ xăng", "Quà sinh nhật", "Trà sữa"};
+    private static final String[] SEARCHES = {"phở", "cà phê", "grab", "điện", "xăng"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public TestName testName = new TestName();
+
+    private DatabaseHelper dbHelper;
+    private UserDAO userDAO;
+    private final Random random = new Random(20240601L);
+    private long[] userIds;
+    private Properties budgets;
+    private final List<String> report = new ArrayList<>();
+    private final List<String> overBudget = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        PasswordHasher passwordHasher = PasswordHasher.withFixedCost(10);
+        dbHelper = DatabaseHelper.getInstance(context);
+        userDAO = new UserDAO(context, passwordHasher);
+        budgets = loadBudgets();
+
+        seedUsers(passwordHasher.hash(PASSWORD.toCharArray()));
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void operationsStayWithinBudgets() throws IOException {
+        long started = System.nanoTime();
+        dbHelper.addExpenses(expenses(EXPENSES), null);
+        double seedMillis = (System.nanoTime() - started) / 1e6;
+        report.add(String.format(Locale.ROOT, "Seeded %d users and %d expenses in %.0f ms, %.0f rows/s",
+                USERS, EXPENSES, seedMillis, EXPENSES * 1000 / seedMillis));
+        // Batches the size of a year of bank-statement lines, on top of the seeded table
+        measure("addExpenses", BULK_SAMPLES, true,
+                () -> (int) dbHelper.addExpenses(expenses(INSERT_BATCH_ROWS), null));
+
+        measure("getRecentExpenses", SAMPLES, false, () -> dbHelper.getRecentExpenses(PAGE_SIZE).size());
+        compareConnectionPerCall();
+        measure("getAllExpenses", BULK_SAMPLES, true, () -> dbHelper.getAllExpenses().size());
+        measure("getExpensesByUser", SAMPLES / 4, true,
+                () -> dbHelper.getExpensesByUser(userIds[skewedUser()]).size());
+        measure("searchFirstPage", SAMPLES, false, () -> dbHelper.getFilteredExpensesOlderThan(
+                ExpenseFilter.ALL.withQuery(SEARCHES[random.nextInt(SEARCHES.length)]), null, PAGE_SIZE, null).size());
+        compareLikeSearch();
+
+        measure("isEmailExists", SAMPLES, false, () -> {
+            int user = random.nextInt(USERS);
+            // Half the checks are for addresses that are not registered, as on the sign-up screen
+            boolean registered = random.nextBoolean();
+            boolean exists = userDAO.isEmailExists(registered ? email(user) : "new" + email(user));
+            assertTrue(exists == registered);
+            return 1;
+        });
+        measure("loginUser", Math.min(SAMPLES, 50), false, () -> {
+            assertNotNull(userDAO.loginUser(email(random.nextInt(USERS)), PASSWORD));
+            return 1;
+        });
+
+        File csv = folder.newFile("expenses.csv");
+        File backupFile = folder.newFile("expenses.bak");
+        ExpenseExporter exporter = new ExpenseExporter(dbHelper);
+        ExpenseBackup backup = new ExpenseBackup(dbHelper);
+        measure("exportCsv", BULK_SAMPLES, true, () -> {
+            try (FileChannel channel = FileChannel.open(csv.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                return (int) exporter.exportTo(channel, ExpenseExporter.Format.CSV, false, null, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        measure("backupWrite", BULK_SAMPLES, true, () -> {
+            try {
+                return (int) backup.writeTo(backupFile, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        measure("backupRestore", Math.min(BULK_SAMPLES, 3), true, () -> {
+            try {
+                return (int) backup.restoreFrom(backupFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        compareFileSizes(csv, backupFile);
+
+        long[] idRange = idRange();
+        measure("deleteExpense", SAMPLES, false, () -> {
+            long id = idRange[0] + (long) (random.nextDouble() * (idRange[1] - idRange[0] + 1));
+            return dbHelper.deleteExpense(id);
+        });
+
+        finish();
+    }
+
+    /**
+     * Grows the table tenfold at a time from 1000 rows up to load.expenses and, at each size, reads
+     * the first history page (time to first row), pages at random positions, and counts the heap
+     * allocated while scrolling through {@link #SCROLL_PAGES} pages. A keyset page is a seek on
+     * idx_expenses_date, so each of these may be at most keysetPageGrowth times its value at 1000
+     * rows. Allocation stands in for peak heap: it bounds it, and unlike used memory it does not
+     * depend on when the collector last ran. SQLite's own native memory is not counted.
+     */
+    @Test
+    public void keysetPages_stayFlatAsTableGrows() throws IOException {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        double[] smallest = new double[3];
+        double[] largest = new double[3];
+        int rows = 0;
+        for (int size = 1000; size <= EXPENSES; size *= 10) {
+            dbHelper.addExpenses(expenses(size - rows), null);
+            rows = size;
+            double[] firstPage = sample(SAMPLES, false,
+                    () -> dbHelper.getExpensesOlderThan(null, PAGE_SIZE).size());
+            reportUnbudgeted("firstPage@" + size, firstPage, "ms");
+
+            ExpensePageKey[] keys = randomPageKeys(SAMPLES);
+            int[] next = {0};
+            double[] millis = sample(SAMPLES, false,
+                    () -> dbHelper.getExpensesOlderThan(keys[next[0]++ % keys.length], PAGE_SIZE).size());
+            reportUnbudgeted("keysetPage@" + size, millis, "ms");
+
+            scroll(SCROLL_PAGES);
+            long before = threads.getThreadAllocatedBytes(thread);
+            scroll(SCROLL_PAGES);
+            double kib = (threads.getThreadAllocatedBytes(thread) - before) / 1024.0;
+            report.add(String.format(Locale.ROOT, "%-18s %8.0f KiB allocated over %d pages  (no budget)",
+                    "scroll@" + size, kib, SCROLL_PAGES));
+
+            largest[0] = percentile(firstPage, 50);
+            largest[1] = percentile(millis, 50);
+            largest[2] = kib;
+            if (size == 1000) {
+                smallest = largest.clone();
+            }
+        }
+        // Below a tenth of a millisecond the ratio is timer noise
+        checkFlat("firstPage p50", "ms", smallest[0], largest[0], 0.1, rows);
+        checkFlat("keysetPage p50", "ms", smallest[1], largest[1], 0.1, rows);
+        checkFlat("scroll allocation", "KiB", smallest[2], largest[2], 0, rows);
+        finish();
+    }
+
+    // Reads {@code pages} pages from the newest on, each seeking from the last row of the one before
+    private void scroll(int pages) {
+        ExpensePageKey key = null;
+        for (int i = 0; i < pages; i++) {
+            List<Expense> page = dbHelper.getExpensesOlderThan(key, PAGE_SIZE);
+            key = ExpensePageKey.of(page.get(page.size() - 1));
+        }
+    }
+
+    private void checkFlat(String name, String unit, double smallest, double largest, double floor, int rows) {
+        double growth = budget("keysetPageGrowth");
+        if (largest > growth * Math.max(smallest, floor)) {
+            overBudget.add(String.format(Locale.ROOT, "%s %.2f %s at %d rows > %s x %.2f %s at 1000 rows",
+                    name, largest, unit, rows, growth, smallest, unit));
+        }
+    }
+
+    private ExpensePageKey[] randomPageKeys(int count) {
+        long[] idRange = idRange();
+        ExpensePageKey[] keys = new ExpensePageKey[count];
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        for (int i = 0; i < count; i++) {
+            long id = idRange[0] + (long) (random.nextDouble() * (idRange[1] - idRange[0] + 1));
+            try (Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COLUMN_DATE +
+                    " FROM " + DatabaseHelper.TABLE_EXPENSES +
+                    " WHERE " + DatabaseHelper.COLUMN_EXPENSE_ID + " = ?", new String[]{String.valueOf(id)})) {
+                cursor.moveToFirst();
+                keys[i] = new ExpensePageKey(cursor.getLong(0), id);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Writes the report to build/reports/load/&lt;test&gt;.txt and fails with every operation that
+     * went over budget, the report included.
+     */
+    private void finish() throws IOException {
+        File dir = new File(System.getProperty("load.reportDir", "build/reports/load"));
+        File file = new File(dir, getClass().getSimpleName() + "." + testName.getMethodName() + ".txt");
+        if (dir.isDirectory() || dir.mkdirs()) {
+            Files.write(file.toPath(), report, StandardCharsets.UTF_8);
+        }
+        if (!overBudget.isEmpty()) {
+            fail("Over budget:\n" + String.join("\n", overBudget) + "\n\n" + String.join("\n", report));
+        }
+    }
+
+    /**
+     * Runs {@code operation} a few times to warm up, then {@code samples} times, and checks the
+     * p50 and p99 against the budgets. {@code operation} returns the number of rows it handled.
+     *
+     * @param perThousandRows budget the time per 1000 rows; results under 1000 rows count as 1000
+     */
+    private void measure(String name, int samples, boolean perThousandRows, IntSupplier operation) {
+        double[] millis = sample(samples, perThousandRows, operation);
+        double p50 = percentile(millis, 50);
+        double p99 = percentile(millis, 99);
+        double p50Budget = budget(name + ".p50");
+        double p99Budget = budget(name + ".p99");
+        String unit = perThousandRows ? "ms/1k rows" : "ms";
+        report.add(String.format(Locale.ROOT, "%-18s %4d samples  p50 %8.2f  p99 %8.2f %-10s  budget %s / %s%s",
+                name, samples, p50, p99, unit, p50Budget, p99Budget,
+                perThousandRows ? String.format(Locale.ROOT, "  (%.0f rows/s at p50)", 1e6 / p50) : ""));
+        if (p50 > p50Budget) {
+            overBudget.add(String.format(Locale.ROOT, "%s p50 %.2f %s > %s", name, p50, unit, p50Budget));
+        }
+        if (p99 > p99Budget) {
+            overBudget.add(String.format(Locale.ROOT, "%s p99 %.2f %s > %s", name, p99, unit, p99Budget));
+        }
+    }
+
+    private static double[] sample(int samples, boolean perThousandRows, IntSupplier operation) {
+        for (int i = 0; i < Math.max(1, samples / 10); i++) {
+            operation.getAsInt();
+        }
+        double[] millis = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            long started = System.nanoTime();
+            int rows = operation.getAsInt();
+            double elapsed = (System.nanoTime() - started) / 1e6;
+            millis[i] = perThousandRows ? elapsed * 1000 / Math.max(rows, 1000) : elapsed;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    // Nearest rank on sorted samples
+    private static double percentile(double[] sorted, double percent) {
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private double budget(String key) {
+        String value = System.getProperty("load.budget." + key, budgets.getProperty(key));
+        if (value == null) {
+            throw new AssertionError("No budget for " + key + " in load-budgets.properties");
+        }
+        return Double.parseDouble(value);
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = DatabaseLoadTest.class.getClassLoader().getResourceAsStream("load-budgets.properties")) {
+            assertNotNull("load-budgets.properties missing from the test resources", in);
+            properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        return properties;
+    }
+
+    // The unindexed search the FTS table replaced, for scale
+    private void compareLikeSearch() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String like = "SELECT " + DatabaseHelper.COLUMN_EXPENSE_ID + " FROM " + DatabaseHelper.TABLE_EXPENSES +
+                " WHERE " + DatabaseHelper.COLUMN_DESCRIPTION + " LIKE ?" +
+                " ORDER BY " + DatabaseHelper.COLUMN_DATE + " DESC, " + DatabaseHelper.COLUMN_EXPENSE_ID + " DESC" +
+                " LIMIT " + PAGE_SIZE;
+        double[] millis = sample(Math.min(SAMPLES, 20), false, () -> {
+            String word = SEARCHES[random.nextInt(SEARCHES.length)];
+            try (Cursor cursor = db.rawQuery(like, new String[]{"%" + word + "%"})) {
+                return cursor.getCount();
+            }
+        });
+        reportUnbudgeted("likeSearch", millis, "ms");
+    }
+
+    /**
+     * The history reads on the shared connection against a connection opened, configured and
+     * closed around every call, as every DAO method did before the helper became a singleton.
+     * The per-call connection starts each time with an empty page cache.
+     */
+    private void compareConnectionPerCall() {
+        String path = dbHelper.getReadableDatabase().getPath();
+        double[] sharedPage = sample(SAMPLES, false, () -> dbHelper.getExpensesOlderThan(null, PAGE_SIZE).size());
+        double[] perCallPage = sample(SAMPLES, false,
+                () -> queryOnNewConnection(path, DatabaseHelper.SQL_FIRST_PAGE, String.valueOf(PAGE_SIZE)));
+        reportUnbudgeted("historyPageShared", sharedPage, "ms");
+        reportUnbudgeted("historyPagePerCall", perCallPage, "ms");
+        double[] sharedAll = sample(BULK_SAMPLES, true, () -> dbHelper.getAllExpenses().size());
+        double[] perCallAll = sample(BULK_SAMPLES, true,
+                () -> queryOnNewConnection(path, DatabaseHelper.SQL_ALL_EXPENSES));
+        reportUnbudgeted("historyAllShared", sharedAll, "ms/1k rows");
+        reportUnbudgeted("historyAllPerCall", perCallAll, "ms/1k rows");
+        if (percentile(sharedPage, 50) >= percentile(perCallPage, 50)) {
+            overBudget.add("historyPageShared p50 is not below historyPagePerCall p50");
+        }
+    }
+
+    private int queryOnNewConnection(String path, String sql, String... args) {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READWRITE);
+        try {
+            db.setForeignKeyConstraintsEnabled(true);
+            try (Cursor cursor = db.rawQuery(sql, args)) {
+                return new ExpenseCursorMapper(cursor, dbHelper.getCategories(), dbHelper.getPaymentMethods())
+                        .mapAll(cursor, new ArrayList<>()).size();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private void reportUnbudgeted(String name, double[] millis, String unit) {
+        report.add(String.format(Locale.ROOT, "%-18s %4d samples  p50 %8.2f  p99 %8.2f %-10s  (no budget)",
+                name, millis.length, percentile(millis, 50), percentile(millis, 99), unit));
+    }
+
+    private void compareFileSizes(File csv, File backupFile) throws IOException {
+        // The pragma runs only when its row is read; it returns busy, log frames, checkpointed frames
+        try (Cursor cursor = dbHelper.getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("checkpoint blocked", 0, cursor.getLong(0));
+        }
+        File databaseFile = new File(dbHelper.getReadableDatabase().getPath());
+        // Every committed page is in the main file now, so copying it alone copies the database
+        File wal = new File(databaseFile.getPath() + "-wal");
+        assertEquals(0, wal.length());
+        File copy = new File(folder.getRoot(), "copy.db");
+        long started = System.nanoTime();
+        Files.copy(databaseFile.toPath(), copy.toPath());
+        long copyMillis = (System.nanoTime() - started) / 1_000_000;
+        report.add(String.format(Locale.ROOT,
+                "Sizes: database %d KiB (copied in %d ms), CSV %d KiB, backup %d KiB",
+                databaseFile.length() / 1024, copyMillis, csv.length() / 1024, backupFile.length() / 1024));
+    }
+
+    private long[] idRange() {
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT MIN(" + DatabaseHelper.COLUMN_EXPENSE_ID + "), MAX(" + DatabaseHelper.COLUMN_EXPENSE_ID + ")" +
+                        " FROM " + DatabaseHelper.TABLE_EXPENSES, null)) {
+            cursor.moveToFirst();
+            return new long[]{cursor.getLong(0), cursor.getLong(1)};
+        }
+    }
+
+    private void seedUsers(String passwordHash) {
+        userIds = new long[USERS];
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < USERS; i++) {
+                userIds[i] = dbHelper.addUser(email(i), passwordHash, "Người dùng " + i);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static String email(int user) {
+        return "user" + user + "@example.com";
+    }
+
+    // Cubing a uniform value piles the draws onto the first users: with 200 users, user 0 owns
+    // about a sixth of all expenses and most users only a handful
+    private int skewedUser() {
+        return (int) (USERS * Math.pow(random.nextDouble(), 3));
+    }
+
+    private Iterator<Expense> expenses(int count) {
+        return new Iterator<Expense>() {
+            private int made;
+
+            @Override
+            public boolean hasNext() {
+                return made < count;
+            }
+
+            @Override
+            public Expense next() {
+                made++;
+                // Exponential ages: about half the expenses are from the last two months
+                double ageDays = Math.min(-Math.log(1 - random.nextDouble()) * MEAN_AGE_DAYS, MAX_AGE_DAYS);
+                // Log-normal around 60.000đ, in whole thousands
+                long amount = Math.max(1, Math.round(60 * Math.exp(random.nextGaussian()))) * 1000;
+                Expense expense = new Expense(amount,
+                        weighted(CATEGORIES, CATEGORY_WEIGHTS),
+                        weighted(PAYMENT_METHODS, PAYMENT_WEIGHTS),
+                        random.nextInt(5) == 0 ? null : DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)],
+                        NOW - (long) (ageDays * DAY));
+                expense.setUserId(userIds[skewedUser()]);
+                return expense;
+            }
+        };
+    }
+
+    private String weighted(String[] values, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        for (int i = 0; i < values.length; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+}
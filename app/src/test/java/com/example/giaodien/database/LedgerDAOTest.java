@@ -0,0 +1,113 @@
+package com.example.giaodien.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.model.LedgerAccount;
+import com.example.giaodien.model.LedgerEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class LedgerDAOTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private DatabaseHelper dbHelper;
+    private LedgerDAO ledgerDAO;
+    private long userId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        ledgerDAO = new LedgerDAO(context);
+        userId = dbHelper.addUser("a@b.c", "hash", "A");
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void balance_followsEntries() {
+        ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.DEBT, 5_000_000, "Vay bạn", NOW));
+        long repayment = ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.DEBT, -1_500_000, "Trả nợ", NOW + 1));
+        ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.INCOME, 12_000_000, "Lương", NOW));
+
+        assertEquals(3_500_000, ledgerDAO.getBalance(userId, LedgerAccount.DEBT));
+        assertEquals(12_000_000, ledgerDAO.getBalance(userId, LedgerAccount.INCOME));
+        assertEquals(0, ledgerDAO.getBalance(userId, LedgerAccount.ASSET));
+
+        assertEquals(1, ledgerDAO.deleteEntry(repayment));
+        assertEquals(5_000_000, ledgerDAO.getBalance(userId, LedgerAccount.DEBT));
+        assertEquals(0, ledgerDAO.verifyBalances());
+    }
+
+    @Test
+    public void expenseBalance_followsExpenses() {
+        Expense expense = new Expense(45_000, "Thức ăn", "Tiền mặt", "Phở", NOW);
+        expense.setUserId(userId);
+        long id = dbHelper.addExpense(expense);
+        expense.setAmount(30_000);
+        dbHelper.addExpense(expense);
+
+        assertEquals(75_000, ledgerDAO.getBalance(userId, LedgerAccount.EXPENSE));
+        dbHelper.deleteExpense(id);
+        assertEquals(30_000, ledgerDAO.getBalance(userId, LedgerAccount.EXPENSE));
+        assertEquals(0, ledgerDAO.verifyBalances());
+    }
+
+    @Test
+    public void recentEntries_areNewestFirstAndPerAccount() {
+        for (int i = 0; i < 5; i++) {
+            ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.ASSET, 1000 + i, null, NOW + i));
+        }
+        ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.INCOME, 1, null, NOW + 10));
+
+        List<LedgerEntry> entries = ledgerDAO.getRecentEntries(userId, LedgerAccount.ASSET, 3);
+        assertEquals(3, entries.size());
+        assertEquals(1004, entries.get(0).getAmount());
+        assertEquals(1002, entries.get(2).getAmount());
+    }
+
+    @Test
+    public void verify_findsAndRebuildRepairsDrift() {
+        ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.INCOME, 100, null, NOW));
+        ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.ASSET, 200, null, NOW));
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_ACCOUNT_BALANCES +
+                " SET " + DatabaseHelper.COLUMN_BALANCE + " = 0 WHERE " + DatabaseHelper.COLUMN_ACCOUNT +
+                " = " + LedgerAccount.INCOME.id);
+        dbHelper.getWritableDatabase().execSQL("DELETE FROM " + DatabaseHelper.TABLE_ACCOUNT_BALANCES +
+                " WHERE " + DatabaseHelper.COLUMN_ACCOUNT + " = " + LedgerAccount.ASSET.id);
+
+        assertNotEquals(0, ledgerDAO.verifyBalances());
+        ledgerDAO.rebuildBalances();
+        assertEquals(0, ledgerDAO.verifyBalances());
+        assertEquals(100, ledgerDAO.getBalance(userId, LedgerAccount.INCOME));
+        assertEquals(200, ledgerDAO.getBalance(userId, LedgerAccount.ASSET));
+    }
+
+    @Test
+    public void deletingUser_dropsTheirBalances() {
+        ledgerDAO.addEntry(new LedgerEntry(userId, LedgerAccount.INCOME, 100, null, NOW));
+        dbHelper.getWritableDatabase().delete(DatabaseHelper.TABLE_USERS,
+                DatabaseHelper.COLUMN_USER_ID + " = ?", new String[]{String.valueOf(userId)});
+
+        assertEquals(0, ledgerDAO.getBalance(userId, LedgerAccount.INCOME));
+        assertEquals(0, ledgerDAO.verifyBalances());
+    }
+}
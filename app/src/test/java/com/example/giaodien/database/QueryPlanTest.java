@@ -0,0 +1,200 @@
+package com.example.giaodien.database;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for the queries issued by {@link DatabaseHelper} and the DAOs next to
+ * it, and fails when one of them falls back to a full table scan or a temporary B-tree sort.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class QueryPlanTest {
+
+    // "SCAN expenses" / "SCAN TABLE expenses" without "USING ... INDEX"
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?\\w+$");
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = DatabaseHelper.getInstance(ApplicationProvider.getApplicationContext()).getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void allExpenses_usesDateIndex() {
+        assertIndexed(DatabaseHelper.SQL_ALL_EXPENSES);
+    }
+
+    @Test
+    public void recentExpenses_usesDateIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECENT_EXPENSES, "20");
+    }
+
+    @Test
+    public void export_walksDateIndex() {
+        assertIndexed(DatabaseHelper.SQL_EXPORT_EXPENSES);
+    }
+
+    @Test
+    public void expenseById_usesPrimaryKey() {
+        assertIndexed(DatabaseHelper.SQL_EXPENSE_BY_ID, "1");
+    }
+
+    @Test
+    public void expensesByUser_usesUserDateIndex() {
+        assertIndexed(DatabaseHelper.SQL_EXPENSES_BY_USER, "1");
+    }
+
+    @Test
+    public void aggregations_avoidScansAndSorts() {
+        assertIndexed(DatabaseHelper.SQL_CATEGORY_TOTALS, "1", "0", "1700000000000");
+        assertIndexed(DatabaseHelper.SQL_AMOUNTS_BY_DATE, "1", "0", "1700000000000");
+    }
+
+    @Test
+    public void monthRollup_usesPrimaryKey() {
+        assertIndexed(DatabaseHelper.SQL_MONTH_ROLLUP, "1", "202401");
+    }
+
+    @Test
+    public void snapshotReads_useUserIndexes() {
+        assertIndexed(DatabaseHelper.SQL_USER_ROWS_AFTER_ID, "1", "0");
+        assertIndexed(DatabaseHelper.SQL_USER_COUNT_AND_TOTAL, "1");
+    }
+
+    @Test
+    public void keysetPages_seekWithoutSorting() {
+        assertIndexed(DatabaseHelper.SQL_FIRST_PAGE, "50");
+        assertIndexed(DatabaseHelper.SQL_PAGE_OLDER_THAN, "1700000000000", "1700000000000", "42", "50");
+        assertIndexed(DatabaseHelper.SQL_PAGE_NEWER_THAN, "1700000000000", "1700000000000", "42", "50");
+    }
+
+    @Test
+    public void deleteExpense_usesPrimaryKey() {
+        assertIndexed("DELETE FROM " + DatabaseHelper.TABLE_EXPENSES +
+                " WHERE " + DatabaseHelper.COLUMN_EXPENSE_ID + " = ?", "1");
+    }
+
+    @Test
+    public void userLookups_useEmailConstraintIndex() {
+        assertIndexed(UserDAO.SQL_USER_BY_EMAIL, "a@b.c");
+        assertIndexed(UserDAO.SQL_EMAIL_EXISTS, "a@b.c");
+    }
+
+    @Test
+    public void sessions_useTokenAndUserIndexes() {
+        assertIndexed(SessionDAO.SQL_SESSION_USER, "00", "1700000000000");
+        assertIndexed(SessionDAO.SQL_DELETE_SESSION, "00");
+        assertIndexed(SessionDAO.SQL_DELETE_USER_SESSIONS, "1");
+        assertIndexed(SessionDAO.SQL_DELETE_EXPIRED_USER_SESSIONS, "1", "1700000000000");
+        assertIndexed(LastLoginBatcher.SQL_UPDATE_LAST_LOGIN, "0", "1");
+    }
+
+    @Test
+    public void ledger_usesBalanceKeyAndAccountIndex() {
+        assertIndexed(LedgerDAO.SQL_BALANCE, "1", "1");
+        assertIndexed(LedgerDAO.SQL_RECENT_ENTRIES, "1", "2", "50");
+        assertIndexed(LedgerDAO.SQL_DELETE_ENTRY, "1");
+    }
+
+    @Test
+    public void labelLookups_useNameConstraintIndex() {
+        DatabaseHelper helper = DatabaseHelper.getInstance(ApplicationProvider.getApplicationContext());
+        assertIndexed(helper.getCategories().selectId, "Thức ăn");
+        assertIndexed(helper.getPaymentMethods().selectId, "Tiền mặt");
+    }
+
+    @Test
+    public void filteredPages_useDateCategoryOrFullTextIndexes() {
+        ExpensePageKey key = new ExpensePageKey(1700000000000L, 10);
+        ExpenseFilter dates = ExpenseFilter.ALL.withDateRange(1690000000000L, 1710000000000L);
+        // A date range alone walks idx_expenses_date in page order, with no sort
+        assertIndexed(filtered(dates, null, false));
+        assertIndexed(filtered(dates, key, false));
+        assertIndexed(filtered(dates, key, true));
+
+        // Sorting the matches is expected for the rest; scanning every expense is not
+        ExpenseFilter category = ExpenseFilter.ALL.withCategories(Collections.singleton("Thức ăn"));
+        assertNoFullScan(filtered(category, key, false));
+        assertNoFullScan(filtered(category.withCategories(Arrays.asList("Thức ăn", "Giải trí")), key, false));
+        assertNoFullScan(filtered(dates.withPaymentMethod("Tiền mặt"), key, false));
+        ExpenseFilter search = ExpenseFilter.ALL.withQuery("thuc");
+        assertNoFullScan(filtered(search, null, false));
+        assertNoFullScan(filtered(search.withDateRange(1690000000000L, 1710000000000L), key, true));
+    }
+
+    @Test
+    public void redundantEmailIndex_isNotCreated() {
+        try (Cursor cursor = db.rawQuery(
+                "SELECT name FROM sqlite_master WHERE type = 'index' AND name = 'idx_users_email'", null)) {
+            assertFalse(cursor.moveToFirst());
+        }
+    }
+
+    private FilteredPageQuery filtered(ExpenseFilter filter, ExpensePageKey key, boolean newer) {
+        DatabaseHelper helper = DatabaseHelper.getInstance(ApplicationProvider.getApplicationContext());
+        return FilteredPageQuery.build(filter, helper.getCategories(), helper.getPaymentMethods(), key, newer, 50);
+    }
+
+    private void assertIndexed(FilteredPageQuery query) {
+        assertIndexed(query.sql, query.args);
+    }
+
+    private void assertNoFullScan(FilteredPageQuery query) {
+        assertNoFullScan(query.sql, query.args);
+    }
+
+    private void assertIndexed(String sql, String... args) {
+        List<String> plan = plan(sql, args);
+        for (String step : plan) {
+            if (FULL_SCAN.matcher(step).matches() || step.contains("TEMP B-TREE")) {
+                fail("Query plan for\n  " + sql + "\nhas " + step + "\nfull plan: " + plan);
+            }
+        }
+    }
+
+    // For queries that sort a small matched set on purpose, but must still not read every row
+    private void assertNoFullScan(String sql, String... args) {
+        List<String> plan = plan(sql, args);
+        for (String step : plan) {
+            if (FULL_SCAN.matcher(step).matches()) {
+                fail("Query plan for\n  " + sql + "\nhas " + step + "\nfull plan: " + plan);
+            }
+        }
+    }
+
+    private List<String> plan(String sql, String... args) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.giaodien.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.util.SearchText;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+
+/**
+ * Builds a database at every historical version, fills it with expenses and upgrades it to the
+ * current one. Versions 1 to 4 are built from the statements the app ran back then, copied here
+ * and never changed since, so a mistake in today's upgrade steps cannot also shape the database
+ * they are tested on. Later versions are built by upgrading the version 4 database.
+ *
+ * <p>The row count defaults to a size that still spans several upgrade chunks; run with
+ * -Pmigration.rows=1000000 for the full-size check, which also holds each upgrade to a time
+ * budget. The default run checks no timings.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SchemaMigrationTest {
+    private static final int ROWS = Integer.getInteger("migration.rows", 25_000);
+    private static final boolean TIMED = System.getProperty("migration.rows") != null;
+    // Generous enough for a slow CI machine; a regression to row-at-a-time copies still fails it
+    private static final long BUDGET_MILLIS = 10_000 + ROWS / 10;
+    private static final long DATE = 1_700_000_000L;
+
+    private static final String[] CATEGORIES = {"Thức ăn", "Di chuyển", "Quà cưới"};
+    private static final String[] PAYMENT_METHODS = {"Tiền mặt", "Ví điện tử"};
+    // Amounts were REAL before version 6; every row gets one of these added to a whole amount
+    private static final double[] FRACTIONS = {0, 0.25, 0.5, 0.75};
+
+    // Schema of versions 1 to 4, as that code wrote it
+    private static final String USERS_V1 = "CREATE TABLE users(" +
+            "user_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "email TEXT UNIQUE NOT NULL," +
+            "password_hash TEXT NOT NULL," +
+            "created_at INTEGER DEFAULT (strftime('%s','now')))";
+    private static final String USERS_V4 = "CREATE TABLE users(" +
+            "user_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "email TEXT UNIQUE NOT NULL," +
+            "password_hash TEXT NOT NULL," +
+            "full_name TEXT," +
+            "created_at INTEGER DEFAULT (strftime('%s','now'))," +
+            "last_login INTEGER)";
+    private static final String EXPENSES_V4 = "CREATE TABLE expenses(" +
+            "expense_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "amount REAL NOT NULL," +
+            "category TEXT NOT NULL," +
+            "payment_method TEXT NOT NULL," +
+            "description TEXT," +
+            "date INTEGER DEFAULT (strftime('%s','now'))," +
+            "user_id INTEGER," +
+            "FOREIGN KEY(user_id) REFERENCES users(user_id) ON DELETE CASCADE)";
+    private static final String EMAIL_INDEX_V4 = "CREATE INDEX idx_users_email ON users(email)";
+    private static final String DATE_INDEX_V4 = "CREATE INDEX idx_expenses_date ON expenses(date)";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+        context.deleteDatabase(dbHelper.getDatabaseName());
+    }
+
+    @Test
+    public void upgradeFromEveryVersion_keepsData() {
+        for (int version = 1; version < DatabaseHelper.DATABASE_VERSION; version++) {
+            DatabaseHelper.resetInstance();
+            context.deleteDatabase(dbHelper.getDatabaseName());
+            dbHelper = DatabaseHelper.getInstance(context);
+            int rows = version >= 3 ? ROWS : 0;
+            seed(version, rows);
+
+            // Robolectric's SystemClock only moves with the looper; the upgrade needs wall time
+            long started = System.nanoTime();
+            dbHelper.upgradeIfNeeded();
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+            assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+            assertPreserved(db, version, rows);
+            if (TIMED) {
+                assertTrue("Upgrade from version " + version + " took " + millis + " ms",
+                        millis < BUDGET_MILLIS);
+            }
+        }
+    }
+
+    // The fallback when the chunked upgrade fails: every step inside one transaction, with
+    // foreign keys on, as SQLiteOpenHelper calls it
+    @Test
+    public void onUpgrade_keepsDataInOneTransaction() {
+        seed(4, ROWS);
+        SQLiteDatabase raw = openFile();
+        try {
+            raw.setForeignKeyConstraintsEnabled(true);
+            raw.beginTransaction();
+            try {
+                dbHelper.onUpgrade(raw, 4, DatabaseHelper.DATABASE_VERSION);
+                raw.setVersion(DatabaseHelper.DATABASE_VERSION);
+                raw.setTransactionSuccessful();
+            } finally {
+                raw.endTransaction();
+            }
+        } finally {
+            raw.close();
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertPreserved(db, 4, ROWS);
+    }
+
+    @Test
+    public void firstOpen_runsChunkedUpgrade() {
+        seed(8, ROWS);
+        long[] chunks = new long[1];
+        dbHelper.setMigrationListener((version, rowsDone, rowsTotal) -> chunks[0]++);
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertTrue(chunks[0] > 0);
+        assertPreserved(db, 8, ROWS);
+    }
+
+    @Test
+    public void amounts_stayRealUntilVersion6RoundsThem() {
+        seed(3, 8);
+        SQLiteDatabase db = openFile();
+        try {
+            dbHelper.newMigrator().migrate(db, 3, 5);
+            assertEquals("REAL", amountType(db));
+            assertEquals(8, longQuery(db, "SELECT COUNT(*) FROM expenses WHERE typeof(amount) = 'real'"));
+
+            dbHelper.newMigrator().migrate(db, 5, 6);
+            assertEquals("INTEGER", amountType(db));
+            assertAmountsRounded(db, 8);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void interruptedUpgrade_resumesWithoutDuplicates() {
+        seed(8, ROWS);
+        long[] chunks = new long[1];
+        dbHelper.setMigrationListener((version, rowsDone, rowsTotal) -> {
+            // The first chunk of the version 9 copy is committed; fail as a crash would
+            if (version == 9 && chunks[0]++ == 0) {
+                throw new IllegalStateException("crash");
+            }
+        });
+        try {
+            dbHelper.upgradeIfNeeded();
+            fail("Upgrade should have stopped");
+        } catch (IllegalStateException expected) {
+            // The database file is left mid-upgrade
+        }
+
+        DatabaseHelper.resetInstance();
+        dbHelper = DatabaseHelper.getInstance(context);
+        long[] lastProgress = new long[2];
+        dbHelper.setMigrationListener((version, rowsDone, rowsTotal) -> {
+            if (version == 9) {
+                lastProgress[0] = rowsDone;
+                lastProgress[1] = rowsTotal;
+            }
+        });
+        dbHelper.upgradeIfNeeded();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(ROWS, lastProgress[0]);
+        assertEquals(ROWS, lastProgress[1]);
+        assertPreserved(db, 8, ROWS);
+    }
+
+    // Creates the database as the app at {@code version} left it, with {@code rows} expenses
+    private void seed(int version, int rows) {
+        SQLiteDatabase db = openFile();
+        try {
+            createBaseline(db, Math.min(version, 4));
+            db.execSQL("INSERT INTO users(email, password_hash) VALUES ('a@b.c', 'hash')");
+            db.setVersion(Math.min(version, 4));
+            if (version > 4) {
+                dbHelper.newMigrator().migrate(db, 4, version);
+            }
+            if (rows == 0) {
+                return;
+            }
+
+            boolean labelIds = version >= 9;
+            String sql = labelIds
+                    ? "INSERT INTO expenses(expense_id, amount, category_id, payment_method_id, description, date, user_id"
+                    + (version >= 10 ? ", description_key" : "") + ") VALUES (?, ?,"
+                    + " (SELECT category_id FROM categories WHERE name = ?),"
+                    + " (SELECT payment_method_id FROM payment_methods WHERE name = ?), ?, ?, 1"
+                    + (version >= 10 ? ", ?" : "") + ")"
+                    : "INSERT INTO expenses(expense_id, amount, category, payment_method, description, date, user_id)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, 1)";
+            db.beginTransaction();
+            try (SQLiteStatement insert = db.compileStatement(sql)) {
+                // A category the user typed, which versions 3 to 8 kept only as text
+                if (version >= 10) {
+                    db.execSQL("INSERT OR IGNORE INTO categories(name, name_key) VALUES (?, ?)",
+                            new Object[]{CATEGORIES[2], SearchText.fold(CATEGORIES[2])});
+                } else if (labelIds) {
+                    db.execSQL("INSERT OR IGNORE INTO categories(name) VALUES (?)", new Object[]{CATEGORIES[2]});
+                }
+                for (int i = 1; i <= rows; i++) {
+                    insert.clearBindings();
+                    insert.bindLong(1, i);
+                    if (version < 6) {
+                        insert.bindDouble(2, i * 1000L + FRACTIONS[i % FRACTIONS.length]);
+                    } else {
+                        insert.bindLong(2, amount(i));
+                    }
+                    insert.bindString(3, CATEGORIES[i % CATEGORIES.length]);
+                    insert.bindString(4, PAYMENT_METHODS[i % PAYMENT_METHODS.length]);
+                    String description = description(i);
+                    if (description != null) {
+                        insert.bindString(5, description);
+                    }
+                    insert.bindLong(6, DATE + i * 60L);
+                    if (version >= 10 && description != null) {
+                        insert.bindString(7, SearchText.fold(description));
+                    }
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    // Version 1 as its onCreate left it, versions 2 and 3 as the upgrades of the time left it, and
+    // version 4 as its onCreate left it, which is how most installs reached it
+    private static void createBaseline(SQLiteDatabase db, int version) {
+        if (version == 4) {
+            db.execSQL(USERS_V4);
+            db.execSQL(EXPENSES_V4);
+            db.execSQL(EMAIL_INDEX_V4);
+            db.execSQL(DATE_INDEX_V4);
+            return;
+        }
+        db.execSQL(USERS_V1);
+        if (version >= 2) {
+            db.execSQL("ALTER TABLE users ADD COLUMN full_name TEXT");
+            db.execSQL("ALTER TABLE users ADD COLUMN last_login INTEGER");
+            db.execSQL(EMAIL_INDEX_V4);
+        }
+        if (version >= 3) {
+            db.execSQL(EXPENSES_V4);
+            db.execSQL(DATE_INDEX_V4);
+        }
+    }
+
+    private SQLiteDatabase openFile() {
+        File file = context.getDatabasePath(dbHelper.getDatabaseName());
+        file.getParentFile().mkdirs();
+        return SQLiteDatabase.openOrCreateDatabase(file, null);
+    }
+
+    // Whole đồng of row i once upgraded: the REAL amount rounded half up
+    private static long amount(int i) {
+        return i * 1000L + Math.round(FRACTIONS[i % FRACTIONS.length]);
+    }
+
+    private static String description(int i) {
+        return i % 10 == 0 ? null : "Bữa trưa " + (i % 7);
+    }
+
+    private void assertPreserved(SQLiteDatabase db, int fromVersion, int rows) {
+        assertEquals(1, longQuery(db, "SELECT COUNT(*) FROM users WHERE email = 'a@b.c'"));
+        assertEquals(0, longQuery(db, "SELECT COUNT(*) FROM " + SchemaMigrator.TABLE_PROGRESS));
+
+        long count = rows;
+        long sum = 0;
+        for (int i = 1; i <= rows; i++) {
+            sum += amount(i);
+        }
+        assertEquals(count, longQuery(db, "SELECT COUNT(*) FROM expenses"));
+        assertAmountsRounded(db, rows);
+        assertEquals(rows, longQuery(db, "SELECT IFNULL(MAX(expense_id), 0) FROM expenses"));
+        if (rows == 0) {
+            return;
+        }
+
+        // Every row kept its own labels, including the category a user typed
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            long expected = rows / CATEGORIES.length + (c != 0 && c <= rows % CATEGORIES.length ? 1 : 0);
+            assertEquals(CATEGORIES[c], expected, longQuery(db,
+                    "SELECT COUNT(*) FROM expenses e JOIN categories c ON c.category_id = e.category_id" +
+                            " WHERE c.name = '" + CATEGORIES[c] + "'"));
+        }
+        assertEquals(rows / 10, longQuery(db, "SELECT COUNT(*) FROM expenses WHERE description IS NULL"));
+        assertEquals(0, longQuery(db, "SELECT COUNT(*) FROM expenses" +
+                " WHERE description IS NOT NULL AND description_key IS NULL"));
+        assertEquals(DATE + 60L * rows, longQuery(db, "SELECT MAX(date) FROM expenses"));
+
+        // Derived tables agree with the rows
+        assertEquals(sum, longQuery(db, "SELECT SUM(total) FROM expense_rollups"));
+        assertEquals(sum, longQuery(db, "SELECT balance FROM account_balances WHERE user_id = 1"));
+        assertEquals(count, longQuery(db, "SELECT COUNT(*) FROM expenses_fts"));
+        long lunches = 0;
+        for (int i = 1; i <= rows; i++) {
+            if ("Bữa trưa 3".equals(description(i))) {
+                lunches++;
+            }
+        }
+        assertEquals(lunches, longQuery(db, "SELECT COUNT(*) FROM expenses_fts WHERE expenses_fts MATCH '"
+                + SearchText.fold("trưa") + " 3'"));
+        assertEquals("from " + fromVersion, 0, new LedgerDAO(context).verifyBalances());
+
+        // Ids carry on after the copied rows
+        db.execSQL("INSERT INTO expenses(amount, category_id, payment_method_id, user_id) VALUES (1, 1, 1, 1)");
+        assertEquals(rows + 1, longQuery(db, "SELECT MAX(expense_id) FROM expenses"));
+    }
+
+    private static void assertAmountsRounded(SQLiteDatabase db, int rows) {
+        int row = 0;
+        try (Cursor cursor = db.rawQuery(
+                "SELECT expense_id, amount, typeof(amount) FROM expenses ORDER BY expense_id", null)) {
+            while (cursor.moveToNext()) {
+                row++;
+                assertEquals(row, cursor.getLong(0));
+                assertEquals("row " + row, "integer", cursor.getString(2));
+                assertEquals("row " + row, amount(row), cursor.getLong(1));
+            }
+        }
+        assertEquals(rows, row);
+    }
+
+    private static String amountType(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(expenses)", null)) {
+            while (cursor.moveToNext()) {
+                if ("amount".equals(cursor.getString(cursor.getColumnIndexOrThrow("name")))) {
+                    return cursor.getString(cursor.getColumnIndexOrThrow("type"));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long longQuery(SQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
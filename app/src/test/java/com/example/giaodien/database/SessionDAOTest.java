@@ -0,0 +1,152 @@
+package com.example.giaodien.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class SessionDAOTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private SessionDAO sessionDAO;
+    private long userId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        sessionDAO = new SessionDAO(context);
+        userId = DatabaseHelper.getInstance(context).addUser("a@b.c", "hash", "A");
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void resume_returnsOwnerOfToken() {
+        String token = sessionDAO.createSession(userId, NOW);
+
+        User user = sessionDAO.resumeSession(token, NOW + 1);
+        assertNotNull(user);
+        assertEquals(userId, user.getId());
+        assertEquals("a@b.c", user.getEmail());
+    }
+
+    @Test
+    public void resume_rejectsUnknownToken() {
+        sessionDAO.createSession(userId, NOW);
+        assertNull(sessionDAO.resumeSession("not-a-token", NOW));
+    }
+
+    @Test
+    public void resume_rejectsExpiredToken() {
+        String token = sessionDAO.createSession(userId, NOW);
+        long expiry = NOW + SessionDAO.SESSION_LIFETIME_MILLIS;
+
+        assertNotNull(sessionDAO.resumeSession(token, expiry - 1));
+        assertNull(sessionDAO.resumeSession(token, expiry));
+    }
+
+    @Test
+    public void createSession_prunesExpiredSessionsOfUser() {
+        String old = sessionDAO.createSession(userId, NOW);
+        sessionDAO.createSession(userId, NOW + SessionDAO.SESSION_LIFETIME_MILLIS);
+
+        // Pruned rows are gone even for a clock that runs backwards
+        assertNull(sessionDAO.resumeSession(old, NOW));
+    }
+
+    @Test
+    public void revokeSession_endsOnlyThatSession() {
+        String first = sessionDAO.createSession(userId, NOW);
+        String second = sessionDAO.createSession(userId, NOW);
+
+        assertTrue(sessionDAO.revokeSession(first));
+        assertFalse(sessionDAO.revokeSession(first));
+        assertNull(sessionDAO.resumeSession(first, NOW));
+        assertNotNull(sessionDAO.resumeSession(second, NOW));
+    }
+
+    @Test
+    public void revokeAllSessions_endsEverySessionOfUser() {
+        String first = sessionDAO.createSession(userId, NOW);
+        String second = sessionDAO.createSession(userId, NOW);
+
+        assertEquals(2, sessionDAO.revokeAllSessions(userId));
+        assertNull(sessionDAO.resumeSession(first, NOW));
+        assertNull(sessionDAO.resumeSession(second, NOW));
+    }
+
+    @Test
+    public void tokenIsNotStoredInClear() {
+        String token = sessionDAO.createSession(userId, NOW);
+        assertNotEquals(token, SessionDAO.hashToken(token));
+        assertEquals(64, SessionDAO.hashToken(token).length());
+    }
+
+    @Test
+    public void concurrentChecks_allResolveSameUser() throws Exception {
+        String token = sessionDAO.createSession(userId, NOW);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<User>> checks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                checks.add(() -> sessionDAO.resumeSession(token, NOW));
+            }
+            for (Future<User> result : pool.invokeAll(checks)) {
+                assertNotNull(result.get());
+                assertEquals(userId, result.get().getId());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentLogins_getDistinctWorkingTokens() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<String>> logins = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                logins.add(() -> sessionDAO.createSession(userId, NOW));
+            }
+            Set<String> tokens = new HashSet<>();
+            for (Future<String> result : pool.invokeAll(logins)) {
+                tokens.add(result.get());
+            }
+            assertEquals(50, tokens.size());
+            for (String token : tokens) {
+                assertNotNull(sessionDAO.resumeSession(token, NOW));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
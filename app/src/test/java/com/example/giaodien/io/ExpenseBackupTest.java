@@ -0,0 +1,115 @@
+package com.example.giaodien.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ExpenseBackupTest {
+    // Enough rows for several blocks
+    private static final int ROWS = 12000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatabaseHelper dbHelper;
+    private ExpenseBackup backup;
+    private long userId;
+
+    @Before
+    public void setUp() {
+        dbHelper = DatabaseHelper.getInstance(ApplicationProvider.getApplicationContext());
+        backup = new ExpenseBackup(dbHelper);
+        userId = dbHelper.addUser("backup@example.com", "hash", "Backup");
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String description = i % 5 == 0 ? null : "Cà phê sữa đá 😀 " + i;
+            Expense expense = new Expense(i % 7 == 0 ? -i : 1000L * i, i % 2 == 0 ? "Thức ăn" : "Đi lại",
+                    i % 3 == 0 ? "Tiền mặt" : "Thẻ", description, 1_700_000_000_000L + 37L * i);
+            expense.setUserId(i % 4 == 0 ? userId : 0);
+            expenses.add(expense);
+        }
+        dbHelper.addExpenses(expenses);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void restore_bringsBackEveryExpense() throws IOException {
+        List<String> before = snapshot();
+        File file = folder.newFile("expenses.gdbk");
+        assertEquals(ROWS, backup.writeTo(file, null));
+
+        dbHelper.addExpense(new Expense(5, "Thức ăn", "Tiền mặt", "after the backup", 1L));
+        assertEquals(ROWS, backup.restoreFrom(file));
+
+        assertEquals(before, snapshot());
+        assertEquals(0, dbHelper.verifyRollups());
+    }
+
+    @Test
+    public void damagedBlock_leavesDatabaseUnchanged() throws IOException {
+        File file = folder.newFile("expenses.gdbk");
+        backup.writeTo(file, null);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Inside the last block, so earlier blocks decode and insert before the damage is found
+            raf.seek(raf.length() - 100);
+            int b = raf.read();
+            raf.seek(raf.length() - 100);
+            raf.write(b ^ 0x01);
+        }
+        assertRestoreFails(file);
+    }
+
+    @Test
+    public void truncatedFile_leavesDatabaseUnchanged() throws IOException {
+        File file = folder.newFile("expenses.gdbk");
+        backup.writeTo(file, null);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        assertRestoreFails(file);
+    }
+
+    private void assertRestoreFails(File file) {
+        List<String> before = snapshot();
+        try {
+            backup.restoreFrom(file);
+            fail("Restore should have failed");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Backup"));
+        }
+        assertEquals(before, snapshot());
+    }
+
+    private List<String> snapshot() {
+        List<String> rows = new ArrayList<>();
+        dbHelper.forEachExpense(e -> rows.add(e.getAmount() + "|" + e.getCategory() + "|" + e.getPaymentMethod() +
+                "|" + e.getDescription() + "|" + e.getTimestamp() + "|" + e.getUserId()), null);
+        return rows;
+    }
+}
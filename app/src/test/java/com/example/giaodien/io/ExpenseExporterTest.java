@@ -0,0 +1,152 @@
+package com.example.giaodien.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ExpenseExporterTest {
+    private static final int ROWS = 2500;
+
+    private DatabaseHelper dbHelper;
+    private ExpenseExporter exporter;
+
+    @Before
+    public void setUp() {
+        dbHelper = DatabaseHelper.getInstance(ApplicationProvider.getApplicationContext());
+        exporter = new ExpenseExporter(dbHelper);
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            // Separators, quotes, line breaks and non-BMP text in the free-text column
+            String description = i % 4 == 0 ? null : "Phở, \"đặc biệt\"\nbàn " + i + " 😀";
+            expenses.add(new Expense(1000L * i, i % 2 == 0 ? "Thức ăn" : "Quà, tặng", "Tiền mặt",
+                    description, 1_700_000_000_000L + i));
+        }
+        dbHelper.addExpenses(expenses);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void csv_roundTripsThroughImporter() throws IOException {
+        List<List<String>> exported = csvRecords(export(ExpenseExporter.Format.CSV, false));
+        assertEquals(ROWS + 1, exported.size());
+        assertEquals(List.of(ExpenseCsvImporter.HEADER), exported.get(0));
+
+        ExpenseCsvImporter.Result result = new ExpenseCsvImporter(dbHelper).importFrom(
+                new ByteArrayInputStream(export(ExpenseExporter.Format.CSV, false)), null);
+        assertEquals(ROWS, result.imported);
+        assertEquals(0, result.skipped);
+
+        // Every row now exists twice and sorts next to its copy
+        List<List<String>> again = csvRecords(export(ExpenseExporter.Format.CSV, false));
+        assertEquals(2 * ROWS + 1, again.size());
+        for (int i = 1; i <= ROWS; i++) {
+            assertEquals(exported.get(i), again.get(2 * i - 1));
+            assertEquals(exported.get(i), again.get(2 * i));
+        }
+    }
+
+    @Test
+    public void json_isOneObjectPerExpense() throws Exception {
+        JSONArray array = new JSONArray(new String(export(ExpenseExporter.Format.JSON, false), StandardCharsets.UTF_8));
+        assertEquals(ROWS, array.length());
+
+        JSONObject first = array.getJSONObject(0);
+        assertEquals(0, first.getLong("amount"));
+        assertEquals("Thức ăn", first.getString("category"));
+        assertTrue(first.isNull("description"));
+        JSONObject second = array.getJSONObject(1);
+        assertEquals("Quà, tặng", second.getString("category"));
+        assertEquals("Phở, \"đặc biệt\"\nbàn 1 😀", second.getString("description"));
+        assertEquals(1_700_000_000_001L, second.getLong("date"));
+    }
+
+    @Test
+    public void gzip_decompressesToPlainOutput() throws IOException {
+        byte[] plain = export(ExpenseExporter.Format.CSV, false);
+        byte[] compressed = export(ExpenseExporter.Format.CSV, true);
+        assertTrue(compressed.length < plain.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void progress_isReportedAndEndsWithTotals() throws IOException {
+        List<long[]> reports = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exporter.exportTo(Channels.newChannel(out), ExpenseExporter.Format.CSV, false,
+                (rowsWritten, bytesWritten) -> reports.add(new long[]{rowsWritten, bytesWritten}), null);
+
+        assertEquals(ROWS, rows);
+        assertTrue(reports.size() > 1);
+        long[] last = reports.get(reports.size() - 1);
+        assertEquals(ROWS, last[0]);
+        assertEquals(out.size(), last[1]);
+    }
+
+    @Test
+    public void cancel_stopsTheExport() throws IOException {
+        CancellationSignal signal = new CancellationSignal();
+        try {
+            exporter.exportTo(Channels.newChannel(new ByteArrayOutputStream()), ExpenseExporter.Format.JSON, false,
+                    (rowsWritten, bytesWritten) -> signal.cancel(), signal);
+            fail("Export should have been cancelled");
+        } catch (OperationCanceledException expected) {
+            // Cancelled at the first progress report
+        }
+    }
+
+    private byte[] export(ExpenseExporter.Format format, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.exportTo(Channels.newChannel(out), format, gzip, null, null);
+        return out.toByteArray();
+    }
+
+    private static List<List<String>> csvRecords(byte[] csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(new String(csv, StandardCharsets.UTF_8)))) {
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                if (record.size() == 1 && record.get(0).isEmpty()) {
+                    continue;
+                }
+                records.add(new ArrayList<>(record));
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.giaodien.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.giaodien.Expense;
+import com.example.giaodien.database.DatabaseHelper;
+import com.example.giaodien.database.ExpenseFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ExpensePagerTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private DatabaseHelper dbHelper;
+    private ExpensePager pager;
+    private List<Expense> shown = Collections.emptyList();
+    private long userId;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        userId = dbHelper.addUser("a@b.c", "hash", "A");
+        // Loads run and answer inline, so every call below has finished when it returns
+        ExpenseRepository repository = new ExpenseRepository(dbHelper, new DirectExecutorService());
+        pager = new ExpensePager(repository, Runnable::run, 50, 15, 6);
+        pager.setListener(expenses -> shown = expenses);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.resetInstance();
+    }
+
+    @Test
+    public void cachedFirstPage_isDroppedAfterDelete() {
+        long kept = addExpense("Thức ăn", NOW);
+        long deleted = addExpense("Thức ăn", NOW + 1);
+        pager.start();
+        assertEquals(2, shown.size());
+
+        pager.setFilter(ExpenseFilter.ALL.withCategories(Collections.singleton("Giải trí")));
+        assertEquals(0, shown.size());
+        assertEquals(1, dbHelper.deleteExpense(deleted));
+
+        pager.setFilter(ExpenseFilter.ALL);
+        assertEquals(1, shown.size());
+        assertEquals(kept, shown.get(0).getExpenseId());
+    }
+
+    private long addExpense(String category, long date) {
+        Expense expense = new Expense(100_000, category, "Tiền mặt", null, date);
+        expense.setUserId(userId);
+        return dbHelper.addExpense(expense);
+    }
+
+    private static final class DirectExecutorService extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
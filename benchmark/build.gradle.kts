@@ -0,0 +1,45 @@
+// JMH microbenchmarks for the app's data and formatting code, run on a plain JVM:
+//   ./gradlew :benchmark:jmh
+//   ./gradlew :benchmark:jmh -Pjmh.includes=AmountParsing   (one class; a regex on benchmark names)
+// Results go to build/results/jmh/<commit>.json in JMH's JSON format, one file per commit, so two
+// runs can be compared with any JMH result viewer or a diff of the scores.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The benchmarks measure the app's own compiled classes rather than copies of them. Android
+// framework classes they touch (MatrixCursor, Parcelable) come from Robolectric's android-all jar.
+// Its Parcel needs the Android runtime's native code, so the Parcel and Intent round trips are
+// measured on a device instead, by ExpenseParcelBenchmark in app/src/androidTest
+evaluationDependsOn(":app")
+val appClasses = project(":app").tasks.named<JavaCompile>("compileDebugJavaWithJavac")
+    .flatMap { it.destinationDirectory }
+
+dependencies {
+    jmhImplementation(files(appClasses))
+    jmhImplementation(libs.robolectric.android.all)
+    jmhImplementation(libs.bcrypt)
+    // The SQL baseline in AggregationBenchmark; the desktop build of SQLite, not Android's
+    jmhImplementation(libs.sqlite.jdbc)
+    jmhCompileOnly(libs.androidx.annotation)
+}
+
+val commit = providers.exec {
+    commandLine("git", "rev-parse", "--short", "HEAD")
+    isIgnoreExitValue = true
+}.standardOutput.asText.map { it.trim().ifEmpty { "local" } }
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    // Allocation rate per operation next to each score
+    profilers.add("gc")
+    resultsFile.set(layout.buildDirectory.file(commit.map { "results/jmh/$it.json" }))
+    (findProperty("jmh.includes") as String?)?.let { includes.add(it) }
+}
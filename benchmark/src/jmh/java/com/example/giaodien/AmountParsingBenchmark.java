@@ -0,0 +1,42 @@
+package com.example.giaodien;
+
+import com.example.giaodien.model.Money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AddExpenseActivity.parseAmount, which hands the field text to {@link Money#parse}, against
+ * stripping separators with a regex and calling Long.parseLong, the usual alternative.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmountParsingBenchmark {
+
+    @Param({"45000", "1.250.000", "1 250 000", "12,500,000,000"})
+    public String input;
+
+    @Benchmark
+    public long moneyParse() {
+        return Money.parse(input);
+    }
+
+    @Benchmark
+    public long regexThenParseLong() {
+        return Long.parseLong(input.replaceAll("[.,\\s]", ""));
+    }
+}
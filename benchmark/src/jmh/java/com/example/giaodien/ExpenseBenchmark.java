@@ -0,0 +1,81 @@
+package com.example.giaodien;
+
+import com.example.giaodien.model.Money;
+import com.example.giaodien.util.ExpenseFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating an expense and the text a list row shows for it. The char[] variants are what
+ * ExpenseAdapter calls on bind; the String variants are for everything else.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpenseBenchmark {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long THREE_DAYS = 3 * 24 * 60 * 60_000L;
+
+    private Expense expense;
+    private ExpenseFormatter formatter;
+    private final char[] amountChars = new char[ExpenseFormatter.MAX_AMOUNT_CHARS];
+    private final char[] dateChars = new char[ExpenseFormatter.MAX_DATE_CHARS];
+    private long amount = 1_250_000;
+    private long timestamp = NOW;
+
+    @Setup
+    public void setUp() {
+        expense = new Expense(1_250_000, "Thức ăn", "Tiền mặt", "Phở bò", NOW);
+        formatter = new ExpenseFormatter(TimeZone.getTimeZone("Asia/Ho_Chi_Minh"));
+    }
+
+    @Benchmark
+    public Expense construct() {
+        // Fields change every call so the allocation cannot be hoisted out of the loop
+        timestamp += 60_000;
+        return new Expense(amount, "Thức ăn", "Tiền mặt", "Phở bò", timestamp);
+    }
+
+    @Benchmark
+    public String formattedAmount() {
+        return expense.getFormattedAmount();
+    }
+
+    @Benchmark
+    public String formattedDate() {
+        return expense.getFormattedDate();
+    }
+
+    @Benchmark
+    public String moneyFormat() {
+        return Money.format(amount);
+    }
+
+    @Benchmark
+    public int formatAmountIntoBuffer() {
+        amount += 1_000;
+        return formatter.formatAmount(amount, amountChars);
+    }
+
+    @Benchmark
+    public int formatDateTimeIntoBuffer() {
+        // Stays within a few days, as consecutive list rows do, so the day cache hits
+        timestamp = timestamp < NOW + THREE_DAYS ? timestamp + 60_000 : NOW;
+        return formatter.formatDateTime(timestamp, dateChars);
+    }
+}
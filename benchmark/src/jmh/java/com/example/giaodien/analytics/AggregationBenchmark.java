@@ -0,0 +1,147 @@
+package com.example.giaodien.analytics;
+
+import com.example.giaodien.database.CategoryTotals;
+import com.example.giaodien.database.CategoryTotalsQuery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-category totals: over a whole snapshot on the fork/join pool and on one thread, the same
+ * rows summed by the app's GROUP BY query, and the single-expense update the dashboard applies to
+ * its {@link CategoryTotals}.
+ *
+ * <p>The SQL baseline runs on an in-memory database through sqlite-jdbc, the desktop build of
+ * SQLite, with the app's covering index. It shows what the snapshot saves over asking SQLite; on
+ * a phone both sides are slower, SQLite with its storage most of all.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+    private static final long START = 1_600_000_000_000L;
+    private static final long HOUR = 3_600_000L;
+    private static final String[] CATEGORIES = {"Thức ăn", "Di chuyển", "Giải trí", "Mua sắm", "Hóa đơn", "Quà cưới"};
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private ExpenseSnapshot snapshot;
+    private ExpenseAnalytics parallel;
+    private ExpenseAnalytics sequential;
+    private ForkJoinPool singleThread;
+    private CategoryTotals totals;
+    private long end;
+    private Connection sqlite;
+    private PreparedStatement categoryTotals;
+
+    @Setup
+    public void setUp() throws SQLException {
+        ExpenseSnapshot.Builder builder = new ExpenseSnapshot.Builder(1, null);
+        for (int i = 0; i < rows; i++) {
+            builder.accept(i + 1, amount(i), CATEGORIES[category(i)], "Tiền mặt", START + i * HOUR);
+        }
+        snapshot = builder.build();
+        end = START + rows * HOUR;
+        parallel = new ExpenseAnalytics();
+        singleThread = new ForkJoinPool(1);
+        sequential = new ExpenseAnalytics(singleThread);
+        totals = new CategoryTotals(CATEGORIES.clone(), new long[CATEGORIES.length]);
+        setUpSqlite();
+    }
+
+    private void setUpSqlite() throws SQLException {
+        sqlite = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = sqlite.createStatement()) {
+            for (String sql : CategoryTotalsQuery.SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        sqlite.setAutoCommit(false);
+        try (PreparedStatement insert = sqlite.prepareStatement(CategoryTotalsQuery.INSERT)) {
+            for (int i = 0; i < rows; i++) {
+                insert.setLong(1, amount(i));
+                // Category ids start at 1, as in the app's lookup table
+                insert.setLong(2, category(i) + 1);
+                insert.setLong(3, START + i * HOUR);
+                insert.setLong(4, 1);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        sqlite.commit();
+        sqlite.setAutoCommit(true);
+        try (Statement statement = sqlite.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+
+        categoryTotals = sqlite.prepareStatement(CategoryTotalsQuery.SQL);
+        categoryTotals.setLong(1, 1);
+        categoryTotals.setLong(2, START);
+        categoryTotals.setLong(3, end);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        categoryTotals.close();
+        sqlite.close();
+        singleThread.shutdown();
+    }
+
+    private static long amount(int i) {
+        return 5_000L + (i * 7919L) % 500_000L;
+    }
+
+    private static int category(int i) {
+        return (i * 31) % CATEGORIES.length;
+    }
+
+    @Benchmark
+    public long[] totalsByCategoryParallel() {
+        return parallel.totalsByCategory(snapshot, START, end);
+    }
+
+    @Benchmark
+    public long[] totalsByCategorySingleThread() {
+        return sequential.totalsByCategory(snapshot, START, end);
+    }
+
+    // Totals indexed by category id minus one; the app decodes the ids through its dictionary
+    @Benchmark
+    public long[] totalsByCategorySqlGroupBy() throws SQLException {
+        long[] result = new long[CATEGORIES.length];
+        try (ResultSet results = categoryTotals.executeQuery()) {
+            while (results.next()) {
+                result[(int) results.getLong(1) - 1] = results.getLong(2);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public CategoryTotals addOneExpense() {
+        return totals.plus("Giải trí", 45_000);
+    }
+}
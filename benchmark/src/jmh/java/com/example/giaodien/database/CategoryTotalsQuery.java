@@ -0,0 +1,32 @@
+package com.example.giaodien.database;
+
+/**
+ * The query behind {@link DatabaseHelper#getCategoryTotals} and just enough schema for it to run
+ * as it does in the app, for benchmarks outside this package.
+ */
+public final class CategoryTotalsQuery {
+    /** Parameters: user id, first millisecond in range, first millisecond after it. */
+    public static final String SQL = DatabaseHelper.SQL_CATEGORY_TOTALS;
+
+    // The columns the query reads, and the covering index it names in INDEXED BY
+    public static final String[] SCHEMA = {
+            "CREATE TABLE " + DatabaseHelper.TABLE_EXPENSES + "(" +
+                    DatabaseHelper.COLUMN_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    DatabaseHelper.COLUMN_AMOUNT + " INTEGER NOT NULL," +
+                    DatabaseHelper.COLUMN_CATEGORY_ID + " INTEGER NOT NULL," +
+                    DatabaseHelper.COLUMN_DATE + " INTEGER," +
+                    DatabaseHelper.COLUMN_USER_FK + " INTEGER)",
+            "CREATE INDEX idx_expenses_user_category ON " + DatabaseHelper.TABLE_EXPENSES + "(" +
+                    DatabaseHelper.COLUMN_USER_FK + "," + DatabaseHelper.COLUMN_CATEGORY_ID + "," +
+                    DatabaseHelper.COLUMN_DATE + "," + DatabaseHelper.COLUMN_AMOUNT + ")"
+    };
+
+    /** Parameters: amount, category id, date, user id. */
+    public static final String INSERT =
+            "INSERT INTO " + DatabaseHelper.TABLE_EXPENSES + "(" +
+                    DatabaseHelper.COLUMN_AMOUNT + "," + DatabaseHelper.COLUMN_CATEGORY_ID + "," +
+                    DatabaseHelper.COLUMN_DATE + "," + DatabaseHelper.COLUMN_USER_FK + ") VALUES (?,?,?,?)";
+
+    private CategoryTotalsQuery() {
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.giaodien.database;
+
+import android.database.MatrixCursor;
+
+import com.example.giaodien.Expense;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExpenseCursorMapper} turning a page of list rows into expenses, labels decoded through
+ * {@link LabelDictionary}. The rows sit in a MatrixCursor, so this measures the mapping and not
+ * SQLite or the CursorWindow copy, which a JVM without the Android runtime cannot run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CursorMappingBenchmark {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final String[] CATEGORIES = {"Thức ăn", "Di chuyển", "Giải trí", "Mua sắm", "Hóa đơn"};
+    private static final String[] PAYMENT_METHODS = {"Tiền mặt", "Thẻ ngân hàng", "Ví điện tử", "Chuyển khoản"};
+
+    // A page, a large export batch, and a whole history read by getAllExpenses
+    @Param({"50", "1000", "100000"})
+    public int rows;
+
+    private MatrixCursor cursor;
+    private LabelDictionary categories;
+    private LabelDictionary paymentMethods;
+
+    @Setup
+    public void setUp() {
+        categories = LabelDictionary.of(CATEGORIES);
+        paymentMethods = LabelDictionary.of(PAYMENT_METHODS);
+        cursor = new MatrixCursor(ExpenseCursorMapper.LIST_COLUMNS, rows);
+        for (int i = 0; i < rows; i++) {
+            cursor.addRow(new Object[]{
+                    (long) i + 1,
+                    10_000L + i * 500L,
+                    (long) (i % CATEGORIES.length) + 1,
+                    (long) (i % PAYMENT_METHODS.length) + 1,
+                    i % 4 == 0 ? null : "Ghi chú " + i,
+                    NOW - i * 3_600_000L
+            });
+        }
+    }
+
+    @Benchmark
+    public List<Expense> mapPage() {
+        cursor.moveToPosition(-1);
+        ExpenseCursorMapper mapper = new ExpenseCursorMapper(cursor, categories, paymentMethods);
+        return mapper.mapAll(cursor, new ArrayList<>(rows));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.giaodien.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+
+/**
+ * What one login costs in {@link PasswordHasher#verify}, at the lowest, default and highest cost
+ * the calibration can pick. Each step up should double the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BcryptBenchmark {
+
+    @Param({"10", "12", "14"})
+    public int cost;
+
+    private final char[] password = "mật khẩu 123".toCharArray();
+    private String storedHash;
+
+    @Setup
+    public void setUp() {
+        storedHash = BCrypt.withDefaults().hashToString(cost, password);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        // The same call PasswordHasher.verify makes; the instance itself needs an Android Context
+        return BCrypt.verifyer().verify(password, storedHash).verified;
+    }
+}
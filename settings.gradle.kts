@@ -24,3 +24,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "giaodien"
 include(":app")
+include(":benchmark")